@@ -10,6 +10,7 @@ package org.weborganic.flint;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
@@ -17,7 +18,9 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.weborganic.flint.api.DeclaredAccess;
 import org.weborganic.flint.api.Index;
+import org.weborganic.flint.api.IndexAccess;
 import org.weborganic.flint.content.DeleteRule;
 
 /**
@@ -35,6 +38,11 @@ import org.weborganic.flint.content.DeleteRule;
  */
 public abstract class IndexIO {
 
+  /**
+   * Caches whether index folders are read only using their path as key.
+   */
+  private static final ConcurrentHashMap<String, Boolean> READ_ONLY = new ConcurrentHashMap<String, Boolean>();
+
   /**
    * Describes the state of an index.
    */
@@ -200,6 +208,24 @@ public abstract class IndexIO {
    */
   protected abstract int countBookedReaders();
 
+  /**
+   * Returns the generation of the specified searcher.
+   *
+   * <p>The generation changes every time the searcher is reopened, it is used to ensure that cached
+   * results always match the current view of the index.
+   *
+   * @param searcher A searcher booked from this object.
+   * @return the generation of the searcher if it is current; <code>-1</code> otherwise.
+   */
+  abstract long getGeneration(IndexSearcher searcher);
+
+  /**
+   * Returns the generation of the current searcher.
+   *
+   * @return the generation of the current searcher; <code>-1</code> if the index is not open.
+   */
+  abstract long getGeneration();
+
   /**
    * Closes the writer on this index.
    *
@@ -223,29 +249,80 @@ public abstract class IndexIO {
    * @throws IOException If thrown by the constructors
    */
   public static IndexIO newInstance(Index index) throws IOException {
+    return newInstance(index, null);
+  }
+
+  /**
+   * Generate the appropriate IndexIO implementation to use based on the underlying {@link Directory}
+   * used.
+   *
+   * <p>Indexes opened for writing are added to the specified pool which may close them when they
+   * are not used.
+   *
+   * @param index The index object.
+   * @param pool  The pool managing the open indexes (may be <code>null</code>).
+   * @return The most appropriate IndexIO implementation to use.
+   *
+   * @throws IOException If thrown by the constructors
+   */
+  public static IndexIO newInstance(Index index, IndexIOPool pool) throws IOException {
+    boolean readonly = isReadOnly(index);
+    // Returns the correct Index IO implementation
+    return readonly ? new IndexIOReadOnly(index) : new IndexIOReadWrite(index, pool);
+  }
+
+  /**
+   * Clears the cached results of the probes detecting whether indexes can be written.
+   *
+   * <p>Use this method if the permissions on the index folders have changed.
+   */
+  public static void clearAccessCache() {
+    READ_ONLY.clear();
+  }
+
+  /**
+   * Indicates whether the specified index must be opened as read only.
+   *
+   * <p>The access declared by the index is used when available, otherwise the file system is
+   * probed once per folder: indexes which are not in a folder are read only.
+   *
+   * @param index The index.
+   * @return <code>true</code> if the index is read only; <code>false</code> if it can be written.
+   */
+  private static boolean isReadOnly(Index index) {
+    if (index instanceof DeclaredAccess) {
+      IndexAccess access = ((DeclaredAccess)index).getAccess();
+      if (access != null) return access == IndexAccess.READ_ONLY;
+    }
     Directory directory = index.getIndexDirectory();
-    boolean readonly = false;
-    // Detect if we can write on the files.
-    try {
-      if (directory instanceof FSDirectory) {
-        File f = ((FSDirectory) directory).getFile();
-        // ensure all files can write.
-        if (!f.canWrite()) {
-          readonly = true;
-        }
-        for (File tf : f.listFiles()) {
-          if (!tf.canWrite()) {
-            readonly = true;
-          }
-        }
-      } else {
-        readonly = true;
-      }
-    } catch (Exception ex) {
-      readonly = true;
+    if (!(directory instanceof FSDirectory)) return true;
+    File f = ((FSDirectory) directory).getFile();
+    String key = f.getAbsolutePath();
+    Boolean readonly = READ_ONLY.get(key);
+    if (readonly == null) {
+      readonly = Boolean.valueOf(probeReadOnly(f));
+      READ_ONLY.put(key, readonly);
     }
+    return readonly.booleanValue();
+  }
 
-    // Returns the correct Index IO implementation
-    return readonly ? new IndexIOReadOnly(index) : new IndexIOReadWrite(index);
+  /**
+   * Detects whether the specified index folder is read only.
+   *
+   * <p>Rather than listing every file, only the folder and the file pointing to the current
+   * segments are checked since both must be writable to commit changes.
+   *
+   * @param folder The index folder.
+   * @return <code>true</code> if the folder is read only; <code>false</code> otherwise.
+   */
+  private static boolean probeReadOnly(File folder) {
+    try {
+      if (!folder.canWrite()) return true;
+      File gen = new File(folder, "segments.gen");
+      return gen.exists() && !gen.canWrite();
+    } catch (SecurityException ex) {
+      return true;
+    }
   }
+
 }
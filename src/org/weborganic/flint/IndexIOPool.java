@@ -0,0 +1,454 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A pool of the indexes opened for writing by an index manager.
+ *
+ * <p>The pool keeps the indexes in least recently used order and closes the least recently used
+ * ones whenever the number of open writers, the estimated number of open files or the estimated
+ * memory used exceed their budget, or when they have not been used for longer than the maximum
+ * idle time.
+ *
+ * <p>Indexes are closed asynchronously and only when no searcher or reader is booked on them;
+ * closed indexes are opened again transparently the next time they are accessed.
+ *
+ * <p>The budgets are estimates: the number of open files is the number of files in the index
+ * directory and the memory is the size of the documents buffered by the writer plus the size of
+ * the term indexes and norms which are loaded by the readers.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class IndexIOPool {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexIOPool.class);
+
+  /**
+   * The default maximum number of open writers.
+   */
+  public static final int DEFAULT_MAX_OPEN_WRITERS = 100;
+
+  /**
+   * The open indexes in least recently used order.
+   */
+  private final LinkedHashMap<IndexIOReadWrite, Usage> _open = new LinkedHashMap<IndexIOReadWrite, Usage>(16, 0.75f, true);
+
+  /**
+   * Closes the indexes.
+   */
+  private final ExecutorService _closer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "flint-io-closer");
+      t.setDaemon(true);
+      return t;
+    }
+
+  });
+
+  /**
+   * The estimated number of open files.
+   */
+  private long files = 0;
+
+  /**
+   * The estimated number of bytes used in memory.
+   */
+  private long ram = 0;
+
+  /**
+   * The usage of the indexes being closed.
+   */
+  private final Usage closing = Usage.none();
+
+  /**
+   * The maximum number of open writers.
+   */
+  private volatile int maxOpenWriters = DEFAULT_MAX_OPEN_WRITERS;
+
+  /**
+   * The maximum number of open files (0 for no limit).
+   */
+  private volatile int maxOpenFiles = 0;
+
+  /**
+   * The maximum number of bytes used in memory (0 for no limit).
+   */
+  private volatile long maxRAM = 0;
+
+  /**
+   * The time in ms after which an unused index is closed (0 for no limit).
+   */
+  private volatile long maxIdleTime = 0;
+
+  /**
+   * Sets the maximum number of indexes opened for writing.
+   *
+   * @param max the maximum number of open writers.
+   */
+  public void setMaxOpenWriters(int max) {
+    this.maxOpenWriters = max;
+  }
+
+  /**
+   * Sets the maximum number of files opened by the indexes.
+   *
+   * @param max the maximum number of open files (0 for no limit).
+   */
+  public void setMaxOpenFiles(int max) {
+    this.maxOpenFiles = max;
+  }
+
+  /**
+   * Sets the maximum memory used by the indexes.
+   *
+   * @param bytes the maximum number of bytes (0 for no limit).
+   */
+  public void setMaxRAM(long bytes) {
+    this.maxRAM = bytes;
+  }
+
+  /**
+   * Sets the time after which an index which has not been used is closed.
+   *
+   * @param ms the maximum idle time in milliseconds (0 for no limit).
+   */
+  public void setMaxIdleTime(long ms) {
+    this.maxIdleTime = ms;
+  }
+
+  /**
+   * Returns the number of indexes currently opened for writing.
+   *
+   * @return the number of open writers.
+   */
+  public synchronized int getOpenWriters() {
+    return this._open.size();
+  }
+
+  /**
+   * Returns the estimated number of files opened by the indexes.
+   *
+   * @return the estimated number of open files.
+   */
+  public synchronized long getOpenFiles() {
+    return this.files;
+  }
+
+  /**
+   * Returns the estimated memory used by the indexes.
+   *
+   * @return the estimated number of bytes.
+   */
+  public synchronized long getRAM() {
+    return this.ram;
+  }
+
+  /**
+   * Closes the least recently used indexes until the pool is within its budgets.
+   *
+   * <p>Indexes are closed asynchronously, indexes on which searchers or readers are booked are
+   * skipped.
+   */
+  public void enforce() {
+    List<IndexIOReadWrite> close = new ArrayList<IndexIOReadWrite>();
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      int count = this._open.size() - this.closing.count;
+      long f = this.files - this.closing.files;
+      long r = this.ram - this.closing.ram;
+      for (Entry<IndexIOReadWrite, Usage> e : this._open.entrySet()) {
+        IndexIOReadWrite io = e.getKey();
+        Usage u = e.getValue();
+        boolean over = count > this.maxOpenWriters || (this.maxOpenFiles > 0 && f > this.maxOpenFiles) || (this.maxRAM > 0 && r > this.maxRAM);
+        boolean expired = this.maxIdleTime > 0 && now - io.getLastTimeUsed() > this.maxIdleTime;
+        // indexes are in least recently used order
+        if (!over && !expired) break;
+        if (u.closing || io.isBusy()) continue;
+        u.closing = true;
+        this.closing.add(u);
+        count--;
+        f -= u.files;
+        r -= u.ram;
+        close.add(io);
+      }
+    }
+    for (IndexIOReadWrite io : close) {
+      scheduleClose(io);
+    }
+  }
+
+  /**
+   * Closes this pool.
+   *
+   * <p>Indexes which are still open are not closed.
+   */
+  public void shutdown() {
+    this._closer.shutdown();
+  }
+
+  // Package private methods invoked by the indexes
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Adds an index which has just been opened for writing and enforces the budgets.
+   *
+   * @param io The index.
+   */
+  void opened(IndexIOReadWrite io) {
+    Usage usage = estimate(io);
+    synchronized (this) {
+      closed(io);
+      this._open.put(io, usage);
+      add(usage);
+    }
+    enforce();
+  }
+
+  /**
+   * Marks the specified index as the most recently used.
+   *
+   * @param io The index.
+   */
+  synchronized void touch(IndexIOReadWrite io) {
+    this._open.get(io);
+  }
+
+  /**
+   * Updates the estimated usage of the index after its files have changed.
+   *
+   * @param io The index.
+   */
+  void update(IndexIOReadWrite io) {
+    Usage usage = estimate(io);
+    synchronized (this) {
+      Usage previous = this._open.get(io);
+      if (previous == null) return;
+      subtract(previous);
+      if (previous.closing) this.closing.subtract(previous);
+      previous.files = usage.files;
+      previous.ram = usage.ram;
+      add(previous);
+      if (previous.closing) this.closing.add(previous);
+    }
+  }
+
+  /**
+   * Removes an index which has been closed.
+   *
+   * @param io The index.
+   */
+  synchronized void closed(IndexIOReadWrite io) {
+    Usage usage = this._open.remove(io);
+    if (usage == null) return;
+    subtract(usage);
+    if (usage.closing) this.closing.subtract(usage);
+  }
+
+  // Private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Closes the index asynchronously.
+   *
+   * @param io The index to close.
+   */
+  private void scheduleClose(final IndexIOReadWrite io) {
+    try {
+      this._closer.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          boolean closed = false;
+          try {
+            LOGGER.debug("Closing IO for index {}", io.indexID());
+            closed = io.closeIfIdle();
+          } catch (IndexException ex) {
+            LOGGER.error("Failed closing an opened index {}", io.indexID(), ex);
+          } finally {
+            if (!closed) cancelClose(io);
+          }
+        }
+
+      });
+    } catch (RejectedExecutionException ex) {
+      cancelClose(io);
+    }
+  }
+
+  /**
+   * Indicates that the index was not closed because it is in use.
+   *
+   * @param io The index.
+   */
+  private synchronized void cancelClose(IndexIOReadWrite io) {
+    Usage usage = this._open.get(io);
+    if (usage != null && usage.closing) {
+      usage.closing = false;
+      this.closing.subtract(usage);
+    }
+  }
+
+  /**
+   * @param usage The usage to add to the totals.
+   */
+  private void add(Usage usage) {
+    this.files += usage.files;
+    this.ram += usage.ram;
+  }
+
+  /**
+   * @param usage The usage to subtract from the totals.
+   */
+  private void subtract(Usage usage) {
+    this.files -= usage.files;
+    this.ram -= usage.ram;
+  }
+
+  /**
+   * Estimates the number of files and memory used by the specified index.
+   *
+   * @param io The index.
+   * @return the estimated usage.
+   */
+  private static Usage estimate(IndexIOReadWrite io) {
+    Usage usage = new Usage();
+    usage.ram = io.getBufferedRAM();
+    Directory directory = io.getDirectory();
+    try {
+      String[] names = directory.listAll();
+      usage.files = names.length;
+      for (String name : names) {
+        if (name.endsWith(".cfs")) {
+          usage.ram += estimateCompound(directory, name);
+        } else if (isLoadedInMemory(name)) {
+          usage.ram += directory.fileLength(name);
+        }
+      }
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to estimate the usage of index {}", io.indexID(), ex);
+    }
+    return usage;
+  }
+
+  /**
+   * Estimates the memory used by the files in a compound file.
+   *
+   * <p>The compound file starts with the number of files followed by the offset and name of each
+   * file, the length of a file is the difference with the offset of the next file.
+   *
+   * @param directory The directory of the index.
+   * @param name      The name of the compound file.
+   * @return the total size of the files loaded in memory.
+   *
+   * @throws IOException If thrown while reading the compound file.
+   */
+  private static long estimateCompound(Directory directory, String name) throws IOException {
+    long ram = 0;
+    IndexInput in = directory.openInput(name);
+    try {
+      int count = in.readVInt();
+      String previous = null;
+      long offset = 0;
+      for (int i = 0; i < count; i++) {
+        long next = in.readLong();
+        if (previous != null && isLoadedInMemory(previous)) ram += next - offset;
+        offset = next;
+        previous = in.readString();
+      }
+      if (previous != null && isLoadedInMemory(previous)) ram += in.length() - offset;
+    } finally {
+      in.close();
+    }
+    return ram;
+  }
+
+  /**
+   * Indicates whether the specified index file is loaded in memory by the readers.
+   *
+   * @param name The name of the index file.
+   * @return <code>true</code> for term indexes and norms; <code>false</code> otherwise.
+   */
+  private static boolean isLoadedInMemory(String name) {
+    return name.endsWith(".tii") || name.endsWith(".nrm");
+  }
+
+  // Private classes
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * The estimated usage of an open index or of a group of indexes.
+   */
+  private static final class Usage {
+
+    /** The number of indexes. */
+    int count = 1;
+
+    /** The estimated number of open files. */
+    long files;
+
+    /** The estimated number of bytes in memory. */
+    long ram;
+
+    /** Whether the index is being closed. */
+    boolean closing = false;
+
+    /**
+     * @return an empty usage to accumulate the usage of several indexes.
+     */
+    static Usage none() {
+      Usage none = new Usage();
+      none.count = 0;
+      return none;
+    }
+
+    /**
+     * @param usage The usage to add to this one.
+     */
+    void add(Usage usage) {
+      this.count += usage.count;
+      this.files += usage.files;
+      this.ram += usage.ram;
+    }
+
+    /**
+     * @param usage The usage to subtract from this one.
+     */
+    void subtract(Usage usage) {
+      this.count -= usage.count;
+      this.files -= usage.files;
+      this.ram -= usage.ram;
+    }
+
+  }
+
+}
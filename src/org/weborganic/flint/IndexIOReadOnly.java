@@ -166,4 +166,14 @@ final class IndexIOReadOnly extends IndexIO {
     return this.searcherManager.getRefCount();
   }
 
+  @Override
+  long getGeneration(IndexSearcher searcher) {
+    return this.searcherManager.getGeneration(searcher);
+  }
+
+  @Override
+  long getGeneration() {
+    return this.searcherManager.getGeneration();
+  }
+
 }
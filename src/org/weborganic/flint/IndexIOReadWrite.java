@@ -8,8 +8,12 @@ package org.weborganic.flint;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.BalancedSegmentMergePolicy;
 import org.apache.lucene.index.CorruptIndexException;
@@ -17,10 +21,12 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weborganic.flint.api.Index;
 import org.weborganic.flint.content.DeleteRule;
+import org.weborganic.flint.index.DerivedFieldAnalyzer;
 
 /**
  * Provides a set of utility methods to deal with IO operations on an Index.
@@ -30,6 +36,10 @@ import org.weborganic.flint.content.DeleteRule;
  *
  * <p>This is a lower level API.
  *
+ * <p>The writer may be closed by the {@link IndexIOPool} when the index is not in use, it is
+ * opened again the next time the index is accessed. Operations using the writer hold a shared
+ * lock so that the writer is only closed when it is not in use.
+ *
  * @author Jean-Baptiste Reure
  * @version 26 February 2010
  */
@@ -50,26 +60,50 @@ final class IndexIOReadWrite extends IndexIO {
    */
   private final AtomicLong lastTimeUsed = new AtomicLong(0);
 
+  /**
+   * The number of searchers and readers currently booked on this index, including those booked on
+   * readers which have since been reopened.
+   */
+  private final AtomicInteger _bookings = new AtomicInteger(0);
+
+  /**
+   * The pool this index belongs to (may be <code>null</code>).
+   */
+  private final IndexIOPool _pool;
+
+  /**
+   * Shared by the operations using the writer, exclusive to close the writer.
+   */
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
   /**
    * The underlying index writer used by Flint for this index (there should only be one).
    */
-  private IndexWriter writer;
+  private volatile IndexWriter writer;
 
   /**
    * A search manager using this writer.
    */
-  private SearcherManager searcherManager;
+  private volatile SearcherManager searcherManager;
+
+  /**
+   * The number of modifications made to the index, used to detect changes made while the readers
+   * are reopened or the index is committed or optimised.
+   */
+  private volatile long modifications = 0;
 
   /**
    * Sole constructor.
    *
    * @param index The index on which IO operations will occur.
+   * @param pool  The pool managing the open indexes (may be <code>null</code>).
    *
    * @throws IOException               If thrown by Lucene when creating the index writer.
    */
-  public IndexIOReadWrite(Index index) throws IOException {
+  public IndexIOReadWrite(Index index, IndexIOPool pool) throws IOException {
     super(index);
     this._index = index;
+    this._pool = pool;
     start();
   }
 
@@ -79,15 +113,20 @@ final class IndexIOReadWrite extends IndexIO {
   @Override
   protected void maybeReopen() {
     if (this.state != State.NEEDS_REOPEN) { return; }
+    this._lock.readLock().lock();
     try {
+      if (this.writer == null) { return; }
+      long seen = this.modifications;
       LOGGER.debug("Reopen searcher");
       this.searcherManager.maybeReopen();
-      this.state = State.NEEDS_COMMIT;
+      transition(State.NEEDS_COMMIT, seen);
       // FIXME exceptions are completely ignored here !!!
     } catch (final InterruptedException ex) {
       LOGGER.error("Failed to reopen the Index Searcher because the thread has been interrupted", ex);
     } catch (final IOException ex) {
       LOGGER.error("Failed to reopen Index Searcher because of an I/O error", ex);
+    } finally {
+      this._lock.readLock().unlock();
     }
   }
 
@@ -101,18 +140,24 @@ final class IndexIOReadWrite extends IndexIO {
   @Override
   public void maybeCommit() throws IndexException {
     if (this.state != State.NEEDS_COMMIT || this.writer == null) { return; }
+    this._lock.readLock().lock();
     try {
+      if (this.writer == null) { return; }
+      long seen = this.modifications;
       LOGGER.debug("Committing index changes");
       this.writer.commit();
       this.searcherManager.maybeReopen();
-      this.state = State.NEEDS_OPTIMISE;
+      transition(State.NEEDS_OPTIMISE, seen);
     } catch (final CorruptIndexException ex) {
       throw new IndexException("Failed to commit Index because it is corrupted", ex);
     } catch (final IOException ex) {
       throw new IndexException("Failed to commit Index because of an I/O error", ex);
     } catch (final InterruptedException ex) {
       throw new IndexException("Failed to commit Index because of the thread has been interrupted", ex);
+    } finally {
+      this._lock.readLock().unlock();
     }
+    if (this._pool != null) this._pool.update(this);
   }
 
   /**
@@ -125,32 +170,41 @@ final class IndexIOReadWrite extends IndexIO {
   @Override
   public void maybeOptimise() throws IndexException {
     if (this.state != State.NEEDS_OPTIMISE || this.writer == null) { return; }
+    this._lock.readLock().lock();
     try {
+      if (this.writer == null) { return; }
+      long seen = this.modifications;
       LOGGER.debug("Optimising");
       this.writer.optimize();
       this.searcherManager.maybeReopen();
-      this.state = State.CLEAN;
+      transition(State.CLEAN, seen);
     } catch (final CorruptIndexException e) {
       throw new IndexException("Failed to optimise Index because it is corrupted", e);
     } catch (final IOException e) {
       throw new IndexException("Failed to optimise Index because of an I/O error", e);
     } catch (final InterruptedException e) {
       throw new IndexException("Failed to optimise Index because of the thread has been interrupted", e);
+    } finally {
+      this._lock.readLock().unlock();
     }
+    if (this._pool != null) this._pool.update(this);
   }
 
   @Override
   public boolean clearIndex() throws IndexException {
     LOGGER.debug("Clearing Index");
     // add documents to index
+    this._lock.readLock().lock();
     try {
       ensureOpen();
       this.writer.deleteAll();
-      this.state = State.NEEDS_REOPEN;
+      modified();
     } catch (final CorruptIndexException e) {
       throw new IndexException("Failed to clear Index because it is corrupted", e);
     } catch (final IOException e) {
       throw new IndexException("Failed to clear Index because of an I/O error", e);
+    } finally {
+      this._lock.readLock().unlock();
     }
     return true;
   }
@@ -159,6 +213,7 @@ final class IndexIOReadWrite extends IndexIO {
   public boolean deleteDocuments(DeleteRule rule) throws IndexException {
     LOGGER.debug("Deleting a document");
     // add documents to index
+    this._lock.readLock().lock();
     try {
       ensureOpen();
       if (rule.useTerm()) {
@@ -166,11 +221,13 @@ final class IndexIOReadWrite extends IndexIO {
       } else {
         this.writer.deleteDocuments(rule.toQuery());
       }
-      this.state = State.NEEDS_REOPEN;
+      modified();
     } catch (final CorruptIndexException e) {
       throw new IndexException("Failed to delete document from Index because it is corrupted", e);
     } catch (final IOException e) {
       throw new IndexException("Failed to delete document from Index because of an I/O error", e);
+    } finally {
+      this._lock.readLock().unlock();
     }
     return true;
   }
@@ -178,6 +235,7 @@ final class IndexIOReadWrite extends IndexIO {
   @Override
   public boolean updateDocuments(DeleteRule rule, List<Document> documents) throws IndexException {
     LOGGER.debug("Updating {} documents", documents.size());
+    this._lock.readLock().lock();
     try {
       ensureOpen();
       if (rule != null) {
@@ -190,11 +248,13 @@ final class IndexIOReadWrite extends IndexIO {
       for (final Document doc : documents) {
         this.writer.addDocument(doc);
       }
-      this.state = State.NEEDS_REOPEN;
+      modified();
     } catch (final CorruptIndexException e) {
       throw new IndexException("Failed to update document in Index because it is corrupted", e);
     } catch (final IOException e) {
       throw new IndexException("Failed to update document in Index because of an I/O error", e);
+    } finally {
+      this._lock.readLock().unlock();
     }
     return true;
   }
@@ -210,39 +270,76 @@ final class IndexIOReadWrite extends IndexIO {
    */
   @Override
   public IndexSearcher bookSearcher() throws IOException {
-    ensureOpen();
-    // check for reopening
-    maybeReopen();
-    return this.searcherManager.get();
+    this._lock.readLock().lock();
+    try {
+      ensureOpen();
+      // check for reopening
+      maybeReopen();
+      IndexSearcher searcher = this.searcherManager.get();
+      this._bookings.incrementAndGet();
+      return searcher;
+    } finally {
+      this._lock.readLock().unlock();
+    }
   }
 
   @Override
   public void releaseSearcher(IndexSearcher searcher) throws IOException {
-    if (this.searcherManager != null) {
-      this.searcherManager.release(searcher);
+    SearcherManager manager = this.searcherManager;
+    if (manager != null) {
+      manager.release(searcher);
+    } else {
+      // the index was closed since the searcher was booked
+      searcher.getIndexReader().decRef();
     }
+    this._bookings.decrementAndGet();
     this.lastTimeUsed.set(System.currentTimeMillis());
   }
 
   @Override
   protected IndexReader bookReader() throws IOException {
-    ensureOpen();
-    // check for reopening
-    maybeReopen();
-    return this.searcherManager.getReader();
+    this._lock.readLock().lock();
+    try {
+      ensureOpen();
+      // check for reopening
+      maybeReopen();
+      IndexReader reader = this.searcherManager.getReader();
+      this._bookings.incrementAndGet();
+      return reader;
+    } finally {
+      this._lock.readLock().unlock();
+    }
   }
 
   @Override
   protected void releaseReader(IndexReader reader) throws IOException {
-    if (this.searcherManager != null) {
-      this.searcherManager.releaseReader(reader);
+    SearcherManager manager = this.searcherManager;
+    if (manager != null) {
+      manager.releaseReader(reader);
+    } else {
+      // the index was closed since the reader was booked
+      reader.decRef();
     }
+    this._bookings.decrementAndGet();
     this.lastTimeUsed.set(System.currentTimeMillis());
   }
 
   @Override
   protected int countBookedReaders() {
-    return this.searcherManager.getRefCount();
+    SearcherManager manager = this.searcherManager;
+    return manager != null ? manager.getRefCount() : 0;
+  }
+
+  @Override
+  long getGeneration(IndexSearcher searcher) {
+    SearcherManager manager = this.searcherManager;
+    return manager != null ? manager.getGeneration(searcher) : -1;
+  }
+
+  @Override
+  long getGeneration() {
+    SearcherManager manager = this.searcherManager;
+    return manager != null ? manager.getGeneration() : -1;
   }
 
   /**
@@ -252,16 +349,89 @@ final class IndexIOReadWrite extends IndexIO {
     return this.lastTimeUsed.longValue();
   }
 
+  /**
+   * Indicates whether searchers or readers are currently booked on this index.
+   *
+   * <p>This includes the searchers and readers booked on previous readers which are still open
+   * after a reopen.
+   *
+   * @return <code>true</code> if the index is in use; <code>false</code> otherwise.
+   */
+  boolean isBusy() {
+    return this._bookings.get() > 0;
+  }
+
+  /**
+   * @return the directory of the index.
+   */
+  Directory getDirectory() {
+    return this._index.getIndexDirectory();
+  }
+
+  /**
+   * @return the number of bytes used by the documents buffered by the writer.
+   */
+  long getBufferedRAM() {
+    IndexWriter w = this.writer;
+    return w != null ? w.ramSizeInBytes() : 0;
+  }
+
+  /**
+   * Closes the writer on this index if no searcher or reader is booked and no operation is using
+   * the writer.
+   *
+   * @return <code>true</code> if the index is closed; <code>false</code> if it is in use.
+   *
+   * @throws IndexException Wrapping an {@link CorruptIndexException} or an {@link IOException}.
+   */
+  boolean closeIfIdle() throws IndexException {
+    if (!this._lock.writeLock().tryLock()) return false;
+    try {
+      if (this.writer == null) return true;
+      if (isBusy()) return false;
+      close();
+      return true;
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Marks the index as modified so that the readers are reopened and the changes committed.
+   */
+  private synchronized void modified() {
+    this.modifications++;
+    this.state = State.NEEDS_REOPEN;
+  }
+
+  /**
+   * Changes the state of the index unless it was modified since the operation started.
+   *
+   * <p>Otherwise the index remains in the {@link State#NEEDS_REOPEN} state so that the latest
+   * changes are also committed.
+   *
+   * @param next The state of the index after the operation.
+   * @param seen The number of modifications when the operation started.
+   */
+  private synchronized void transition(State next, long seen) {
+    if (this.modifications == seen) this.state = next;
+  }
+
   /**
    * Ensures that it is open.
    *
+   * <p>Must be invoked while holding the shared lock.
+   *
    * @throws IOException
    */
   private void ensureOpen() throws IOException {
     if (this.writer == null) {
-      start();
+      synchronized (this) {
+        if (this.writer == null) start();
+      }
     }
     this.lastTimeUsed.set(System.currentTimeMillis());
+    if (this._pool != null) this._pool.touch(this);
   }
 
   /**
@@ -274,28 +444,50 @@ final class IndexIOReadWrite extends IndexIO {
     // IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_30, this._index.getAnalyzer());
     // config.setMergeScheduler(new ConcurrentMergeScheduler());
     // config.setMergePolicy(new BalancedSegmentMergePolicy());
-    this.writer = new IndexWriter(this._index.getIndexDirectory(), this._index.getAnalyzer(), IndexWriter.MaxFieldLength.UNLIMITED);
+    // only affects the fields which documents explicitly derive
+    Analyzer analyzer = new DerivedFieldAnalyzer(this._index.getAnalyzer());
+    this.writer = new IndexWriter(this._index.getIndexDirectory(), analyzer, IndexWriter.MaxFieldLength.UNLIMITED);
     SerialMergeScheduler sms = new SerialMergeScheduler();
     this.writer.setMergeScheduler(sms);
     this.writer.setMergePolicy(new BalancedSegmentMergePolicy(this.writer));
     this.searcherManager = new SearcherManager(this.writer);
     this.lastTimeUsed.set(System.currentTimeMillis());
-    OpenIndexManager.add(this);
+    if (this._pool != null) this._pool.opened(this);
   }
 
   /**
    * Closes the writer on this index.
    *
+   * <p>Waits for the operations using the writer to complete; does nothing if the writer is
+   * already closed.
+   *
    * @throws IndexException Wrapping an {@link CorruptIndexException} or an {@link IOException}.
    */
   @Override
   public void stop() throws IndexException {
+    this._lock.writeLock().lock();
+    try {
+      if (this.writer != null) close();
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Closes the writer and the searcher manager, committing any pending changes.
+   *
+   * <p>Must be invoked while holding the exclusive lock.
+   *
+   * @throws IndexException Wrapping an {@link CorruptIndexException} or an {@link IOException}.
+   */
+  private void close() throws IndexException {
     try {
       this.searcherManager.close();
       this.searcherManager = null;
       this.writer.close();
       this.writer = null;
-      OpenIndexManager.remove(this);
+      this.state = State.CLEAN;
+      if (this._pool != null) this._pool.closed(this);
     } catch (final CorruptIndexException ex) {
       throw new IndexException("Failed to close Index because it is corrupted", ex);
     } catch (final IOException ex) {
@@ -11,14 +11,19 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -30,8 +35,10 @@ import javax.xml.transform.stream.StreamSource;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.store.LockObtainFailedException;
@@ -51,10 +58,18 @@ import org.weborganic.flint.api.Requester;
 import org.weborganic.flint.index.IndexParser;
 import org.weborganic.flint.index.IndexParserFactory;
 import org.weborganic.flint.log.NoOpListener;
+import org.weborganic.flint.query.SearchExport;
 import org.weborganic.flint.query.SearchPaging;
 import org.weborganic.flint.query.SearchQuery;
 import org.weborganic.flint.query.SearchResults;
+import org.weborganic.flint.search.AccumulableFacet;
+import org.weborganic.flint.search.DerivedFieldQuery;
+import org.weborganic.flint.search.Facet;
+import org.weborganic.flint.search.FacetAccumulator;
+import org.weborganic.flint.search.FacetCollector;
+import org.weborganic.flint.search.ResultSetCollector;
 import org.weborganic.flint.util.FlintErrorListener;
+import org.weborganic.flint.util.Queries;
 import org.xml.sax.InputSource;
 
 /**
@@ -95,6 +110,11 @@ public final class IndexManager implements Runnable {
    */
   private static final long INDEX_JOB_POLL_DELAY = 1 * 1000;
 
+  /**
+   * Default number of threads used to commit, reopen and optimise indexes.
+   */
+  public static final int DEFAULT_MAINTENANCE_THREADS = 2;
+
   /**
    * Listens to any problem reported by the indexer.
    */
@@ -115,6 +135,26 @@ public final class IndexManager implements Runnable {
    */
   private final ConcurrentHashMap<String, IndexIO> _indexes;
 
+  /**
+   * Closes the indexes opened for writing which are not used.
+   */
+  private final IndexIOPool _pool = new IndexIOPool();
+
+  /**
+   * Locks for the indexes being opened.
+   */
+  private final ConcurrentHashMap<String, Object> _opening = new ConcurrentHashMap<String, Object>();
+
+  /**
+   * Caches the results of recent queries.
+   */
+  private final QueryResultCache _cache = new QueryResultCache(QueryResultCache.DEFAULT_CAPACITY);
+
+  /**
+   * Whether queries may be optimised in ways which change the scores but not the ranking.
+   */
+  private volatile boolean allowRescoring = false;
+
   /**
    * Maps MIME types to the ContentTranslator factory to use.
    */
@@ -135,6 +175,26 @@ public final class IndexManager implements Runnable {
    */
   private ExecutorService threadPool = null;
 
+  /**
+   * Number of threads used to commit, reopen and optimise indexes.
+   */
+  private int maintenanceThreads = DEFAULT_MAINTENANCE_THREADS;
+
+  /**
+   * Commits, reopens and optimises the indexes.
+   */
+  private ExecutorService maintenance = null;
+
+  /**
+   * The IDs of the indexes for which maintenance is scheduled or running.
+   */
+  private final Set<String> _maintained = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * The ID of the index from which the next maintenance pass starts.
+   */
+  private String nextMaintained = null;
+
   /**
    * Stop flag
    */
@@ -175,6 +235,61 @@ public final class IndexManager implements Runnable {
   // Public external methods
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * Returns the pool of the indexes opened for writing by this manager.
+   *
+   * <p>Use the pool to set the budgets of open writers, open files and memory, and the time after
+   * which an index which is not used is closed. Closed indexes are opened again when they are next
+   * accessed.
+   *
+   * @return the pool of the indexes opened for writing.
+   */
+  public IndexIOPool getIOPool() {
+    return this._pool;
+  }
+
+  /**
+   * Opens the specified indexes in parallel in the background.
+   *
+   * <p>Use this method at startup so that the indexes are opened before they are first used
+   * rather than on the request path. Requests for an index which is being opened wait for it to
+   * be opened.
+   *
+   * <p>This method returns immediately; failures are logged.
+   *
+   * @param indexes the indexes to open
+   * @param threads the number of threads used to open the indexes
+   */
+  public void preload(Collection<? extends Index> indexes, int threads) {
+    if (indexes.isEmpty()) return;
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, indexes.size())), new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "flint-preload");
+        t.setDaemon(true);
+        return t;
+      }
+
+    });
+    for (final Index index : indexes) {
+      executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            getIndexIO(index);
+          } catch (IndexException ex) {
+            LOGGER.error("Failed to open Index {}: {}", index, ex.getMessage(), ex);
+          }
+        }
+
+      });
+    }
+    // threads terminate once all the indexes have been opened
+    executor.shutdown();
+  }
+
   /**
    * Set the default translator to use when no factory matches a MIME type.
    *
@@ -201,6 +316,62 @@ public final class IndexManager implements Runnable {
     this.threadPriority = priority;
   }
 
+  /**
+   * Set the number of threads used to commit, reopen and optimise indexes.
+   *
+   * <p>This has no effect if called after the method <code>start()</code> is called.
+   *
+   * @param threads the number of maintenance threads (default is {@value #DEFAULT_MAINTENANCE_THREADS})
+   *
+   * @throws IllegalArgumentException if the number of threads is less than 1.
+   */
+  public void setMaintenanceThreads(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("The number of maintenance threads must be at least 1 but was "+threads);
+    this.maintenanceThreads = threads;
+  }
+
+  /**
+   * Set the maximum number of query results to keep in the cache.
+   *
+   * <p>Default is {@value QueryResultCache#DEFAULT_CAPACITY}, use <code>0</code> to disable the cache.
+   *
+   * @param size the maximum number of query results to cache.
+   *
+   * @throws IllegalArgumentException if the size is negative.
+   */
+  public void setQueryCacheSize(int size) {
+    this._cache.setCapacity(size);
+  }
+
+  /**
+   * Set whether queries may be optimised in ways which change the scores but not the ranking.
+   *
+   * <p>Default is <code>false</code>: queries are only optimised in ways which preserve the scores
+   * of the results. When <code>true</code>, the scores of the results must not be compared with
+   * scores from other queries or against fixed thresholds.
+   *
+   * @see Queries#optimize(Query, IndexReader, boolean)
+   *
+   * @param allow <code>true</code> to allow the optimisations which change the scores.
+   */
+  public void setAllowRescoring(boolean allow) {
+    if (this.allowRescoring != allow) {
+      this.allowRescoring = allow;
+      // cached results may have been scored differently
+      this._cache.clear();
+    }
+  }
+
+  /**
+   * Returns the cache used for query results, to retrieve its statistics or clear it.
+   *
+   * @return the cache used for query results.
+   */
+  public QueryResultCache getQueryCache() {
+    return this._cache;
+  }
+
   /**
    * Register a new factory with the all the MIME types supported by the factory.
    *
@@ -322,6 +493,29 @@ public final class IndexManager implements Runnable {
    * @throws IndexException if any error occurred while performing the search
    */
   public SearchResults query(Index index, SearchQuery query, SearchPaging paging) throws IndexException {
+    List<Facet> none = Collections.emptyList();
+    return query(index, query, paging, none);
+  }
+
+  /**
+   * Run a search on the given Index and compute the specified facets for the results.
+   *
+   * <p>Facets which implement {@link AccumulableFacet} are computed while collecting the results
+   * so that the query is only executed once; other facets are computed after the search.
+   *
+   * <p>Results which include facets are never served from the query cache.
+   *
+   * @param index  the Index to run the search on
+   * @param query  the query to run
+   * @param paging paging details (can be <code>null</code>)
+   * @param facets the facets to compute with the results
+   *
+   * @return the search results including the facets
+   *
+   * @throws IndexException if any error occurred while performing the search
+   */
+  public SearchResults query(Index index, SearchQuery query, SearchPaging paging, List<? extends Facet> facets)
+      throws IndexException {
     IndexIO io = getIndexIO(index);
     IndexSearcher searcher = null;
     try {
@@ -347,10 +541,31 @@ public final class IndexManager implements Runnable {
         LOGGER.debug("Performing search [{}] on index {}", query, index);
         Sort sort = query.getSort();
         if (sort == null) sort = Sort.INDEXORDER;
+        if (paging == null) paging = new SearchPaging();
+        int numHits = paging.getHitsPerPage() * paging.getPage();
+        boolean faceted = facets != null && !facets.isEmpty();
+        // check whether the results for the current reader are already available
+        String id = index.getIndexID();
+        long generation = io.getGeneration(searcher);
+        QueryResultCache.Results cached = generation >= 0 && !faceted? this._cache.get(id, generation, lquery, sort, numHits) : null;
+        if (cached != null) {
+          LOGGER.debug("Using cached results for [{}] on index {}", query, index);
+          return new SearchResults(query, cached.docs(), cached.totalHits(), paging, io, searcher);
+        }
         // load the scores
-        TopFieldCollector tfc = TopFieldCollector.create(sort, paging.getHitsPerPage() * paging.getPage(), true, true, false, true);
-        searcher.search(lquery, tfc);
-        return new SearchResults(query, tfc.topDocs().scoreDocs, tfc.getTotalHits(), paging, io, searcher);
+        TopFieldCollector tfc = TopFieldCollector.create(sort, numHits, true, true, false, true);
+        Query derived = DerivedFieldQuery.useDerivedFields(lquery, searcher.getIndexReader());
+        Query optimized = Queries.optimize(derived, searcher.getIndexReader(), this.allowRescoring);
+        LOGGER.debug("Optimised query {} as {}", lquery, optimized);
+        if (faceted) {
+          searchWithFacets(searcher, optimized, tfc, facets);
+        } else {
+          searcher.search(optimized, tfc);
+        }
+        ScoreDoc[] docs = tfc.topDocs().scoreDocs;
+        int totalHits = tfc.getTotalHits();
+        if (generation >= 0) this._cache.put(id, generation, lquery, sort, numHits, docs, totalHits);
+        return new SearchResults(query, docs, totalHits, paging, io, searcher, facets);
       } catch (IOException e) {
         try {
           io.releaseSearcher(searcher);
@@ -363,6 +578,59 @@ public final class IndexManager implements Runnable {
     return null;
   }
 
+  /**
+   * Collects all the documents matching the query on the given Index for export.
+   *
+   * <p>The matching documents are collected into a result set without scoring or sorting, and their
+   * stored fields are only loaded, in document order, when the export is iterated or written as
+   * XML. Use this method rather than a large page of search results to process all the
+   * documents matching a query.
+   *
+   * <p>IMPORTANT: the export holds a searcher until it is closed, which is done automatically
+   * once all the documents have been read.
+   *
+   * @param index  the Index to run the search on
+   * @param query  the query to run
+   * @param fields the names of the stored fields to load (all fields if none is specified)
+   *
+   * @return the export of the matching documents
+   *
+   * @throws IndexException if any error occurred while performing the search
+   */
+  public SearchExport export(Index index, SearchQuery query, String... fields) throws IndexException {
+    IndexIO io = getIndexIO(index);
+    IndexSearcher searcher = null;
+    try {
+      searcher = io.bookSearcher();
+    } catch (CorruptIndexException ex) {
+      throw new IndexException("Failed getting a Searcher to perform a query because the Index is corrupted", ex);
+    } catch (LockObtainFailedException ex) {
+      throw new IndexException("Failed getting a lock on the Index to perform a query", ex);
+    } catch (IOException ex) {
+      throw new IndexException("Failed getting a searcher to perform a query on the Index because of an I/O problem", ex);
+    }
+    if (searcher == null) return null;
+    boolean exported = false;
+    try {
+      Query lquery = query.toQuery();
+      if (lquery == null)
+        throw new IndexException("Failed performing a query on the Index because the query is null", new NullPointerException("Null query"));
+      LOGGER.debug("Exporting search [{}] on index {}", query, index);
+      ResultSetCollector collector = new ResultSetCollector(searcher.getIndexReader());
+      // the results are not scored
+      Query derived = DerivedFieldQuery.useDerivedFields(lquery, searcher.getIndexReader());
+      searcher.search(Queries.optimize(derived, searcher.getIndexReader(), true), collector);
+      Set<String> selected = fields.length > 0? new HashSet<String>(Arrays.asList(fields)) : null;
+      SearchExport export = new SearchExport(query, collector.getResultSet(), selected, io, searcher);
+      exported = true;
+      return export;
+    } catch (IOException ex) {
+      throw new IndexException("Failed performing a query on the Index because of an I/O problem", ex);
+    } finally {
+      if (!exported) releaseQuietly(index, searcher);
+    }
+  }
+
   // Lower level API providing access to Lucene objects
   // ----------------------------------------------------------------------------------------------
 
@@ -393,6 +661,34 @@ public final class IndexManager implements Runnable {
     }
   }
 
+  /**
+   * Returns a lease on a near real-time Reader on the index provided.
+   *
+   * <p>The reader is released when the lease is closed:</p>
+   * <pre>
+   *    try (Lease&lt;IndexReader&gt; lease = manager.leaseReader(index)) {
+   *      IndexReader reader = lease.get();
+   *      ...
+   *    }
+   * </pre>
+   *
+   * <p>Unlike {@link #grabReader(Index)}, the reader is released and the leak is logged if the
+   * lease is garbage collected without having been closed.
+   *
+   * @param index the index that the Index Reader will point to.
+   * @return the lease on the Index Reader to read from the index
+   *
+   * @throws IndexException If an IO error occurred when getting the reader.
+   */
+  public Lease<IndexReader> leaseReader(Index index) throws IndexException {
+    IndexIO io = getIndexIO(index);
+    try {
+      return Lease.reader(io, io.bookReader());
+    } catch (IOException ex) {
+      throw new IndexException("Failed getting a reader on the Index because of an I/O problem", ex);
+    }
+  }
+
   /**
    * Release an {@link IndexReader} after it has been used.
    *
@@ -468,6 +764,38 @@ public final class IndexManager implements Runnable {
     }
   }
 
+  /**
+   * Returns a lease on a near real-time Searcher on the index provided.
+   *
+   * <p>The searcher is released when the lease is closed:</p>
+   * <pre>
+   *    try (Lease&lt;IndexSearcher&gt; lease = manager.leaseSearcher(index)) {
+   *      IndexSearcher searcher = lease.get();
+   *      ...
+   *    }
+   * </pre>
+   *
+   * <p>Unlike {@link #grabSearcher(Index)}, the searcher is released and the leak is logged if
+   * the lease is garbage collected without having been closed.
+   *
+   * @param index the index that the searcher will work on.
+   * @return the lease on the index searcher to use on the index
+   *
+   * @throws IndexException If an IO error occurred when getting the searcher.
+   */
+  public Lease<IndexSearcher> leaseSearcher(Index index) throws IndexException {
+    IndexIO io = getIndexIO(index);
+    try {
+      return Lease.searcher(io, io.bookSearcher());
+    } catch (CorruptIndexException ex) {
+      throw new IndexException("Failed getting a Searcher to perform a query because the Index is corrupted", ex);
+    } catch (LockObtainFailedException ex) {
+      throw new IndexException("Failed getting a lock on the Index to perform a query", ex);
+    } catch (IOException ex) {
+      throw new IndexException("Failed getting a searcher to perform a query on the Index because of an I/O problem", ex);
+    }
+  }
+
   /**
    * Release an {@link IndexSearcher} after it has been used.
    *
@@ -545,6 +873,17 @@ public final class IndexManager implements Runnable {
         return t;
       }
 
+    });
+    this.maintenance = Executors.newFixedThreadPool(this.maintenanceThreads, new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "flint-maintenance");
+        t.setDaemon(true);
+        t.setPriority(IndexManager.this.threadPriority);
+        return t;
+      }
+
     });
     this.threadPool.execute(this);
   }
@@ -556,6 +895,8 @@ public final class IndexManager implements Runnable {
     this.shouldStop = true;
     // Stop the thread
     this.threadPool.shutdownNow();
+    // Let the maintenance in progress complete, the indexes are closed after
+    if (this.maintenance != null) this.maintenance.shutdown();
     // Close all indexes
     for (Entry<String, IndexIO> e : this._indexes.entrySet()) {
       String id = e.getKey();
@@ -566,6 +907,7 @@ public final class IndexManager implements Runnable {
         LOGGER.error("Failed to close Index {}: {}", id, ex.getMessage(), ex);
       }
     }
+    this._pool.shutdown();
   }
 
   /**
@@ -637,8 +979,8 @@ public final class IndexManager implements Runnable {
           }
           if (this.shouldStop) return;
         } else {
-          // check the number of opened readers then
-          OpenIndexManager.closeOldReaders();
+          // close the indexes which are not used or exceed the budgets of the pool
+          this._pool.enforce();
           // no jobs available, commit if possible
           checkForCommit();
           // Notify the end of the batch
@@ -795,53 +1137,144 @@ public final class IndexManager implements Runnable {
   private IndexIO getIndexIO(Index index) throws IndexException {
     IndexIO io = index == null ? null : this._indexes.get(index.getIndexID());
     if (io == null) {
-      LOGGER.debug("Creating a new IndexIO for {}", index);
-      try {
-        io = IndexIO.newInstance(index);
-      } catch (CorruptIndexException ex) {
-        throw new IndexException("Failed creating an Index I/O object for " + index.toString() + " because the Index is corrupted", ex);
-      } catch (LockObtainFailedException ex) {
-        // ok maybe it's because the IO object was created in the meantime
-        io = this._indexes.get(index.getIndexID());
+      String id = index.getIndexID();
+      // only one thread opens an index, others wait for it
+      Object lock = getOpeningLock(id);
+      synchronized (lock) {
+        io = this._indexes.get(id);
         if (io != null) return io;
-        throw new IndexException("Failed getting a lock on the Index to create an Index I/O object for " + index.toString(), ex);
-      } catch (IOException ex) {
-        throw new IndexException("Failed creating an Index I/O object for " + index.toString() + " because of an I/O problem", ex);
+        LOGGER.debug("Creating a new IndexIO for {}", index);
+        try {
+          io = IndexIO.newInstance(index, this._pool);
+          this._indexes.put(id, io);
+        } catch (CorruptIndexException ex) {
+          throw new IndexException("Failed creating an Index I/O object for " + index.toString() + " because the Index is corrupted", ex);
+        } catch (LockObtainFailedException ex) {
+          throw new IndexException("Failed getting a lock on the Index to create an Index I/O object for " + index.toString(), ex);
+        } catch (IOException ex) {
+          throw new IndexException("Failed creating an Index I/O object for " + index.toString() + " because of an I/O problem", ex);
+        } finally {
+          // also when the index could not be opened, so that the next caller tries again
+          this._opening.remove(id, lock);
+        }
       }
-      this._indexes.put(index.getIndexID(), io);
     }
     return io;
   }
 
   /**
-   * Loop through the index and check if any of them need committing, also checks if they can be optimized.
+   * Returns the lock used to open the specified index.
+   *
+   * @param id the ID of the index.
+   * @return the lock to synchronize on.
    */
-  private void checkForCommit() {
-    // loop through the indexes and check which one needs committing
-    List<IndexIO> ios = new ArrayList<IndexIO>(this._indexes.values());
-    for (IndexIO io : ios) {
-      try {
-        io.maybeReopen(); // XXX: We seem to need to check whether we need to reopen...
-        io.maybeCommit();
-      } catch (IndexException ex) {
-        LOGGER.error("Failed to perform commit", ex);
+  private Object getOpeningLock(String id) {
+    Object lock = this._opening.get(id);
+    if (lock == null) {
+      Object created = new Object();
+      lock = this._opening.putIfAbsent(id, created);
+      if (lock == null) lock = created;
+    }
+    return lock;
+  }
+
+  /**
+   * Performs the search and computes the facets in the same pass.
+   *
+   * @param searcher  the searcher to use
+   * @param query     the query to run
+   * @param collector the collector for the results
+   * @param facets    the facets to compute
+   *
+   * @throws IOException if thrown by the searcher
+   */
+  private static void searchWithFacets(IndexSearcher searcher, Query query, Collector collector, List<? extends Facet> facets)
+      throws IOException {
+    List<FacetAccumulator> accumulators = new ArrayList<FacetAccumulator>();
+    List<Facet> others = new ArrayList<Facet>();
+    for (Facet facet : facets) {
+      if (facet instanceof AccumulableFacet) {
+        accumulators.add(((AccumulableFacet)facet).newAccumulator(searcher.getIndexReader()));
+      } else {
+        others.add(facet);
       }
+    }
+    FacetCollector fc = new FacetCollector(collector, accumulators);
+    searcher.search(query, fc);
+    fc.finish();
+    // Facets which cannot be accumulated are computed separately
+    for (Facet facet : others) {
+      facet.compute(searcher, query);
+    }
+  }
+
+  /**
+   * Schedules the commit and reopening of the indexes which have been modified, and their
+   * optimisation once the manager has been inactive for a while.
+   *
+   * <p>The maintenance runs on a small pool of threads so that a slow index does not hold up the
+   * others. The indexes are visited in a round-robin fashion: if a job arrives, the pass stops and
+   * the next pass resumes from the next index.
+   */
+  private void checkForCommit() {
+    List<String> ids = new ArrayList<String>(this._indexes.keySet());
+    if (ids.isEmpty()) return;
+    Collections.sort(ids);
+    boolean optimise = (System.currentTimeMillis() - this._lastActivity.longValue()) > INACTIVE_OPTIMISE_TIME;
+    // resume from where the previous pass stopped
+    int start = this.nextMaintained != null? Collections.binarySearch(ids, this.nextMaintained) : 0;
+    if (start < 0) start = -start - 1;
+    this.nextMaintained = null;
+    for (int i = 0; i < ids.size(); i++) {
+      String id = ids.get((start + i) % ids.size());
+      IndexIO io = this._indexes.get(id);
+      if (io == null) continue;
+      // discard the results cached for the previous reader
+      long generation = io.getGeneration();
+      if (generation >= 0) this._cache.invalidate(id, generation);
+      scheduleMaintenance(id, io, optimise);
       // make sure there's no job waiting
-      if (!this._indexQueue.isEmpty()) return;
+      if (!this._indexQueue.isEmpty()) {
+        this.nextMaintained = ids.get((start + i + 1) % ids.size());
+        return;
+      }
     }
-    // ok optimise now?
-    if ((System.currentTimeMillis() - this._lastActivity.longValue()) > INACTIVE_OPTIMISE_TIME) {
-      ios = new ArrayList<IndexIO>(this._indexes.values());
-      // loop through the indexes and optimise
-      for (IndexIO io : ios) {
-        try {
-          io.maybeOptimise();
-        } catch (IndexException ex) {
-          LOGGER.error("Failed to perform optimise", ex);
+  }
+
+  /**
+   * Schedules the maintenance of the specified index unless it is clean or already scheduled.
+   *
+   * @param id       the ID of the index
+   * @param io       the index I/O
+   * @param optimise whether the index should be optimised
+   */
+  private void scheduleMaintenance(final String id, final IndexIO io, final boolean optimise) {
+    IndexIO.State state = io.state;
+    if (state == IndexIO.State.CLEAN || (state == IndexIO.State.NEEDS_OPTIMISE && !optimise)) return;
+    if (!this._maintained.add(id)) return;
+    try {
+      this.maintenance.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            io.maybeReopen(); // XXX: We seem to need to check whether we need to reopen...
+            io.maybeCommit();
+            // discard the results cached for the previous reader
+            long generation = io.getGeneration();
+            if (generation >= 0) IndexManager.this._cache.invalidate(id, generation);
+            if (optimise) io.maybeOptimise();
+          } catch (IndexException ex) {
+            LOGGER.error("Failed to perform commit or optimise on Index {}", id, ex);
+          } finally {
+            IndexManager.this._maintained.remove(id);
+          }
         }
-        // make sure there's no job waiting
-        if (!this._indexQueue.isEmpty()) return;
-      }
+
+      });
+    } catch (RejectedExecutionException ex) {
+      // the manager is stopping
+      this._maintained.remove(id);
     }
   }
 
@@ -0,0 +1,185 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects leases which become unreachable without having been closed.
+ *
+ * <p>Each lease is tracked using a phantom reference so that, unlike a finalizer, it does not
+ * delay the collection of the lease. The release action must not refer to the lease.
+ *
+ * <p>A daemon thread waits for leases to be collected, then releases their resources and logs
+ * the place where they were acquired, so that leaked readers are released even when the index
+ * is not used anymore.
+ *
+ * <p>The library is built for Java 8, so this class does the work of a
+ * <code>java.lang.ref.Cleaner</code> which is only available from Java 9.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class LeakDetector {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(LeakDetector.class);
+
+  /**
+   * The queue of unreachable leases.
+   */
+  private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+
+  /**
+   * Keeps the trackers reachable until they are released.
+   */
+  private static final Set<Tracker> TRACKERS = Collections.synchronizedSet(
+      Collections.newSetFromMap(new IdentityHashMap<Tracker, Boolean>()));
+
+  /**
+   * Releases the resources of the leases as they are collected.
+   */
+  private static final Thread REAPER = new Thread(new Runnable() {
+
+    @Override
+    public void run() {
+      while (true) {
+        try {
+          reap((Tracker)QUEUE.remove());
+        } catch (InterruptedException ex) {
+          return;
+        } catch (RuntimeException ex) {
+          LOGGER.error("Failed to release leaked lease", ex);
+        }
+      }
+    }
+
+  }, "flint-lease-reaper");
+
+  static {
+    REAPER.setDaemon(true);
+    REAPER.start();
+  }
+
+  /**
+   * Utility class.
+   */
+  private LeakDetector() {
+  }
+
+  /**
+   * Starts tracking the specified lease.
+   *
+   * @param lease   The lease to track.
+   * @param release The action releasing the leased resource, it must not refer to the lease.
+   * @param what    A description of the leased resource for the logs.
+   *
+   * @return the tracker to release the resource.
+   */
+  public static Tracker track(Object lease, Closeable release, String what) {
+    Tracker tracker = new Tracker(lease, release, what);
+    TRACKERS.add(tracker);
+    return tracker;
+  }
+
+  /**
+   * Releases the resource of a lease which has been collected without being closed.
+   *
+   * @param tracker The tracker of the collected lease.
+   */
+  private static void reap(Tracker tracker) {
+    if (!TRACKERS.contains(tracker)) return;
+    LOGGER.warn("Releasing leaked lease on "+tracker._what+" which was acquired at:", tracker._acquired);
+    try {
+      tracker.release();
+    } catch (IOException ex) {
+      LOGGER.error("Failed to release leaked lease on "+tracker._what, ex);
+    }
+  }
+
+  /**
+   * Tracks a lease and releases its resource at most once.
+   *
+   * @author Christophe Lauret
+   * @version 19 October 2026
+   */
+  static final class Tracker extends PhantomReference<Object> {
+
+    /**
+     * The action releasing the leased resource.
+     */
+    private final Closeable _release;
+
+    /**
+     * A description of the leased resource.
+     */
+    private final String _what;
+
+    /**
+     * Where the lease was acquired.
+     */
+    private final Throwable _acquired;
+
+    /**
+     * Whether the resource has been released.
+     */
+    private boolean _released = false;
+
+    /**
+     * Creates a new tracker.
+     *
+     * @param lease   The lease to track.
+     * @param release The action releasing the leased resource.
+     * @param what    A description of the leased resource.
+     */
+    private Tracker(Object lease, Closeable release, String what) {
+      super(lease, QUEUE);
+      this._release = release;
+      this._what = what;
+      this._acquired = new Throwable("Lease acquired by "+Thread.currentThread().getName());
+    }
+
+    /**
+     * Indicates whether the resource has been released.
+     *
+     * @return <code>true</code> if released; <code>false</code> otherwise.
+     */
+    public synchronized boolean isReleased() {
+      return this._released;
+    }
+
+    /**
+     * Releases the leased resource and stops tracking the lease.
+     *
+     * <p>Does nothing if the resource has already been released.
+     *
+     * @throws IOException If thrown by the release action.
+     */
+    public void release() throws IOException {
+      synchronized (this) {
+        if (this._released) return;
+        this._released = true;
+      }
+      TRACKERS.remove(this);
+      clear();
+      this._release.close();
+    }
+  }
+
+}
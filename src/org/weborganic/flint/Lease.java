@@ -0,0 +1,177 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A lease on a searcher or reader booked from an index.
+ *
+ * <p>The searcher or reader is released when the lease is closed, it should be used in a
+ * try-with-resources statement:
+ * <pre>
+ *    try (Lease&lt;IndexSearcher&gt; lease = manager.leaseSearcher(index)) {
+ *      IndexSearcher searcher = lease.get();
+ *      ...
+ *    }
+ * </pre>
+ *
+ * <p>Leases which are not closed are detected as soon as they have been garbage collected: the
+ * searcher or reader is then released and a warning including where the lease was acquired is
+ * logged.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @param <T> The type of resource leased.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class Lease<T> implements AutoCloseable {
+
+  /**
+   * The leased resource.
+   */
+  private final T _resource;
+
+  /**
+   * Releases the resource.
+   */
+  private final LeakDetector.Tracker _tracker;
+
+  /**
+   * Creates a new lease.
+   *
+   * @param resource The leased resource.
+   * @param release  The action releasing the resource, it must not refer to this lease.
+   * @param what     A description of the resource.
+   */
+  private Lease(T resource, Closeable release, String what) {
+    this._resource = resource;
+    this._tracker = LeakDetector.track(this, release, what);
+  }
+
+  /**
+   * Returns the leased resource.
+   *
+   * @return the leased resource.
+   *
+   * @throws IllegalStateException If the lease has been closed.
+   */
+  public T get() {
+    if (this._tracker.isReleased()) throw new IllegalStateException("Lease already closed");
+    return this._resource;
+  }
+
+  /**
+   * Indicates whether this lease has been closed.
+   *
+   * @return <code>true</code> if closed; <code>false</code> otherwise.
+   */
+  public boolean isClosed() {
+    return this._tracker.isReleased();
+  }
+
+  /**
+   * Releases the leased resource.
+   *
+   * <p>Does nothing if the lease has already been closed.
+   *
+   * @throws IOException If thrown while releasing the resource.
+   */
+  @Override
+  public void close() throws IOException {
+    this._tracker.release();
+  }
+
+  /**
+   * Creates a lease on a searcher which has been booked from the specified index.
+   *
+   * @param io       The index the searcher was booked from.
+   * @param searcher The searcher to release when the lease is closed.
+   *
+   * @return the corresponding lease.
+   */
+  public static Lease<IndexSearcher> searcher(IndexIO io, IndexSearcher searcher) {
+    return new Lease<IndexSearcher>(searcher, new SearcherRelease(io, searcher), "searcher of "+io.indexID());
+  }
+
+  /**
+   * Creates a lease on a reader which has been booked from the specified index.
+   *
+   * @param io     The index the reader was booked from.
+   * @param reader The reader to release when the lease is closed.
+   *
+   * @return the corresponding lease.
+   */
+  public static Lease<IndexReader> reader(IndexIO io, IndexReader reader) {
+    return new Lease<IndexReader>(reader, new ReaderRelease(io, reader), "reader of "+io.indexID());
+  }
+
+  // Private classes
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Releases a searcher.
+   */
+  private static final class SearcherRelease implements Closeable {
+
+    /** The index the searcher was booked from. */
+    private final IndexIO _io;
+
+    /** The searcher to release. */
+    private final IndexSearcher _searcher;
+
+    /**
+     * @param io       The index the searcher was booked from.
+     * @param searcher The searcher to release.
+     */
+    public SearcherRelease(IndexIO io, IndexSearcher searcher) {
+      this._io = io;
+      this._searcher = searcher;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this._io.releaseSearcher(this._searcher);
+    }
+  }
+
+  /**
+   * Releases a reader.
+   */
+  private static final class ReaderRelease implements Closeable {
+
+    /** The index the reader was booked from. */
+    private final IndexIO _io;
+
+    /** The reader to release. */
+    private final IndexReader _reader;
+
+    /**
+     * @param io     The index the reader was booked from.
+     * @param reader The reader to release.
+     */
+    public ReaderRelease(IndexIO io, IndexReader reader) {
+      this._io = io;
+      this._reader = reader;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this._io.releaseReader(this._reader);
+    }
+  }
+
+}
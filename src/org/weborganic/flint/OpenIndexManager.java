@@ -20,9 +20,13 @@ import org.slf4j.LoggerFactory;
  *
  * <p>Handles closing of indexes that have been opened for a long time if there are too many open ones.
  *
+ * @deprecated Indexes are no longer registered with this class, use the {@link IndexIOPool} of the
+ *   {@link IndexManager} instead.
+ *
  * @author Jean-Baptiste Reure
  * @version 26 February 2010
  */
+@Deprecated
 public final class OpenIndexManager {
 
   /**
@@ -0,0 +1,405 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A least recently used cache of search results used by the {@link IndexManager}.
+ *
+ * <p>Entries are keyed by index, reader generation, Lucene query, sort and the number of hits
+ * collected. Because the reader generation changes every time a searcher is swapped, an entry can
+ * never be served for a different view of the index; entries for older generations of an index
+ * are discarded as soon as a newer generation is seen.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class QueryResultCache {
+
+  /**
+   * Logger for this class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultCache.class);
+
+  /**
+   * The default number of entries in the cache.
+   */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  /**
+   * The cached entries in access order.
+   */
+  private final LinkedHashMap<Key, Results> _entries;
+
+  /**
+   * Maps index IDs to the latest reader generation seen for that index.
+   */
+  private final Map<String, Long> _generations = new LinkedHashMap<String, Long>();
+
+  /**
+   * Number of requests served from the cache.
+   */
+  private final AtomicLong _hits = new AtomicLong(0);
+
+  /**
+   * Number of requests which could not be served from the cache.
+   */
+  private final AtomicLong _misses = new AtomicLong(0);
+
+  /**
+   * Number of entries removed to make space for new ones.
+   */
+  private final AtomicLong _evictions = new AtomicLong(0);
+
+  /**
+   * Number of entries removed because the reader was reopened.
+   */
+  private final AtomicLong _invalidations = new AtomicLong(0);
+
+  /**
+   * The maximum number of entries in this cache; zero to disable it.
+   */
+  private volatile int capacity;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param capacity The maximum number of entries in this cache; zero to disable the cache.
+   *
+   * @throws IllegalArgumentException If the capacity is negative.
+   */
+  public QueryResultCache(int capacity) throws IllegalArgumentException {
+    if (capacity < 0) throw new IllegalArgumentException("capacity < 0");
+    this.capacity = capacity;
+    this._entries = new LinkedHashMap<Key, Results>(16, 0.75f, true) {
+      /** As required by the Serializable interface */
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Results> eldest) {
+        boolean evict = size() > QueryResultCache.this.capacity;
+        if (evict) QueryResultCache.this._evictions.incrementAndGet();
+        return evict;
+      }
+    };
+  }
+
+  /**
+   * Sets the maximum number of entries in this cache.
+   *
+   * <p>If the new capacity is lower than the current number of entries, the least recently used
+   * entries are removed immediately.
+   *
+   * @param capacity The maximum number of entries; zero to disable the cache.
+   *
+   * @throws IllegalArgumentException If the capacity is negative.
+   */
+  public synchronized void setCapacity(int capacity) throws IllegalArgumentException {
+    if (capacity < 0) throw new IllegalArgumentException("capacity < 0");
+    this.capacity = capacity;
+    Iterator<Key> keys = this._entries.keySet().iterator();
+    while (this._entries.size() > capacity && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+      this._evictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the maximum number of entries in this cache.
+   *
+   * @return the maximum number of entries in this cache.
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Returns the cached results for the specified search.
+   *
+   * @param index      The ID of the index.
+   * @param generation The generation of the reader used for the search.
+   * @param query      The Lucene query.
+   * @param sort       The sort order.
+   * @param numHits    The number of hits to collect.
+   *
+   * @return the cached results or <code>null</code>.
+   */
+  synchronized Results get(String index, long generation, Query query, Sort sort, int numHits) {
+    if (this.capacity == 0) return null;
+    checkGeneration(index, generation);
+    Results entry = this._entries.get(new Key(index, generation, query, sort, numHits));
+    if (entry != null) {
+      this._hits.incrementAndGet();
+    } else {
+      this._misses.incrementAndGet();
+    }
+    return entry;
+  }
+
+  /**
+   * Caches the results of the specified search.
+   *
+   * <p>The query and hits are copied so that later changes to the originals cannot corrupt the cache.
+   *
+   * @param index      The ID of the index.
+   * @param generation The generation of the reader used for the search.
+   * @param query      The Lucene query.
+   * @param sort       The sort order.
+   * @param numHits    The number of hits to collect.
+   * @param docs       The hits.
+   * @param totalHits  The total number of hits.
+   */
+  synchronized void put(String index, long generation, Query query, Sort sort, int numHits, ScoreDoc[] docs, int totalHits) {
+    if (this.capacity == 0) return;
+    checkGeneration(index, generation);
+    // The generation may be older if the reader was swapped during the search
+    Long latest = this._generations.get(index);
+    if (latest != null && latest.longValue() > generation) return;
+    this._entries.put(new Key(index, generation, (Query)query.clone(), sort, numHits), new Results(docs, totalHits));
+  }
+
+  /**
+   * Removes all the entries for the specified index which were produced with an older reader.
+   *
+   * @param index      The ID of the index.
+   * @param generation The generation of the current reader.
+   */
+  synchronized void invalidate(String index, long generation) {
+    checkGeneration(index, generation);
+  }
+
+  /**
+   * Removes all the entries from this cache.
+   */
+  public synchronized void clear() {
+    this._entries.clear();
+    this._generations.clear();
+  }
+
+  /**
+   * Returns the number of entries currently in this cache.
+   *
+   * @return the number of entries currently in this cache.
+   */
+  public synchronized int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * Returns the number of searches which were served from this cache.
+   *
+   * @return the number of cache hits.
+   */
+  public long getHits() {
+    return this._hits.get();
+  }
+
+  /**
+   * Returns the number of searches which could not be served from this cache.
+   *
+   * @return the number of cache misses.
+   */
+  public long getMisses() {
+    return this._misses.get();
+  }
+
+  /**
+   * Returns the number of entries removed to make space for more recent entries.
+   *
+   * @return the number of evictions.
+   */
+  public long getEvictions() {
+    return this._evictions.get();
+  }
+
+  /**
+   * Returns the number of entries removed because the index reader was reopened.
+   *
+   * @return the number of invalidated entries.
+   */
+  public long getInvalidations() {
+    return this._invalidations.get();
+  }
+
+  @Override
+  public String toString() {
+    return "QueryResultCache[size="+size()+",capacity="+this.capacity+",hits="+getHits()
+          +",misses="+getMisses()+",evictions="+getEvictions()+",invalidations="+getInvalidations()+"]";
+  }
+
+  // private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Discards all entries for the index if the specified generation is more recent.
+   *
+   * <p>Must be called while holding the lock on this object.
+   *
+   * @param index      The ID of the index.
+   * @param generation The generation of the reader.
+   */
+  private void checkGeneration(String index, long generation) {
+    Long latest = this._generations.get(index);
+    if (latest == null || latest.longValue() < generation) {
+      this._generations.put(index, Long.valueOf(generation));
+      if (latest == null) return;
+      int removed = 0;
+      for (Iterator<Key> i = this._entries.keySet().iterator(); i.hasNext();) {
+        Key k = i.next();
+        if (k._index.equals(index) && k._generation < generation) {
+          i.remove();
+          removed++;
+        }
+      }
+      if (removed > 0) {
+        this._invalidations.addAndGet(removed);
+        LOGGER.debug("Invalidated {} cached results for index {}", removed, index);
+      }
+    }
+  }
+
+  // Inner classes
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * The key for the cached results.
+   */
+  private static final class Key {
+
+    /** The index ID. */
+    private final String _index;
+
+    /** The reader generation. */
+    private final long _generation;
+
+    /** The Lucene query. */
+    private final Query _query;
+
+    /** The sort order. */
+    private final Sort _sort;
+
+    /** The number of hits to collect. */
+    private final int _numHits;
+
+    /** Pre-computed hash code. */
+    private final int _hashCode;
+
+    /**
+     * Creates a new key.
+     *
+     * @param index      The index ID.
+     * @param generation The reader generation.
+     * @param query      The Lucene query.
+     * @param sort       The sort order.
+     * @param numHits    The number of hits to collect.
+     */
+    public Key(String index, long generation, Query query, Sort sort, int numHits) {
+      this._index = index;
+      this._generation = generation;
+      this._query = query;
+      this._sort = sort;
+      this._numHits = numHits;
+      int h = index.hashCode();
+      h = h * 31 + (int)(generation ^ (generation >>> 32));
+      h = h * 31 + query.hashCode();
+      h = h * 31 + (sort != null ? sort.hashCode() : 0);
+      this._hashCode = h * 31 + numHits;
+    }
+
+    @Override
+    public int hashCode() {
+      return this._hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) return true;
+      if (!(o instanceof Key)) return false;
+      Key k = (Key)o;
+      return this._hashCode == k._hashCode
+          && this._generation == k._generation
+          && this._numHits == k._numHits
+          && this._index.equals(k._index)
+          && this._query.equals(k._query)
+          && (this._sort == null ? k._sort == null : this._sort.equals(k._sort));
+    }
+  }
+
+  /**
+   * The cached results.
+   *
+   * <p>The hits are copied when cached and when returned, so that consumers cannot modify the
+   * cached hits.
+   */
+  static final class Results {
+
+    /** The hits. */
+    private final ScoreDoc[] _docs;
+
+    /** The total number of hits. */
+    private final int _totalHits;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param docs      The hits.
+     * @param totalHits The total number of hits.
+     */
+    Results(ScoreDoc[] docs, int totalHits) {
+      this._docs = copy(docs);
+      this._totalHits = totalHits;
+    }
+
+    /**
+     * @return the hits.
+     */
+    ScoreDoc[] docs() {
+      return copy(this._docs);
+    }
+
+    /**
+     * @return the total number of hits.
+     */
+    int totalHits() {
+      return this._totalHits;
+    }
+
+    /**
+     * @param docs The hits to copy.
+     * @return a copy of the hits and of each hit.
+     */
+    private static ScoreDoc[] copy(ScoreDoc[] docs) {
+      ScoreDoc[] copy = new ScoreDoc[docs.length];
+      for (int i = 0; i < docs.length; i++) {
+        ScoreDoc d = docs[i];
+        if (d instanceof FieldDoc) {
+          Comparable<?>[] fields = ((FieldDoc)d).fields;
+          copy[i] = new FieldDoc(d.doc, d.score, fields != null? fields.clone() : null);
+        } else if (d != null) {
+          copy[i] = new ScoreDoc(d.doc, d.score);
+        }
+      }
+      return copy;
+    }
+  }
+}
@@ -8,6 +8,7 @@
 package org.weborganic.flint;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
@@ -44,6 +45,17 @@ public class SearcherManager {
    */
   private IndexSearcher currentSearcher;
 
+  /**
+   * Sequence used to assign generations, shared by all managers so that a generation is never reused
+   * even when the manager for an index is recreated.
+   */
+  private static final AtomicLong GENERATIONS = new AtomicLong(0);
+
+  /**
+   * The generation of the current searcher, changes every time the searcher is swapped.
+   */
+  private long generation = GENERATIONS.incrementAndGet();
+
   /**
    * Create a new SearcherManager using the given writer.
    *
@@ -66,6 +78,25 @@ public class SearcherManager {
     this.currentSearcher = new IndexSearcher(reader);
   }
 
+  /**
+   * Returns the generation of the current searcher.
+   *
+   * @return the generation of the current searcher.
+   */
+  protected synchronized long getGeneration() {
+    return this.generation;
+  }
+
+  /**
+   * Returns the generation of the specified searcher.
+   *
+   * @param searcher a searcher returned by this manager.
+   * @return the generation of the searcher if it is the current searcher; <code>-1</code> otherwise.
+   */
+  protected synchronized long getGeneration(IndexSearcher searcher) {
+    return searcher == this.currentSearcher ? this.generation : -1;
+  }
+
   protected int getRefCount() {
     return this.currentSearcher.getIndexReader().getRefCount();
   }
@@ -135,6 +166,7 @@ public class SearcherManager {
         this.currentSearcher.getIndexReader().hashCode(), newSearcher.getIndexReader().hashCode());
     release(this.currentSearcher);
     this.currentSearcher = newSearcher;
+    this.generation = GENERATIONS.incrementAndGet();
   }
 
   /**
@@ -0,0 +1,31 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.api;
+
+import org.weborganic.flint.util.Beta;
+
+/**
+ * Implemented by indexes which declare whether they can be modified.
+ *
+ * <p>When an index declares its access, Flint does not need to probe the file system to find out
+ * whether the index can be opened for writing.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public interface DeclaredAccess {
+
+  /**
+   * Returns the access to the index.
+   *
+   * @return the access to the index or <code>null</code> to let Flint detect it.
+   */
+  IndexAccess getAccess();
+
+}
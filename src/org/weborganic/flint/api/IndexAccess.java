@@ -0,0 +1,27 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.api;
+
+import org.weborganic.flint.util.Beta;
+
+/**
+ * The access to an index declared by implementations of {@link DeclaredAccess}.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public enum IndexAccess {
+
+  /** The index can only be searched. */
+  READ_ONLY,
+
+  /** The index can be searched and modified. */
+  READ_WRITE
+
+}
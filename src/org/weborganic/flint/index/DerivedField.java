@@ -0,0 +1,351 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Fieldable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A field derived at indexing time from the tokens of another field to speed up wildcard queries.
+ *
+ * <p>A derived field is named after the field it is derived from followed by a dot and the name
+ * of the derivation, for example <code>title.reversed</code>. Its tokens are computed from the
+ * tokens of the original field:
+ * <ul>
+ *   <li><code>REVERSED</code>: each token is reversed, so that a leading wildcard query
+ *   (<code>*ing</code>) becomes a prefix query (<code>gni*</code>);</li>
+ *   <li><code>EDGE_NGRAM</code>: each token is expanded to all its prefixes up to
+ *   {@value #MAX_EDGE_NGRAM_LENGTH} characters, so that a trailing wildcard query
+ *   (<code>luc*</code>) becomes a term query;</li>
+ *   <li><code>NGRAM</code>: each token is split into grams of {@value #NGRAM_SIZE} characters at
+ *   consecutive positions, so that an infix query (<code>*uce*</code>) becomes a term or phrase
+ *   query.</li>
+ * </ul>
+ *
+ * <p>Since derived fields are declared for each field of each document, a derived field may only
+ * be used for a query if it was built for every document which has the original field. Each
+ * document records in the {@link #COVERAGE_FIELD} the derived fields which were built for all the
+ * indexed values of their original field, see {@link #addCoverage(Document)}.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public enum DerivedField {
+
+  /**
+   * Each token is reversed.
+   */
+  REVERSED("reversed") {
+    @Override
+    public TokenStream filter(TokenStream input) {
+      return new ReversedFilter(input);
+    }
+  },
+
+  /**
+   * Each token is expanded to its prefixes.
+   */
+  EDGE_NGRAM("edge-ngram") {
+    @Override
+    public TokenStream filter(TokenStream input) {
+      return new GramFilter(input, true);
+    }
+  },
+
+  /**
+   * Each token is split into grams of the same size.
+   */
+  NGRAM("ngram") {
+    @Override
+    public TokenStream filter(TokenStream input) {
+      return new GramFilter(input, false);
+    }
+  };
+
+  /**
+   * The maximum length of the prefixes of an edge n-gram field.
+   */
+  public static final int MAX_EDGE_NGRAM_LENGTH = 16;
+
+  /**
+   * The size of the grams of an n-gram field.
+   */
+  public static final int NGRAM_SIZE = 3;
+
+  /**
+   * The name of the field listing the derived fields which cover their original field in a document.
+   */
+  public static final String COVERAGE_FIELD = "_derived";
+
+  /**
+   * The logger for this class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(DerivedField.class);
+
+  /**
+   * The name of the derivation.
+   */
+  private final String _name;
+
+  /**
+   * Protect constructor, prevent creation of other instances.
+   *
+   * @param name The name of the derivation.
+   */
+  private DerivedField(String name) {
+    this._name = name;
+  }
+
+  /**
+   * Returns the name of the field derived from the specified field.
+   *
+   * @param field The name of the original field.
+   * @return The name of the derived field.
+   */
+  public String toFieldName(String field) {
+    return field + '.' + this._name;
+  }
+
+  /**
+   * Returns the tokens of the derived field from the tokens of the original field.
+   *
+   * @param input The tokens of the original field.
+   * @return The tokens of the derived field.
+   */
+  public abstract TokenStream filter(TokenStream input);
+
+  /**
+   * Return the String representation of this object.
+   *
+   * @return "reversed", "edge-ngram" or "ngram".
+   */
+  @Override
+  public String toString() {
+    return this._name;
+  }
+
+  /**
+   * Returns the derivation of the specified field name.
+   *
+   * @param field The name of a field.
+   * @return The derivation if the field is a derived field; <code>null</code> otherwise.
+   */
+  public static DerivedField forFieldName(String field) {
+    int dot = field.lastIndexOf('.');
+    if (dot <= 0) return null;
+    String suffix = field.substring(dot + 1);
+    for (DerivedField d : values()) {
+      if (d._name.equals(suffix)) return d;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the name of the field a derived field is derived from.
+   *
+   * @param field The name of a derived field.
+   * @return The name of the original field.
+   */
+  public static String toOriginalFieldName(String field) {
+    return field.substring(0, field.lastIndexOf('.'));
+  }
+
+  /**
+   * Parses a space separated list of derivations.
+   *
+   * <p>Unknown derivations are ignored.
+   *
+   * @param derive The list of derivations, for example "reversed ngram".
+   * @return The corresponding derivations.
+   */
+  public static EnumSet<DerivedField> parse(String derive) {
+    EnumSet<DerivedField> derived = EnumSet.noneOf(DerivedField.class);
+    if (derive == null) return derived;
+    for (String name : derive.trim().split("\\s+")) {
+      if (name.length() == 0) continue;
+      boolean found = false;
+      for (DerivedField d : values()) {
+        if (d._name.equals(name)) {
+          derived.add(d);
+          found = true;
+        }
+      }
+      if (!found) LOGGER.warn("Invalid derived field: {} - ignored", name);
+    }
+    return derived;
+  }
+
+  /**
+   * Records the derived fields which cover their original field in the specified document.
+   *
+   * <p>A derived field covers its original field in a document if it was built for each indexed
+   * value of the original field. For each such derived field, its name is added as a term of the
+   * {@link #COVERAGE_FIELD}.
+   *
+   * <p>This method must be invoked once all the fields have been added to the document.
+   *
+   * @param document The document.
+   */
+  public static void addCoverage(Document document) {
+    // Count the indexed values of each field
+    Map<String, int[]> counts = new HashMap<String, int[]>();
+    for (Fieldable f : document.getFields()) {
+      if (!f.isIndexed()) continue;
+      int[] count = counts.get(f.name());
+      if (count == null) {
+        count = new int[1];
+        counts.put(f.name(), count);
+      }
+      count[0]++;
+    }
+    // Each value of the original field produces one value for each derived field
+    List<String> covering = new ArrayList<String>();
+    for (Map.Entry<String, int[]> e : counts.entrySet()) {
+      if (forFieldName(e.getKey()) == null) continue;
+      int[] original = counts.get(toOriginalFieldName(e.getKey()));
+      if (original != null && original[0] == e.getValue()[0]) covering.add(e.getKey());
+    }
+    for (String name : covering) {
+      document.add(new Field(COVERAGE_FIELD, name, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+    }
+  }
+
+  // Private classes ------------------------------------------------------------------------------
+
+  /**
+   * Reverses each token.
+   */
+  private static final class ReversedFilter extends TokenFilter {
+
+    /** The term of the current token. */
+    private final TermAttribute _term;
+
+    /**
+     * @param input The tokens to reverse.
+     */
+    public ReversedFilter(TokenStream input) {
+      super(input);
+      this._term = addAttribute(TermAttribute.class);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+      if (!this.input.incrementToken()) return false;
+      char[] buffer = this._term.termBuffer();
+      for (int i = 0, j = this._term.termLength() - 1; i < j; i++, j--) {
+        char c = buffer[i];
+        buffer[i] = buffer[j];
+        buffer[j] = c;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Splits each token into prefixes or grams of the same size.
+   *
+   * <p>The grams of a token are at consecutive positions and the grams of two tokens are separated
+   * by a gap, so that a phrase query on grams only matches within a token.
+   */
+  private static final class GramFilter extends TokenFilter {
+
+    /** The term of the current token. */
+    private final TermAttribute _term;
+
+    /** The position increment of the current token. */
+    private final PositionIncrementAttribute _increment;
+
+    /** <code>true</code> for prefixes; <code>false</code> for grams. */
+    private final boolean _edge;
+
+    /** The text of the token being split. */
+    private char[] token = new char[32];
+
+    /** The length of the token being split. */
+    private int length = 0;
+
+    /** The position increment of the token being split. */
+    private int increment = 0;
+
+    /** The position increments of the tokens which did not produce any gram. */
+    private int skipped = 0;
+
+    /** The index of the next gram or prefix length, -1 when no token is being split. */
+    private int next = -1;
+
+    /** The state of the token being split. */
+    private State state;
+
+    /**
+     * @param input The tokens to split.
+     * @param edge  <code>true</code> for prefixes; <code>false</code> for grams.
+     */
+    public GramFilter(TokenStream input, boolean edge) {
+      super(input);
+      this._edge = edge;
+      this._term = addAttribute(TermAttribute.class);
+      this._increment = addAttribute(PositionIncrementAttribute.class);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+      while (true) {
+        if (this.next < 0) {
+          if (!this.input.incrementToken()) return false;
+          this.length = this._term.termLength();
+          if (this.token.length < this.length) this.token = new char[this.length];
+          System.arraycopy(this._term.termBuffer(), 0, this.token, 0, this.length);
+          this.increment = this._increment.getPositionIncrement();
+          this.state = captureState();
+          this.next = this._edge? 1 : 0;
+        }
+        if (this._edge? this.next <= Math.min(this.length, MAX_EDGE_NGRAM_LENGTH) : this.next + NGRAM_SIZE <= this.length) {
+          restoreState(this.state);
+          boolean first = this.next == (this._edge? 1 : 0);
+          if (this._edge) {
+            this._term.setTermBuffer(this.token, 0, this.next);
+            this._increment.setPositionIncrement(first? this.increment + this.skipped : 0);
+          } else {
+            this._term.setTermBuffer(this.token, this.next, NGRAM_SIZE);
+            this._increment.setPositionIncrement(first? this.increment + this.skipped + 1 : 1);
+          }
+          if (first) this.skipped = 0;
+          this.next++;
+          return true;
+        }
+        // Keep the position of tokens too short to produce any gram
+        if (this.next == (this._edge? 1 : 0)) this.skipped += this.increment;
+        this.next = -1;
+      }
+    }
+
+    @Override
+    public void reset() throws IOException {
+      super.reset();
+      this.next = -1;
+      this.skipped = 0;
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.index;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * An analyzer which tokenizes derived fields using the tokens of the field they are derived from.
+ *
+ * <p>The tokens of a derived field such as <code>title.reversed</code> are computed by the
+ * wrapped analyzer for the <code>title</code> field and then transformed by the corresponding
+ * {@link DerivedField}; all other fields are tokenized by the wrapped analyzer.
+ *
+ * <p>Only the fields built by {@link FieldBuilder#buildDerived()}, that is the fields which were
+ * explicitly derived, are transformed: their value is supplied through a reader created by
+ * {@link #toReader(String)}. Other fields are tokenized by the wrapped analyzer even if their
+ * name ends with the name of a derivation, so wrapping an analyzer has no effect on indexes which
+ * do not derive fields.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class DerivedFieldAnalyzer extends Analyzer {
+
+  /**
+   * The wrapped analyzer.
+   */
+  private final Analyzer _analyzer;
+
+  /**
+   * Creates a new analyzer for derived fields.
+   *
+   * @param analyzer The analyzer to wrap.
+   */
+  public DerivedFieldAnalyzer(Analyzer analyzer) {
+    this._analyzer = analyzer;
+  }
+
+  @Override
+  public TokenStream tokenStream(String field, Reader reader) {
+    DerivedField derived = reader instanceof DerivedValue? DerivedField.forFieldName(field) : null;
+    if (derived == null) return this._analyzer.tokenStream(field, reader);
+    return derived.filter(this._analyzer.tokenStream(DerivedField.toOriginalFieldName(field), reader));
+  }
+
+  @Override
+  public TokenStream reusableTokenStream(String field, Reader reader) throws IOException {
+    // The token streams of derived fields are not reused as they share the wrapped analyzer's
+    if (reader instanceof DerivedValue) return tokenStream(field, reader);
+    return this._analyzer.reusableTokenStream(field, reader);
+  }
+
+  @Override
+  public int getPositionIncrementGap(String field) {
+    return this._analyzer.getPositionIncrementGap(field);
+  }
+
+  /**
+   * Returns the analyzer wrapped by this analyzer.
+   *
+   * @return the analyzer wrapped by this analyzer.
+   */
+  public Analyzer getAnalyzer() {
+    return this._analyzer;
+  }
+
+  /**
+   * Returns a reader for the value of a derived field, so that this analyzer derives its tokens.
+   *
+   * @param value The value of the original field.
+   * @return the reader to use as the value of the derived field.
+   */
+  static Reader toReader(String value) {
+    return new DerivedValue(value);
+  }
+
+  /**
+   * Marks the value of a field which must be derived.
+   */
+  private static final class DerivedValue extends StringReader {
+
+    /**
+     * @param value The value of the original field.
+     */
+    DerivedValue(String value) {
+      super(value);
+    }
+  }
+
+}
@@ -13,9 +13,12 @@ import java.io.IOException;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.weborganic.flint.IndexManager;
+import org.weborganic.flint.api.DeclaredAccess;
 import org.weborganic.flint.api.Index;
+import org.weborganic.flint.api.IndexAccess;
+import org.weborganic.flint.util.Directories;
+import org.weborganic.flint.util.DirectoryType;
 
 /**
  * Implementation of Index, uses a File object to build a Lucene index.
@@ -23,7 +26,7 @@ import org.weborganic.flint.api.Index;
  * @author Jean-Baptiste Reure
  * @version 27 February 2013
  */
-public class DirectoryIndex implements Index {
+public class DirectoryIndex implements Index, DeclaredAccess {
 
   /**
    * The Index Directory object.
@@ -40,6 +43,11 @@ public class DirectoryIndex implements Index {
    */
   private final String id;
 
+  /**
+   * The declared access to this index (<code>null</code> to detect it).
+   */
+  private volatile IndexAccess access;
+
   /**
    * Simple constructor that builds a new Index from the provided directory.
    *
@@ -49,8 +57,22 @@ public class DirectoryIndex implements Index {
    * @throws IllegalArgumentException is if the specified file cannot be used as an index.
    */
   public DirectoryIndex(File dir) throws IllegalArgumentException {
+    this(dir, DirectoryType.DEFAULT);
+  }
+
+  /**
+   * Builds a new Index from the provided directory using the specified type of Lucene directory.
+   *
+   * <p>An index loaded in memory with {@link DirectoryType#RAM} is read only unless declared
+   * otherwise, and changes are not written to disk.</p>
+   *
+   * @param dir  the directory containing the Lucene index.
+   * @param type the type of Lucene directory to use.
+   * @throws IllegalArgumentException is if the specified file cannot be used as an index.
+   */
+  public DirectoryIndex(File dir, DirectoryType type) throws IllegalArgumentException {
     try {
-      this.indexDirectory = FSDirectory.open(dir);
+      this.indexDirectory = Directories.open(dir, type);
     } catch (IOException ex) {
       throw new IllegalArgumentException("Unable to use directory " + dir.getAbsolutePath() + " as an index", ex);
     }
@@ -87,4 +109,25 @@ public class DirectoryIndex implements Index {
     return this.id;
   }
 
+  /**
+   * The access to this index.
+   *
+   * @return the declared access or <code>null</code> if it should be detected.
+   */
+  @Override
+  public IndexAccess getAccess() {
+    return this.access;
+  }
+
+  /**
+   * Declares whether this index can be modified.
+   *
+   * <p>By default, the access is not declared and is detected when the index is first opened.
+   *
+   * @param access the access to this index (<code>null</code> to detect it).
+   */
+  public void setAccess(IndexAccess access) {
+    this.access = access;
+  }
+
 }
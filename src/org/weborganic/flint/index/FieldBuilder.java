@@ -7,10 +7,16 @@
  */
 package org.weborganic.flint.index;
 
+import java.io.StringReader;
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
 
+import org.apache.lucene.analysis.KeywordTokenizer;
 import org.apache.lucene.document.CompressionTools;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Field;
@@ -100,6 +106,11 @@ public final class FieldBuilder {
    */
   private float _boost = DEFAULT_BOOST_VALUE;
 
+  /**
+   * The fields to derive from the field to build.
+   */
+  private EnumSet<DerivedField> _derived = EnumSet.noneOf(DerivedField.class);
+
   // Setters
   // ----------------------------------------------------------------------------------------------
 
@@ -318,6 +329,33 @@ public final class FieldBuilder {
     return this;
   }
 
+  /**
+   * Sets the fields to derive from the field to build (only applies to indexed string fields).
+   *
+   * @see DerivedField
+   *
+   * @param derived The fields to derive.
+   * @return this builder.
+   */
+  public FieldBuilder derive(DerivedField... derived) {
+    this._derived = EnumSet.noneOf(DerivedField.class);
+    Collections.addAll(this._derived, derived);
+    return this;
+  }
+
+  /**
+   * Sets the fields to derive from the field to build as a space separated list.
+   *
+   * @see DerivedField#parse(String)
+   *
+   * @param derived The fields to derive, for example "reversed ngram".
+   * @return this builder.
+   */
+  public FieldBuilder derive(String derived) {
+    this._derived = DerivedField.parse(derived);
+    return this;
+  }
+
   // Getters
   // ----------------------------------------------------------------------------------------------
 
@@ -403,6 +441,7 @@ public final class FieldBuilder {
     this._resolution = null;
     this._numeric = null;
     this._precisionStep = NumericUtils.PRECISION_STEP_DEFAULT;
+    this._derived = EnumSet.noneOf(DerivedField.class);
   }
 
   /**
@@ -464,6 +503,45 @@ public final class FieldBuilder {
     return field;
   }
 
+  /**
+   * Builds the fields derived from the field in this builder.
+   *
+   * <p>Derived fields are indexed, not stored and without norms. The tokens of a derived field
+   * are computed from the tokens of the original field: when the original field is analyzed, the
+   * index writer must use a {@link DerivedFieldAnalyzer} which recognises the value of the
+   * returned fields; otherwise, the value is used as a single token.
+   *
+   * <p>Numeric, date and unindexed fields are never derived.
+   *
+   * <p>Derived fields are only used by queries if the coverage of the document is recorded using
+   * {@link DerivedField#addCoverage(org.apache.lucene.document.Document)} once all its fields
+   * have been added.
+   *
+   * @return the derived fields, may be empty.
+   *
+   * @throws IllegalStateException If the builder is not ready.
+   */
+  public List<Fieldable> buildDerived() throws IllegalStateException {
+    checkReady();
+    if (this._derived.isEmpty() || this._numeric != null || this._dateformat != null || this._index == Index.NO)
+      return Collections.emptyList();
+    List<Fieldable> fields = new ArrayList<Fieldable>(this._derived.size());
+    String value = this._value.toString();
+    boolean analyzed = this._index == Index.ANALYZED || this._index == Index.ANALYZED_NO_NORMS;
+    for (DerivedField derived : this._derived) {
+      String name = derived.toFieldName(this._name);
+      Field field;
+      if (analyzed) {
+        field = new Field(name, DerivedFieldAnalyzer.toReader(value));
+      } else {
+        field = new Field(name, derived.filter(new KeywordTokenizer(new StringReader(value))));
+      }
+      field.setOmitNorms(true);
+      fields.add(field);
+    }
+    return fields;
+  }
+
   /**
    * Checks that required attributes have been set
    *
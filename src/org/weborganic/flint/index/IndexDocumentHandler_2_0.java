@@ -18,6 +18,7 @@ import java.util.TimeZone;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.Fieldable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
@@ -204,6 +205,7 @@ final class IndexDocumentHandler_2_0 extends DefaultHandler implements IndexDocu
     if (this._document.getFields().isEmpty()) {
       LOGGER.warn("This document is empty - will not be stored");
     } else {
+      DerivedField.addCoverage(this._document);
       this.documents.add(this._document);
     }
     this._document = null;
@@ -236,6 +238,8 @@ final class IndexDocumentHandler_2_0 extends DefaultHandler implements IndexDocu
       this.builder.numeric(type);
       this.builder.precisionStep(atts.getValue("precision-step"));
     }
+    // Derived fields
+    this.builder.derive(atts.getValue("derive"));
     this._isField = true;
   }
 
@@ -260,6 +264,11 @@ final class IndexDocumentHandler_2_0 extends DefaultHandler implements IndexDocu
         this._document.add(this.builder.build());
       }
 
+      // derived fields
+      for (Fieldable derived : this.builder.buildDerived()) {
+        this._document.add(derived);
+      }
+
     } catch (IllegalStateException ex) {
       LOGGER.warn("Unable to create field: "+this.builder.name(), ex);
     } catch (IllegalArgumentException ex) {
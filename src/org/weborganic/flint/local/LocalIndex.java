@@ -16,7 +16,11 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.weborganic.flint.api.DeclaredAccess;
 import org.weborganic.flint.api.Index;
+import org.weborganic.flint.api.IndexAccess;
+import org.weborganic.flint.util.Directories;
+import org.weborganic.flint.util.DirectoryType;
 
 /**
  * A basic implementation of a local index.
@@ -24,7 +28,7 @@ import org.weborganic.flint.api.Index;
  * @author Christophe Lauret
  * @version 27 February 2013
  */
-public final class LocalIndex implements Index {
+public final class LocalIndex implements Index, DeclaredAccess {
 
   /**
    * A logger for this class and to provide for Flint.
@@ -46,6 +50,26 @@ public final class LocalIndex implements Index {
    */
   private volatile Directory _directory;
 
+  /**
+   * The declared access to this index (<code>null</code> to detect it).
+   */
+  private volatile IndexAccess _access;
+
+  /**
+   * The type of directory to open.
+   */
+  private volatile DirectoryType _type = DirectoryType.DEFAULT;
+
+  /**
+   * The heuristics used to choose the directory for {@link DirectoryType#AUTO}.
+   */
+  private volatile Directories.Heuristics _heuristics = Directories.Heuristics.DEFAULT;
+
+  /**
+   * Whether to load the index files in the operating system cache when the directory is opened.
+   */
+  private volatile boolean _warm = false;
+
   /**
    * Create a new local index.
    *
@@ -95,6 +119,48 @@ public final class LocalIndex implements Index {
     return this._analyzer;
   }
 
+  @Override
+  public IndexAccess getAccess() {
+    return this._access;
+  }
+
+  /**
+   * Declares whether this index can be modified.
+   *
+   * <p>By default, the access is not declared and is detected when the index is first opened.
+   *
+   * @param access the access to this index (<code>null</code> to detect it).
+   */
+  public void setAccess(IndexAccess access) {
+    this._access = access;
+  }
+
+  /**
+   * Sets the type of Lucene directory used for this index.
+   *
+   * <p>Indexes are only loaded in memory if they are declared as read only. This method has no
+   * effect once the directory has been opened.
+   *
+   * @param type       the type of directory (default is {@link DirectoryType#DEFAULT}).
+   * @param heuristics the heuristics used when the type is {@link DirectoryType#AUTO}.
+   */
+  public void setDirectoryType(DirectoryType type, Directories.Heuristics heuristics) {
+    this._type = type != null? type : DirectoryType.DEFAULT;
+    this._heuristics = heuristics != null? heuristics : Directories.Heuristics.DEFAULT;
+  }
+
+  /**
+   * Sets whether the index files should be loaded in the operating system cache when the
+   * directory is opened.
+   *
+   * <p>This method has no effect once the directory has been opened.
+   *
+   * @param warm <code>true</code> to load the files when the directory is opened.
+   */
+  public void setWarmUp(boolean warm) {
+    this._warm = warm;
+  }
+
   @Override
   public String toString() {
     return this.getIndexID();
@@ -161,8 +227,18 @@ public final class LocalIndex implements Index {
    */
   private void ensureHasDirectory() {
     try {
-      if (this._directory == null)
-        this._directory = FSDirectory.open(this._location);
+      if (this._directory == null) {
+        boolean readOnly = this._access == IndexAccess.READ_ONLY;
+        DirectoryType type = this._type;
+        if (type == DirectoryType.AUTO) {
+          type = this._heuristics.choose(this._location, readOnly);
+        } else if (type == DirectoryType.RAM && !readOnly) {
+          LOGGER.warn("Index {} is not declared as read only, it will not be loaded in memory", this);
+          type = DirectoryType.DEFAULT;
+        }
+        this._directory = Directories.open(this._location, type);
+        if (this._warm && type != DirectoryType.RAM) Directories.warm(this._location);
+      }
     } catch (IOException ex) {
       LOGGER.error("Unable to return a directory on local index", ex);
     }
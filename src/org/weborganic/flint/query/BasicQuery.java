@@ -13,8 +13,11 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.lucene.misc.ChainedFilter;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
@@ -207,7 +210,11 @@ public class BasicQuery<T extends SearchParameter> implements FlintQuery, Search
   // ----------------------------------------------------------------------------------------------
 
   /**
-   * Builds the query for the specified arguments using the base query and
+   * Builds the query for the specified arguments using the base query and the parameters.
+   *
+   * <p>The base query and the parameters which are not {@link FilterParameter}s are combined
+   * as required clauses of a boolean query; the filter parameters are combined into a filter
+   * so that they restrict the results without being scored.
    *
    * @param base       the base query
    * @param parameters the parameters
@@ -217,13 +224,24 @@ public class BasicQuery<T extends SearchParameter> implements FlintQuery, Search
   private static Query toQuery(SearchParameter base, List<SearchParameter> parameters) {
     // No parameters, just use the base.
     if (parameters.isEmpty()) return base.toQuery();
-    // Make an AND of all parameters
+    // Make an AND of all scoring parameters
+    Query q = base.toQuery();
     BooleanQuery query = new BooleanQuery();
-    query.add(base.toQuery(), Occur.MUST);
+    query.add(q, Occur.MUST);
+    List<Filter> filters = new ArrayList<Filter>();
     for (SearchParameter p : parameters) {
-      query.add(p.toQuery(), Occur.MUST);
+      if (p instanceof FilterParameter) {
+        Filter filter = ((FilterParameter)p).toFilter();
+        if (filter != null) filters.add(filter);
+      } else {
+        query.add(p.toQuery(), Occur.MUST);
+      }
     }
-    return query;
+    Query scoring = query.clauses().size() == 1? q : query;
+    // Restrict using the filters
+    if (filters.isEmpty()) return scoring;
+    Filter filter = filters.size() == 1? filters.get(0) : new ChainedFilter(filters.toArray(new Filter[filters.size()]), ChainedFilter.AND);
+    return new FilteredQuery(scoring, filter);
   }
 
   // factory methods
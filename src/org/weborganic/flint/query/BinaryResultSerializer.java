@@ -0,0 +1,151 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.query;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * Writes search results in a compact length-prefixed binary format.
+ *
+ * <p>All numbers are big-endian. The output starts with a header:
+ * <pre>
+ *   magic       4 bytes   "FLR1"
+ *   total       int32     total number of hits
+ *   first-hit   int32     rank of the first hit of the page (starting at 1)
+ *   count       int32     number of hits in the page
+ * </pre>
+ * <p>followed by each hit:
+ * <pre>
+ *   score       float32
+ *   fields      int32     number of fields
+ *   for each field:
+ *     name      int32 length + UTF-8 bytes
+ *     type      byte      0 for text, 1 for binary
+ *     value     int32 length + UTF-8 bytes for text or raw bytes for binary
+ * </pre>
+ *
+ * <p>Text values are encoded from the stored strings without intermediate copies and binary
+ * values, including compressed values, are written as stored.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class BinaryResultSerializer implements ResultSerializer {
+
+  /**
+   * The magic number identifying the format and its version.
+   */
+  private static final byte[] MAGIC = new byte[]{'F', 'L', 'R', '1'};
+
+  /**
+   * Type of text values.
+   */
+  public static final byte TEXT = 0;
+
+  /**
+   * Type of binary values.
+   */
+  public static final byte BINARY = 1;
+
+  /**
+   * The stream for the current output.
+   */
+  private DataOutputStream out = null;
+
+  /**
+   * A buffer to encode text.
+   */
+  private byte[] buffer = new byte[256];
+
+  @Override
+  public String getMediaType() {
+    return "application/octet-stream";
+  }
+
+  @Override
+  public void start(OutputStream stream, String index, int totalHits, SearchPaging paging) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(stream));
+    int first = paging.getFirstHit();
+    this.out.write(MAGIC);
+    this.out.writeInt(totalHits);
+    this.out.writeInt(first);
+    this.out.writeInt(Math.max(0, paging.getLastHit(totalHits) - first + 1));
+  }
+
+  @Override
+  public void document(float score, Document doc) throws IOException {
+    List<Fieldable> fields = doc.getFields();
+    this.out.writeFloat(score);
+    this.out.writeInt(fields.size());
+    for (Fieldable f : fields) {
+      text(f.name());
+      if (f.isBinary()) {
+        this.out.writeByte(BINARY);
+        this.out.writeInt(f.getBinaryLength());
+        this.out.write(f.getBinaryValue(), f.getBinaryOffset(), f.getBinaryLength());
+      } else {
+        this.out.writeByte(TEXT);
+        text(f.stringValue() != null? f.stringValue() : "");
+      }
+    }
+  }
+
+  @Override
+  public void end() throws IOException {
+    this.out.flush();
+    this.out = null;
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Writes the length of the text in UTF-8 followed by its UTF-8 bytes.
+   *
+   * @param text The text to write.
+   *
+   * @throws IOException If thrown by the output stream.
+   */
+  private void text(String text) throws IOException {
+    final int length = text.length();
+    if (this.buffer.length < length * 3) this.buffer = new byte[length * 3];
+    byte[] b = this.buffer;
+    int n = 0;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        b[n++] = (byte)c;
+      } else if (c < 0x800) {
+        b[n++] = (byte)(0xC0 | c >> 6);
+        b[n++] = (byte)(0x80 | c & 0x3F);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, text.charAt(++i));
+        b[n++] = (byte)(0xF0 | cp >> 18);
+        b[n++] = (byte)(0x80 | cp >> 12 & 0x3F);
+        b[n++] = (byte)(0x80 | cp >> 6 & 0x3F);
+        b[n++] = (byte)(0x80 | cp & 0x3F);
+      } else {
+        if (c >= '\uD800' && c <= '\uDFFF') c = '\uFFFD';
+        b[n++] = (byte)(0xE0 | c >> 12);
+        b[n++] = (byte)(0x80 | c >> 6 & 0x3F);
+        b[n++] = (byte)(0x80 | c & 0x3F);
+      }
+    }
+    this.out.writeInt(n);
+    this.out.write(b, 0, n);
+  }
+
+}
@@ -11,9 +11,11 @@ import java.io.IOException;
 import java.util.Date;
 
 import org.apache.lucene.document.DateTools.Resolution;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermRangeQuery;
+import org.weborganic.flint.search.FilterCache;
 import org.weborganic.flint.util.Dates;
 
 import com.topologi.diffx.xml.XMLWriter;
@@ -26,7 +28,7 @@ import com.topologi.diffx.xml.XMLWriter;
  *
  * @version 10 September 2010
  */
-public final class DateParameter implements SearchParameter {
+public final class DateParameter implements FilterParameter {
 
   /**
    * The date field.
@@ -138,6 +140,16 @@ public final class DateParameter implements SearchParameter {
     return this._query;
   }
 
+  /**
+   * Returns the cached filter for the query of this parameter.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Filter toFilter() {
+    return FilterCache.getFilter(toQuery());
+  }
+
   /**
    * Serialises the search query as XML.
    *
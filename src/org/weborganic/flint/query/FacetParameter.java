@@ -9,8 +9,10 @@ package org.weborganic.flint.query;
 
 import java.io.IOException;
 
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.weborganic.flint.search.Facet;
+import org.weborganic.flint.search.FilterCache;
 
 import com.topologi.diffx.xml.XMLWriter;
 
@@ -20,7 +22,7 @@ import com.topologi.diffx.xml.XMLWriter;
  * @author Christophe Lauret
  * @version 15 August 2010
  */
-public final class FacetParameter implements SearchParameter {
+public final class FacetParameter implements FilterParameter {
 
   /**
    * The facet that is selected.
@@ -86,6 +88,16 @@ public final class FacetParameter implements SearchParameter {
     return this._query;
   }
 
+  /**
+   * Returns the cached filter for the query of this parameter.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Filter toFilter() {
+    return FilterCache.getFilter(toQuery());
+  }
+
   /**
    * Returns the XML for this facet parameter.
    *
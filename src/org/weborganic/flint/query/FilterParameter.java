@@ -0,0 +1,33 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.query;
+
+import org.apache.lucene.search.Filter;
+
+/**
+ * A search parameter which only restricts the results of a query without affecting their score.
+ *
+ * <p>When combined with other parameters in a {@link BasicQuery}, filter parameters are applied as
+ * filters rather than as scored clauses.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+public interface FilterParameter extends SearchParameter {
+
+  /**
+   * Returns the Lucene filter corresponding to this object.
+   *
+   * <p>Implementations should return the same filter instance for equivalent parameters so that
+   * the filter's cached document sets can be reused across searches.
+   *
+   * @return The filter object or <code>null</code> if this parameter is empty.
+   */
+  Filter toFilter();
+
+}
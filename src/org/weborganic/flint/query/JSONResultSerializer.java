@@ -0,0 +1,158 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.query;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.weborganic.flint.util.Beta;
+import org.weborganic.flint.util.Fields;
+
+/**
+ * Writes search results as JSON.
+ *
+ * <p>The output has the following structure:
+ * <pre>
+ * {"index":"...","total":120,
+ *  "page":{"per-page":20,"current":1,"last":6,"first-hit":1,"last-hit":20},
+ *  "documents":[{"score":1.5,"fields":[{"name":"title","value":"..."}, ...]}, ...]}
+ * </pre>
+ *
+ * <p>Fields are listed in the order they are stored so that fields with multiple values are
+ * preserved. Values are written as stored; compressed values are decompressed.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class JSONResultSerializer implements ResultSerializer {
+
+  /**
+   * The UTF-8 character set.
+   */
+  private static final Charset UTF8 = Charset.forName("utf-8");
+
+  /**
+   * Hexadecimal digits for escaped characters.
+   */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * The writer for the current output.
+   */
+  private Writer out = null;
+
+  /**
+   * The number of documents written to the current output.
+   */
+  private int count = 0;
+
+  @Override
+  public String getMediaType() {
+    return "application/json";
+  }
+
+  @Override
+  public void start(OutputStream stream, String index, int totalHits, SearchPaging paging) throws IOException {
+    this.out = new BufferedWriter(new OutputStreamWriter(stream, UTF8));
+    this.count = 0;
+    this.out.write('{');
+    if (index != null) {
+      this.out.write("\"index\":");
+      string(index);
+      this.out.write(',');
+    }
+    this.out.write("\"total\":");
+    this.out.write(Integer.toString(totalHits));
+    this.out.write(",\"page\":{\"per-page\":");
+    this.out.write(Integer.toString(paging.getHitsPerPage()));
+    this.out.write(",\"current\":");
+    this.out.write(Integer.toString(paging.getPage()));
+    this.out.write(",\"last\":");
+    this.out.write(Integer.toString(paging.getPageCount(totalHits)));
+    this.out.write(",\"first-hit\":");
+    this.out.write(Integer.toString(paging.getFirstHit()));
+    this.out.write(",\"last-hit\":");
+    this.out.write(Integer.toString(paging.getLastHit(totalHits)));
+    this.out.write("},\"documents\":[");
+  }
+
+  @Override
+  public void document(float score, Document doc) throws IOException {
+    if (this.count++ > 0) this.out.write(',');
+    this.out.write("{\"score\":");
+    this.out.write(Float.isNaN(score) || Float.isInfinite(score)? "null" : Float.toString(score));
+    this.out.write(",\"fields\":[");
+    boolean first = true;
+    for (Fieldable f : doc.getFields()) {
+      String value = Fields.toString(f);
+      if (value == null) continue;
+      if (!first) this.out.write(',');
+      this.out.write("{\"name\":");
+      string(f.name());
+      this.out.write(",\"value\":");
+      string(value);
+      this.out.write('}');
+      first = false;
+    }
+    this.out.write("]}");
+  }
+
+  @Override
+  public void end() throws IOException {
+    this.out.write("]}");
+    this.out.flush();
+    this.out = null;
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Writes the specified text as a JSON string, escaping unsafe characters.
+   *
+   * <p>Runs of safe characters are written directly from the string.
+   *
+   * @param text The text to write.
+   *
+   * @throws IOException If thrown by the writer.
+   */
+  private void string(String text) throws IOException {
+    final Writer w = this.out;
+    w.write('"');
+    int start = 0;
+    final int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') continue;
+      if (i > start) w.write(text, start, i - start);
+      switch (c) {
+        case '"':  w.write("\\\""); break;
+        case '\\': w.write("\\\\"); break;
+        case '\n': w.write("\\n"); break;
+        case '\r': w.write("\\r"); break;
+        case '\t': w.write("\\t"); break;
+        default:
+          w.write("\\u");
+          w.write(HEX[c >> 12 & 0xF]);
+          w.write(HEX[c >> 8 & 0xF]);
+          w.write(HEX[c >> 4 & 0xF]);
+          w.write(HEX[c & 0xF]);
+      }
+      start = i + 1;
+    }
+    if (length > start) w.write(text, start, length - start);
+    w.write('"');
+  }
+
+}
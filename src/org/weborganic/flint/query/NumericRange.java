@@ -9,8 +9,10 @@ package org.weborganic.flint.query;
 
 import java.io.IOException;
 
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
+import org.weborganic.flint.search.FilterCache;
 import org.weborganic.flint.util.Beta;
 
 import com.topologi.diffx.xml.XMLWriter;
@@ -30,7 +32,7 @@ import com.topologi.diffx.xml.XMLWriter;
  * @version 22 September 2010
  */
 @Beta
-public final class NumericRange<T extends Number> implements SearchParameter {
+public final class NumericRange<T extends Number> implements FilterParameter {
 
   /**
    * The numeric field.
@@ -154,6 +156,16 @@ public final class NumericRange<T extends Number> implements SearchParameter {
     return this._query;
   }
 
+  /**
+   * Returns the cached filter for the query of this parameter.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Filter toFilter() {
+    return FilterCache.getFilter(toQuery());
+  }
+
   /**
    * Serialises the search query as XML.
    *
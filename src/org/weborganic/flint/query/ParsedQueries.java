@@ -0,0 +1,261 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.query;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryParser.MultiFieldQueryParser;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MultiPhraseQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.weborganic.flint.IndexManager;
+
+/**
+ * A bounded cache of queries produced by the Lucene query parsers.
+ *
+ * <p>Parsing a predicate requires a new parser and the analysis of each term, which is wasteful
+ * when the same predicates are submitted repeatedly. This class keeps the most recently parsed
+ * queries and returns a copy of the cached query whenever the same predicate is parsed again with
+ * the same fields, analyzer and options.
+ *
+ * <p>The copies are deep: boolean clauses, phrases and sub-queries are never shared with the
+ * cached query, so callers are free to modify the queries they get.
+ *
+ * <p>Analyzers are compared by identity, so callers should reuse their analyzer instances; the
+ * {@link #STANDARD_ANALYZER} is shared by all the queries which do not specify an analyzer. The
+ * cache only holds weak references to the analyzers, so that they can be garbage collected.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class ParsedQueries {
+
+  /**
+   * The analyzer used by default - analyzers are thread-safe and reuse their token streams.
+   */
+  static final Analyzer STANDARD_ANALYZER = new StandardAnalyzer(IndexManager.LUCENE_VERSION);
+
+  /**
+   * The maximum number of parsed queries to keep.
+   */
+  private static final int MAX_QUERIES = 256;
+
+  /**
+   * Maps parsing arguments to the parsed queries, in access order.
+   */
+  private static final LinkedHashMap<Key, Query> QUERIES = new LinkedHashMap<Key, Query>(64, 0.75f, true) {
+    /** As required by the Serializable interface */
+    private static final long serialVersionUID = 1L;
+    @Override
+    protected boolean removeEldestEntry(Entry<Key, Query> eldest) {
+      return size() > MAX_QUERIES;
+    }
+  };
+
+  /**
+   * Utility class.
+   */
+  private ParsedQueries() {
+  }
+
+  /**
+   * Parses the predicate using the Lucene {@link QueryParser}.
+   *
+   * @param predicate            The predicate to parse.
+   * @param field                The default field (may be <code>null</code>).
+   * @param analyzer             The analyzer to use.
+   * @param allowLeadingWildcard Whether a wildcard is allowed as the first character of a term.
+   *
+   * @return a copy of the parsed query.
+   *
+   * @throws ParseException If the predicate could not be parsed.
+   */
+  static Query parse(String predicate, String field, Analyzer analyzer, boolean allowLeadingWildcard)
+      throws ParseException {
+    Key key = new Key(predicate, field, null, analyzer, allowLeadingWildcard);
+    Query query = get(key);
+    if (query == null) {
+      QueryParser parser = new QueryParser(IndexManager.LUCENE_VERSION, field, analyzer);
+      parser.setAllowLeadingWildcard(allowLeadingWildcard);
+      query = parser.parse(predicate);
+      put(key, query);
+    }
+    return copy(query);
+  }
+
+  /**
+   * Parses the predicate using the Lucene {@link MultiFieldQueryParser}.
+   *
+   * @param predicate The predicate to parse.
+   * @param fields    The fields to search.
+   * @param analyzer  The analyzer to use.
+   *
+   * @return a copy of the parsed query.
+   *
+   * @throws ParseException If the predicate could not be parsed.
+   */
+  static Query parse(String predicate, String[] fields, Analyzer analyzer) throws ParseException {
+    Key key = new Key(predicate, null, fields, analyzer, false);
+    Query query = get(key);
+    if (query == null) {
+      MultiFieldQueryParser parser = new MultiFieldQueryParser(IndexManager.LUCENE_VERSION, fields, analyzer);
+      query = parser.parse(predicate);
+      put(key, query);
+    }
+    return copy(query);
+  }
+
+  /**
+   * Returns a deep copy of the specified query.
+   *
+   * <p>Boolean queries are copied recursively with new clauses and phrase queries with new lists
+   * of terms, so that no mutable part is shared with the original query. Other queries are
+   * cloned, which is sufficient for the queries produced by the parsers since their terms are
+   * immutable.
+   *
+   * @param query The query to copy.
+   * @return a copy of the query which can be safely modified.
+   */
+  static Query copy(Query query) {
+    if (query instanceof BooleanQuery) {
+      BooleanQuery bq = (BooleanQuery)query;
+      BooleanQuery copy = new BooleanQuery(bq.isCoordDisabled());
+      copy.setMinimumNumberShouldMatch(bq.getMinimumNumberShouldMatch());
+      copy.setBoost(bq.getBoost());
+      for (BooleanClause clause : bq.getClauses()) {
+        copy.add(copy(clause.getQuery()), clause.getOccur());
+      }
+      return copy;
+    } else if (query instanceof PhraseQuery) {
+      PhraseQuery pq = (PhraseQuery)query;
+      PhraseQuery copy = new PhraseQuery();
+      copy.setSlop(pq.getSlop());
+      copy.setBoost(pq.getBoost());
+      Term[] terms = pq.getTerms();
+      int[] positions = pq.getPositions();
+      for (int i = 0; i < terms.length; i++) {
+        copy.add(terms[i], positions[i]);
+      }
+      return copy;
+    } else if (query instanceof MultiPhraseQuery) {
+      MultiPhraseQuery mpq = (MultiPhraseQuery)query;
+      MultiPhraseQuery copy = new MultiPhraseQuery();
+      copy.setSlop(mpq.getSlop());
+      copy.setBoost(mpq.getBoost());
+      int[] positions = mpq.getPositions();
+      int i = 0;
+      for (Term[] terms : mpq.getTermArrays()) {
+        copy.add(terms.clone(), positions[i++]);
+      }
+      return copy;
+    }
+    return (Query)query.clone();
+  }
+
+  // private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * @param key The parsing arguments.
+   * @return the cached query or <code>null</code>.
+   */
+  private static Query get(Key key) {
+    synchronized (QUERIES) {
+      return QUERIES.get(key);
+    }
+  }
+
+  /**
+   * @param key   The parsing arguments.
+   * @param query The parsed query.
+   */
+  private static void put(Key key, Query query) {
+    synchronized (QUERIES) {
+      QUERIES.put(key, query);
+    }
+  }
+
+  /**
+   * The arguments used to parse a query.
+   */
+  private static final class Key {
+
+    /** The predicate. */
+    private final String _predicate;
+
+    /** The default field. */
+    private final String _field;
+
+    /** The fields for a multi-field parser. */
+    private final String[] _fields;
+
+    /** The analyzer (compared by identity). */
+    private final WeakReference<Analyzer> _analyzer;
+
+    /** Whether leading wildcards are allowed. */
+    private final boolean _allowLeadingWildcard;
+
+    /** Pre-computed hash code. */
+    private final int _hashCode;
+
+    /**
+     * Creates a new key.
+     *
+     * @param predicate            The predicate.
+     * @param field                The default field.
+     * @param fields               The fields for a multi-field parser (copied).
+     * @param analyzer             The analyzer.
+     * @param allowLeadingWildcard Whether leading wildcards are allowed.
+     */
+    public Key(String predicate, String field, String[] fields, Analyzer analyzer, boolean allowLeadingWildcard) {
+      this._predicate = predicate;
+      this._field = field;
+      this._fields = fields != null? fields.clone() : null;
+      this._analyzer = new WeakReference<Analyzer>(analyzer);
+      this._allowLeadingWildcard = allowLeadingWildcard;
+      int h = predicate.hashCode();
+      h = h * 31 + (field != null? field.hashCode() : 0);
+      h = h * 31 + Arrays.hashCode(fields);
+      h = h * 31 + System.identityHashCode(analyzer);
+      this._hashCode = h * 31 + (allowLeadingWildcard? 1 : 0);
+    }
+
+    @Override
+    public int hashCode() {
+      return this._hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) return true;
+      if (!(o instanceof Key)) return false;
+      Key k = (Key)o;
+      Analyzer analyzer = this._analyzer.get();
+      // keys whose analyzer has been garbage collected are never equal
+      return this._hashCode == k._hashCode
+          && analyzer != null && analyzer == k._analyzer.get()
+          && this._allowLeadingWildcard == k._allowLeadingWildcard
+          && this._predicate.equals(k._predicate)
+          && (this._field == null? k._field == null : this._field.equals(k._field))
+          && Arrays.equals(this._fields, k._fields);
+    }
+  }
+
+}
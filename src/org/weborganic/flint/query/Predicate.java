@@ -24,11 +24,10 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.MultiFieldQueryParser;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.search.Query;
-import org.weborganic.flint.IndexManager;
+import org.weborganic.flint.search.SpellingIndex;
 import org.weborganic.flint.util.Beta;
 import org.weborganic.flint.util.Fields;
 import org.weborganic.flint.util.Queries;
-import org.weborganic.flint.util.Terms;
 
 import com.topologi.diffx.xml.XMLWritable;
 import com.topologi.diffx.xml.XMLWriter;
@@ -140,8 +139,7 @@ public final class Predicate implements SearchParameter, XMLWritable {
    */
   private void compute(Analyzer analyzer) throws ParseException {
     String[] fields = this._fields.keySet().toArray(new String[]{});
-    MultiFieldQueryParser parser = new MultiFieldQueryParser(IndexManager.LUCENE_VERSION, fields, analyzer);
-    this._query = parser.parse(this._predicate);
+    this._query = ParsedQueries.parse(this._predicate, fields, analyzer);
   }
 
   /**
@@ -152,18 +150,18 @@ public final class Predicate implements SearchParameter, XMLWritable {
    * @throws ParseException If the question could not be parsed properly.
    */
   private void compute() throws ParseException {
-    compute(new StandardAnalyzer(IndexManager.LUCENE_VERSION));
+    compute(ParsedQueries.STANDARD_ANALYZER);
   }
 
   /**
    * Returns a list of predicates which are considered similar, that where one term was substituted
    * for a similar term.
    *
-   * @param reader the reader to use to extract the similar (fuzzy) terms.
+   * @param reader the reader to use to extract the similar terms.
    *
    * @return a list of similar predicates.
    *
-   * @throws IOException If thrown by the reader while getting the fuzzy terms.
+   * @throws IOException If thrown by the reader while getting the similar terms.
    */
   public List<Predicate> similar(IndexReader reader) throws IOException {
     List<Predicate> similar = new ArrayList<Predicate>();
@@ -171,7 +169,7 @@ public final class Predicate implements SearchParameter, XMLWritable {
     Set<Term> terms = new HashSet<Term>();
     this._query.extractTerms(terms);
     for (Term t : terms) {
-      List<Term> fuzzy = Terms.fuzzy(reader, t);
+      List<Term> fuzzy = SpellingIndex.suggest(reader, t);
       for (Term f : fuzzy) {
         Query sq = Queries.substitute(this._query, t, f);
         Predicate sqn = new Predicate(this._fields, sq.toString());
@@ -10,13 +10,11 @@ package org.weborganic.flint.query;
 import java.io.IOException;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
-import org.weborganic.flint.IndexManager;
 
 import com.topologi.diffx.xml.XMLWriter;
 
@@ -53,6 +51,11 @@ public final class PredicateSearchQuery implements SearchQuery {
    */
   private boolean _allowLeadingWildcard = false;
 
+  /**
+   * The parsed query.
+   */
+  private volatile Query _query = null;
+
   /**
    * Creates new predicate search query.
    *
@@ -110,7 +113,7 @@ public final class PredicateSearchQuery implements SearchQuery {
    * @throws IllegalArgumentException If the predicate is <code>null</code>.
    */
   public PredicateSearchQuery(String predicate, Sort sort) throws IllegalArgumentException {
-    this(predicate, new StandardAnalyzer(IndexManager.LUCENE_VERSION), sort);
+    this(predicate, ParsedQueries.STANDARD_ANALYZER, sort);
   }
 
   /**
@@ -139,6 +142,7 @@ public final class PredicateSearchQuery implements SearchQuery {
    */
   public void setAllowWildCardStart(boolean allowWildCardStart) {
     this._allowLeadingWildcard = allowWildCardStart;
+    this._query = null;
   }
 
   /**
@@ -165,7 +169,8 @@ public final class PredicateSearchQuery implements SearchQuery {
    * Returns the Lucene query instance corresponding to this object.
    *
    * <p>
-   * This method uses a query parser to parse the predicate.
+   * This method uses a query parser to parse the predicate, the parsed query is cached so that
+   * the predicate is only parsed once and a copy of it is returned each time.
    *
    * @return The Lucene query instance or <code>null</code> if the predicate was <code>null</code>.
    */
@@ -173,13 +178,16 @@ public final class PredicateSearchQuery implements SearchQuery {
   public Query toQuery() {
     if (this._predicate == null)
       return null;
-    try {
-      QueryParser parser = new QueryParser(IndexManager.LUCENE_VERSION, getField(), this._analyser);
-      parser.setAllowLeadingWildcard(this._allowLeadingWildcard);
-      return parser.parse(this._predicate);
-    } catch (ParseException ex) {
-      return null;
+    Query query = this._query;
+    if (query == null) {
+      try {
+        query = ParsedQueries.parse(this._predicate, getField(), this._analyser, this._allowLeadingWildcard);
+        this._query = query;
+      } catch (ParseException ex) {
+        return null;
+      }
     }
+    return ParsedQueries.copy(query);
   }
 
   /**
@@ -10,8 +10,11 @@ package org.weborganic.flint.query;
 import java.io.IOException;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MultiTermQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
+import org.weborganic.flint.search.FilterCache;
 
 import com.topologi.diffx.xml.XMLWriter;
 
@@ -22,7 +25,7 @@ import com.topologi.diffx.xml.XMLWriter;
  * @author Christophe Lauret
  * @version 30 January 2012
  */
-public final class PrefixParameter implements SearchParameter {
+public final class PrefixParameter implements FilterParameter {
 
   /**
    * The wrapped Lucene Term prefix.
@@ -72,12 +75,27 @@ public final class PrefixParameter implements SearchParameter {
   }
 
   /**
+   * Returns a prefix query rewritten as a constant score filter, so that a short prefix is not
+   * expanded to a boolean query with one clause per term.
+   *
    * {@inheritDoc}
    */
   @Override
   public Query toQuery() {
     if (this.isEmpty()) { return null; }
-    return new PrefixQuery(this._prefix);
+    PrefixQuery query = new PrefixQuery(this._prefix);
+    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+    return query;
+  }
+
+  /**
+   * Returns the cached filter for the query of this parameter.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Filter toFilter() {
+    return FilterCache.getFilter(toQuery());
   }
 
   /**
@@ -23,10 +23,10 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
+import org.weborganic.flint.search.SpellingIndex;
 import org.weborganic.flint.util.Beta;
 import org.weborganic.flint.util.Fields;
 import org.weborganic.flint.util.Queries;
-import org.weborganic.flint.util.Terms;
 
 import com.topologi.diffx.xml.XMLWritable;
 import com.topologi.diffx.xml.XMLWriter;
@@ -174,11 +174,11 @@ public final class Question implements SearchParameter, XMLWritable {
    * Returns a list of questions which are considered similar, that where one term was substituted
    * for a similar term.
    *
-   * @param reader the reader to use to extract the similar (fuzzy) terms.
+   * @param reader the reader to use to extract the similar terms.
    *
    * @return a list of similar questions.
    *
-   * @throws IOException If thrown by the reader while getting the fuzzy terms.
+   * @throws IOException If thrown by the reader while getting the similar terms.
    */
   public List<Question> similar(IndexReader reader) throws IOException {
     List<Question> similar = new ArrayList<Question>();
@@ -195,7 +195,7 @@ public final class Question implements SearchParameter, XMLWritable {
         Set<String> fuzzy = new HashSet<String>();
         // collect fuzzy terms based on index
         for (String field : this._fields.keySet()) {
-          for (Term t : Terms.fuzzy(reader, new Term(field, value))) {
+          for (Term t : SpellingIndex.suggest(reader, new Term(field, value))) {
             fuzzy.add(t.text());
           }
         }
@@ -0,0 +1,70 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.lucene.document.Document;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * Writes search results directly to an output stream from the stored fields of the documents.
+ *
+ * <p>The search results call {@link #start(OutputStream, String, int, SearchPaging)} once, then
+ * {@link #document(float, Document)} for each hit of the page in rank order, and finally
+ * {@link #end()}.
+ *
+ * <p>Serializers keep the state of the output they write to, so an instance must not be used
+ * for more than one output at a time.
+ *
+ * @see SearchResults#serialize(ResultSerializer, OutputStream)
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public interface ResultSerializer {
+
+  /**
+   * Returns the media type of the output.
+   *
+   * @return the media type of the output.
+   */
+  String getMediaType();
+
+  /**
+   * Starts writing the search results.
+   *
+   * @param out       The output stream to write to.
+   * @param index     The ID of the index (may be <code>null</code>).
+   * @param totalHits The total number of hits.
+   * @param paging    The paging information.
+   *
+   * @throws IOException If thrown while writing.
+   */
+  void start(OutputStream out, String index, int totalHits, SearchPaging paging) throws IOException;
+
+  /**
+   * Writes a hit.
+   *
+   * @param score The score of the hit.
+   * @param doc   The stored fields of the document.
+   *
+   * @throws IOException If thrown while writing.
+   */
+  void document(float score, Document doc) throws IOException;
+
+  /**
+   * Finishes writing the search results and flushes the output stream.
+   *
+   * @throws IOException If thrown while writing.
+   */
+  void end() throws IOException;
+
+}
@@ -0,0 +1,283 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.query;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weborganic.flint.IndexIO;
+import org.weborganic.flint.Lease;
+import org.weborganic.flint.search.ResultSet;
+import org.weborganic.flint.util.Beta;
+import org.weborganic.flint.util.Fields;
+
+import com.topologi.diffx.xml.XMLWritable;
+import com.topologi.diffx.xml.XMLWriter;
+
+/**
+ * A stream over all the documents matching a query in document order.
+ *
+ * <p>Unlike {@link SearchResults}, the matching documents are neither scored nor sorted: they are
+ * collected into a compressed result set and their stored fields are loaded one at a time in
+ * document order as the export is iterated or written as XML. The memory used therefore does not
+ * depend on the size of the stored documents.
+ *
+ * <p>The searcher is held until the export is closed; it is closed automatically once all
+ * documents have been iterated or written as XML.
+ *
+ * <p>This class is not synchronized.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class SearchExport implements Iterable<Document>, XMLWritable, Closeable {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearchExport.class);
+
+  /**
+   * The number of documents written between each flush of the XML writer.
+   */
+  private static final int FLUSH_INTERVAL = 1000;
+
+  /**
+   * The query used to produce this export.
+   */
+  private final SearchQuery _query;
+
+  /**
+   * The IDs of the matching documents.
+   */
+  private final ResultSet _set;
+
+  /**
+   * The names of the stored fields to load or <code>null</code> for all.
+   */
+  private final Set<String> _fields;
+
+  /**
+   * The index I/O.
+   */
+  private final IndexIO _indexIO;
+
+  /**
+   * The index searcher used.
+   */
+  private final IndexSearcher _searcher;
+
+  /**
+   * The lease on the searcher (<code>null</code> if there is no index I/O).
+   */
+  private final Lease<IndexSearcher> _lease;
+
+  /**
+   * Whether the searcher has been released.
+   */
+  private boolean _closed = false;
+
+  /**
+   * Creates a new export.
+   *
+   * @param query    The search query that was used to collect the documents.
+   * @param set      The IDs of the matching documents.
+   * @param fields   The names of the stored fields to load or <code>null</code> for all.
+   * @param io       The IndexIO object, used to release the searcher when closed.
+   * @param searcher The Lucene searcher.
+   */
+  public SearchExport(SearchQuery query, ResultSet set, Set<String> fields, IndexIO io, IndexSearcher searcher) {
+    this._query = query;
+    this._set = set;
+    this._fields = fields;
+    this._indexIO = io;
+    this._searcher = searcher;
+    this._lease = io != null? Lease.searcher(io, searcher) : null;
+  }
+
+  /**
+   * Returns the total number of documents in this export.
+   *
+   * @return the total number of documents in this export.
+   */
+  public int getTotalNbOfResults() {
+    return this._set.cardinality();
+  }
+
+  /**
+   * Indicates whether the searcher has been released.
+   *
+   * @return <code>true</code> if this export has been closed; <code>false</code> otherwise.
+   */
+  public boolean isClosed() {
+    return this._closed;
+  }
+
+  /**
+   * Returns an iterator over the documents in document order.
+   *
+   * <p>The export is closed once the last document has been returned.
+   *
+   * @return an iterator over the documents.
+   *
+   * @throws IllegalStateException If this export has been closed.
+   */
+  @Override
+  public Iterator<Document> iterator() {
+    if (this._closed) throw new IllegalStateException("Export already closed");
+    return new DocIterator();
+  }
+
+  /**
+   * Writes all the documents as XML and closes this export.
+   *
+   * @param xml The XML writer.
+   *
+   * @throws IOException Should there be any I/O exception while writing the XML or reading the index.
+   */
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    if (this._closed) throw new IllegalStateException("Export already closed");
+    try {
+      xml.openElement("search-export", true);
+      if (this._indexIO != null) xml.attribute("index", this._indexIO.indexID());
+      xml.attribute("total", getTotalNbOfResults());
+      if (this._query != null) {
+        xml.openElement("query", true);
+        xml.attribute("lucene", this._query.toQuery().toString());
+        this._query.toXML(xml);
+        xml.closeElement();
+      }
+      xml.openElement("documents", true);
+      IndexReader reader = this._searcher.getIndexReader();
+      FieldSelector selector = toSelector(this._fields);
+      int count = 0;
+      for (int id = this._set.next(0); id >= 0; id = this._set.next(id + 1)) {
+        Document doc = reader.document(id, selector);
+        xml.openElement("document", true);
+        for (Fieldable f : doc.getFields()) {
+          String value = Fields.toString(f);
+          if (value == null) continue;
+          xml.openElement("field");
+          xml.attribute("name", f.name());
+          xml.writeText(value);
+          xml.closeElement();
+        }
+        xml.closeElement();
+        if (++count % FLUSH_INTERVAL == 0) xml.flush();
+      }
+      xml.closeElement();
+      xml.closeElement();
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Releases the searcher.
+   *
+   * <p>Does nothing if the export has already been closed.
+   *
+   * @throws IOException If thrown while releasing the searcher.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this._closed) return;
+    this._closed = true;
+    if (this._lease != null) this._lease.close();
+  }
+
+  // Private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the field selector for the specified fields.
+   *
+   * @param fields The names of the stored fields to load or <code>null</code> for all.
+   * @return the corresponding selector or <code>null</code> to load all fields.
+   */
+  private static FieldSelector toSelector(Set<String> fields) {
+    if (fields == null) return null;
+    return new MapFieldSelector(fields.toArray(new String[fields.size()]));
+  }
+
+  // Private classes
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * An iterator over the documents in this export.
+   */
+  private final class DocIterator implements Iterator<Document> {
+
+    /**
+     * The reader to load the documents from.
+     */
+    private final IndexReader reader = SearchExport.this._searcher.getIndexReader();
+
+    /**
+     * The field selector.
+     */
+    private final FieldSelector selector = toSelector(SearchExport.this._fields);
+
+    /**
+     * The ID of the next document or -1.
+     */
+    private int next = SearchExport.this._set.next(0);
+
+    @Override
+    public boolean hasNext() {
+      if (this.next < 0) closeQuietly();
+      return this.next >= 0;
+    }
+
+    @Override
+    public Document next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      if (SearchExport.this._closed) throw new IllegalStateException("Export already closed");
+      try {
+        Document doc = this.reader.document(this.next, this.selector);
+        this.next = SearchExport.this._set.next(this.next + 1);
+        return doc;
+      } catch (IOException ex) {
+        throw new IllegalStateException("Error retrieving document", ex);
+      }
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Cannot remove documents from an export");
+    }
+
+    /**
+     * Closes the export after the last document.
+     */
+    private void closeQuietly() {
+      try {
+        close();
+      } catch (IOException ex) {
+        LOGGER.error("Failed releasing a Searcher after an export because of an I/O problem", ex);
+      }
+    }
+  }
+
+}
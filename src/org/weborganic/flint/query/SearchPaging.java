@@ -7,12 +7,20 @@
  */
 package org.weborganic.flint.query;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * This class allows for a better control of search results by specifying paging information for the
  * index tools to use.
  *
  * <p>Pages start at 1.
  *
+ * <p>The paging can also restrict the stored fields returned for each hit, so that the fields which
+ * are not displayed are not loaded from the index.
+ *
  * <p>Note: This has nothing to do with memory management.
  *
  * @author Christophe Lauret (Weborganic)
@@ -40,6 +48,11 @@ public final class SearchPaging {
    */
   private int _hitsPerPage = DEFAULT_HITS_PER_PAGE;
 
+  /**
+   * The names of the stored fields to return, <code>null</code> for all stored fields.
+   */
+  private Set<String> _fields = null;
+
   /**
    * Creates a new paging configuration using the default values.
    */
@@ -100,6 +113,31 @@ public final class SearchPaging {
     this._page = page;
   }
 
+  /**
+   * Returns the names of the stored fields to return for each hit.
+   *
+   * @return The names of the stored fields to return or <code>null</code> for all stored fields.
+   */
+  public Set<String> getFields() {
+    return this._fields;
+  }
+
+  /**
+   * Sets the names of the stored fields to return for each hit.
+   *
+   * <p>Other stored fields are not loaded from the index. If no field is specified, all stored
+   * fields are returned.
+   *
+   * @param fields The names of the stored fields to return.
+   */
+  public void setFields(String... fields) {
+    if (fields == null || fields.length == 0) {
+      this._fields = null;
+    } else {
+      this._fields = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(fields)));
+    }
+  }
+
   // Methods providing common function for a result set
   // ----------------------------------------------------------------------------------------------
 
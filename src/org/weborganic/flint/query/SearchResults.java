@@ -7,19 +7,33 @@
  */
 package org.weborganic.flint.query;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TimeZone;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReader.FieldOption;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermFreqVector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SortField;
@@ -28,9 +42,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weborganic.flint.IndexException;
 import org.weborganic.flint.IndexIO;
+import org.weborganic.flint.Lease;
+import org.weborganic.flint.search.DocumentLoader;
+import org.weborganic.flint.search.Facet;
+import org.weborganic.flint.search.Highlighter;
 import org.weborganic.flint.util.Dates;
-import org.weborganic.flint.util.Documents;
 import org.weborganic.flint.util.Fields;
+import org.weborganic.flint.util.ISODateFormatter;
 
 import com.topologi.diffx.xml.XMLWritable;
 import com.topologi.diffx.xml.XMLWriter;
@@ -38,11 +56,14 @@ import com.topologi.diffx.xml.XMLWriter;
 /**
  * A container for search results.
  *
- * <p>Use this class to serialise Lucene Search results as XML.
+ * <p>Use this class to serialise Lucene Search results as XML or using a {@link ResultSerializer}.
  *
  * <p>Note: the current implementation is a "throw away" object, once the toXML method has been
  * called, this instance is useless.
  *
+ * <p>These results hold a lease on the searcher until they are terminated or closed. Results which
+ * are garbage collected without having been terminated release their searcher and are logged.
+ *
  * <p>This class is not synchronized.
  *
  * @author Christophe Lauret (Weborganic)
@@ -51,7 +72,7 @@ import com.topologi.diffx.xml.XMLWriter;
  *
  * @version 10 February 2012
  */
-public final class SearchResults implements XMLWritable {
+public final class SearchResults implements XMLWritable, Closeable {
 
   /**
    * Logger.
@@ -68,6 +89,19 @@ public final class SearchResults implements XMLWritable {
    */
   private static final int MAX_FIELD_VALUE_LENGTH = 1000;
 
+  /**
+   * The maximum length of an extract.
+   */
+  private static final int EXTRACT_LENGTH = 200;
+
+  /**
+   * The maximum stored size in bytes of a field to expand.
+   *
+   * <p>The stored size of a string is twice its length in UTF-8 bytes, so a string of less than
+   * {@value #MAX_FIELD_VALUE_LENGTH} characters is less than six times that size.
+   */
+  private static final int MAX_FIELD_STORED_SIZE = MAX_FIELD_VALUE_LENGTH * 6;
+
   /**
    * One minute in milliseconds.
    */
@@ -108,11 +142,21 @@ public final class SearchResults implements XMLWritable {
    */
   private final IndexIO _indexIO;
 
+  /**
+   * The lease on the searcher (<code>null</code> if there is no index I/O).
+   */
+  private final Lease<IndexSearcher> _lease;
+
   /**
    * The total number of results.
    */
   private final int totalNbOfResults;
 
+  /**
+   * The facets computed with these results.
+   */
+  private final List<Facet> _facets;
+
   // State variables
   // ---------------------------------------------------------------------------------------------
 
@@ -126,6 +170,11 @@ public final class SearchResults implements XMLWritable {
    */
   private int timezoneOffset;
 
+  /**
+   * The maximum number of full documents to cache for the reader, 0 for no cache.
+   */
+  private int documentCacheSize = 0;
+
   // Constructors
   // ---------------------------------------------------------------------------------------------
 
@@ -142,7 +191,7 @@ public final class SearchResults implements XMLWritable {
    */
   public SearchResults(SearchQuery query, TopFieldDocs docs, SearchPaging paging, IndexIO io, IndexSearcher searcher)
       throws IndexException {
-    this(query, docs.scoreDocs, docs.fields, docs.totalHits, paging, io, searcher);
+    this(query, docs.scoreDocs, docs.fields, docs.totalHits, paging, io, searcher, null);
   }
 
   /**
@@ -158,7 +207,24 @@ public final class SearchResults implements XMLWritable {
    */
   public SearchResults(SearchQuery query, ScoreDoc[] docs, int totalHits, SearchPaging paging, IndexIO io, IndexSearcher searcher)
       throws IndexException {
-    this(query, docs, null, totalHits, paging, io, searcher);
+    this(query, docs, null, totalHits, paging, io, searcher, null);
+  }
+
+  /**
+   * Creates a new SearchResults including the facets computed with the results.
+   *
+   * @param query    The search query that was used to produce these results.
+   * @param docs     The actual search results from Lucene in ScoreDoc.
+   * @param paging   The paging configuration.
+   * @param io       The IndexIO object, used to release the searcher when terminated
+   * @param searcher The Lucene searcher.
+   * @param facets   The facets computed with these results.
+   *
+   * @throws IndexException if the documents could not be retrieved from the Index
+   */
+  public SearchResults(SearchQuery query, ScoreDoc[] docs, int totalHits, SearchPaging paging, IndexIO io,
+      IndexSearcher searcher, List<? extends Facet> facets) throws IndexException {
+    this(query, docs, null, totalHits, paging, io, searcher, facets);
   }
 
   /**
@@ -169,18 +235,21 @@ public final class SearchResults implements XMLWritable {
    * @param paging The paging configuration.
    * @param io The IndexIO object, used to release the searcher when terminated
    * @param searcher The Lucene searcher.
+   * @param facets The facets computed with these results (may be <code>null</code>).
    *
    * @throws IndexException if the documents could not be retrieved from the Index
    */
   private SearchResults(SearchQuery query, ScoreDoc[] hits, SortField[] sortf, int totalResults, SearchPaging paging, IndexIO io,
-      IndexSearcher searcher) throws IndexException {
+      IndexSearcher searcher, List<? extends Facet> facets) throws IndexException {
     this._query = query;
     this._scoredocs = hits;
     this._sortfields = sortf;
     this._paging = paging != null? paging : new SearchPaging();
     this._searcher = searcher;
     this._indexIO = io;
+    this._lease = io != null? Lease.searcher(io, searcher) : null;
     this.totalNbOfResults = totalResults;
+    this._facets = facets != null? Collections.unmodifiableList(new ArrayList<Facet>(facets)) : Collections.<Facet>emptyList();
     // default timezone is the server's
     TimeZone tz = TimeZone.getDefault();
     this.timezoneOffset = tz.getRawOffset();
@@ -200,6 +269,15 @@ public final class SearchResults implements XMLWritable {
     return this.totalNbOfResults;
   }
 
+  /**
+   * Returns the facets computed with these results.
+   *
+   * @return the facets computed with these results (never <code>null</code>).
+   */
+  public List<Facet> getFacets() {
+    return this._facets;
+  }
+
   /**
    * Indicates whether the search results are empty.
    *
@@ -219,6 +297,21 @@ public final class SearchResults implements XMLWritable {
     this.timezoneOffset = timezoneInMinutes * ONE_MINUTE_IN_MS;
   }
 
+  /**
+   * Sets the maximum number of full documents to cache for the reader of these results.
+   *
+   * <p>When the cache is enabled, full documents are loaded so that they can be reused by other
+   * results from the same reader, for example when paging over the same results.
+   *
+   * @param size the maximum number of documents to cache, 0 for no cache (default).
+   *
+   * @see DocumentLoader
+   */
+  public void setDocumentCacheSize(int size) {
+    if (size < 0) throw new IllegalArgumentException("size < 0");
+    this.documentCacheSize = size;
+  }
+
   /**
    * Serialises the search results as XML.
    *
@@ -244,38 +337,65 @@ public final class SearchResults implements XMLWritable {
     // Display some metadata on the search
     toMetadataXML(xml);
 
+    // Include the facets computed with the results
+    if (!this._facets.isEmpty()) {
+      xml.openElement("facets", true);
+      for (Facet facet : this._facets) {
+        facet.toXML(xml);
+      }
+      xml.closeElement();
+    }
+
     // Returned documents
     xml.openElement("documents", true);
 
+    // Find the extract only applies to TermExtractable queries
+    Set<Term> terms = new HashSet<Term>();
+    if (this._query instanceof TermExtractable) {
+      ((TermExtractable)this._query).extractTerms(terms);
+    }
+    Highlighter highlighter = new Highlighter(terms, EXTRACT_LENGTH);
+    Set<String> extracted = highlighter.fields();
+    IndexReader reader = this._searcher.getIndexReader();
+    Collection<?> vectors = extracted.isEmpty()? Collections.emptySet() : reader.getFieldNames(FieldOption.TERMVECTOR_WITH_OFFSET);
+    Set<String> requested = this._paging.getFields();
+    ISODateFormatter dates = ISODateFormatter.forOffset(this.timezoneOffset);
+
+    // Load the documents of the page in document order
+    int[] ids = new int[Math.max(0, lasthit - firsthit + 1)];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = this._scoredocs[firsthit - 1 + i].doc;
+    }
+    Document[] docs = loadDocuments(ids, requested, extracted);
+
     // Iterate over the hits
     for (int i = firsthit - 1; i < lasthit; i++) {
       xml.openElement("document", true);
       String score = Float.toString(this._scoredocs[i].score);
       xml.element("score", score);
-      Document doc = this._searcher.doc(this._scoredocs[i].doc);
-
-      // Find the extract only applies to TermExtractable queries
-      if (this._query instanceof TermExtractable) {
-        TermExtractable q = (TermExtractable)this._query;
-        Set<Term> terms = new HashSet<Term>();
-        q.extractTerms(terms);
-        for (Fieldable f : doc.getFields()) {
-          for (Term t : terms) {
-            if (t.field().equals(f.name())) {
-              String extract = Documents.extract(Fields.toString(f), t.text(), 200);
-              if (extract != null) {
-                xml.openElement("extract");
-                xml.attribute("from", t.field());
-                xml.writeXML(extract);
-                xml.closeElement();
-              }
-            }
-          }
+      int id = this._scoredocs[i].doc;
+      Document doc = docs[i - firsthit + 1];
+
+      // One extract for each term found in each value, using the term vector offsets if stored
+      for (Fieldable f : doc.getFields()) {
+        String field = f.name();
+        if (!extracted.contains(field)) continue;
+        TermFreqVector vector = null;
+        if (vectors.contains(field) && doc.getFieldables(field).length == 1) {
+          vector = reader.getTermFreqVector(id, field);
+        }
+        for (String extract : highlighter.extracts(field, Fields.toString(f), vector)) {
+          xml.openElement("extract");
+          xml.attribute("from", field);
+          xml.writeXML(extract);
+          xml.closeElement();
         }
       }
 
       // display the value of each field
       for (Fieldable f : doc.getFields()) {
+        // fields only loaded for the extracts
+        if (requested != null && !requested.contains(f.name())) continue;
         // Retrieve the value
         String value = Fields.toString(f);
         ValueType type = ValueType.STRING;
@@ -283,7 +403,7 @@ public final class SearchResults implements XMLWritable {
         if (value != null && value.length() > 0 && f.name().contains("date") && Dates.isLuceneDate(value)) {
           try {
             if (value.length() > 8) {
-              value = Dates.toISODateTime(value, this.timezoneOffset);
+              value = dates.format(value);
               type = ValueType.DATETIME;
             } else {
               value = Dates.toISODate(value);
@@ -321,6 +441,67 @@ public final class SearchResults implements XMLWritable {
     }
   }
 
+  /**
+   * Serialises the hits of the current page directly to the specified output stream.
+   *
+   * <p>The serializer receives the stored fields as loaded from the index: field values are not
+   * formatted and no extract is computed. As with the XML, stored fields which are too large to be
+   * displayed are not loaded and fields without a text value are left out.
+   *
+   * @param serializer The serializer to use.
+   * @param out        The output stream to write to.
+   *
+   * @throws IOException Should there be any I/O exception while reading the index or writing.
+   * @throws IllegalStateException If these results have been terminated already.
+   */
+  public void serialize(ResultSerializer serializer, OutputStream out) throws IOException {
+    if (this._terminated)
+      throw new IllegalStateException("Cannot retrieve documents after termination");
+    int firsthit = this._paging.getFirstHit();
+    int lasthit = this._paging.getLastHit(this.totalNbOfResults);
+    Set<String> requested = this._paging.getFields();
+    int[] ids = new int[Math.max(0, lasthit - firsthit + 1)];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = this._scoredocs[firsthit - 1 + i].doc;
+    }
+    Document[] docs = loadDocuments(ids, requested, Collections.<String>emptySet());
+    serializer.start(out, this._indexIO != null? this._indexIO.indexID() : null, this.totalNbOfResults, this._paging);
+    for (int i = 0; i < ids.length; i++) {
+      // documents from the cache include all the fields
+      boolean cached = requested != null && this.documentCacheSize > 0;
+      Document doc = new Document();
+      for (Fieldable f : docs[i].getFields()) {
+        if (cached && !requested.contains(f.name())) continue;
+        // unnecessary to return the full value of long fields
+        String value = Fields.toString(f);
+        if (value != null && value.length() < MAX_FIELD_VALUE_LENGTH) doc.add(f);
+      }
+      serializer.document(this._scoredocs[firsthit - 1 + i].score, doc);
+    }
+    serializer.end();
+    // close everything
+    try {
+      terminate();
+    } catch (IndexException ex) {
+      throw new IOException("Error when terminating Search Results", ex);
+    }
+  }
+
+  /**
+   * Serialises the hits of the current page directly to the specified channel.
+   *
+   * @see #serialize(ResultSerializer, OutputStream)
+   *
+   * @param serializer The serializer to use.
+   * @param channel    The channel to write to.
+   *
+   * @throws IOException Should there be any I/O exception while reading the index or writing.
+   * @throws IllegalStateException If these results have been terminated already.
+   */
+  public void serialize(ResultSerializer serializer, WritableByteChannel channel) throws IOException {
+    serialize(serializer, Channels.newOutputStream(channel));
+  }
+
   /**
    * Return the actual results.
    *
@@ -348,7 +529,7 @@ public final class SearchResults implements XMLWritable {
     if (this._terminated)
       throw new IndexException("Cannot retrieve documents after termination", new IllegalStateException());
     try {
-      return this._searcher.doc(id);
+      return new DocumentLoader(this._searcher.getIndexReader(), this.documentCacheSize).load(id);
     } catch (CorruptIndexException e) {
       LOGGER.error("Failed to retrieve a document because of a corrupted Index", e);
       throw new IndexException("Failed to retrieve a document because of a corrupted Index", e);
@@ -366,10 +547,10 @@ public final class SearchResults implements XMLWritable {
    * @throws IndexException Will wrap any IO error thrown when trying to release the searcher.
    */
   public void terminate() throws IndexException {
-    if (this._indexIO == null) return;
+    if (this._lease == null) return;
     if (this._terminated) return;
     try {
-      this._indexIO.releaseSearcher(this._searcher);
+      this._lease.close();
       this._terminated = true;
     } catch (IOException ex) {
       String msg = "Failed releasing a Searcher after performing a query on the Index because of an I/O problem";
@@ -379,14 +560,19 @@ public final class SearchResults implements XMLWritable {
   }
 
   /**
-   * Ensure that the searcher is released when finalizing.
+   * Terminates these results.
    *
-   * @throws Throwable If thrown by super class or <code>terminate</code> method.
+   * @see #terminate()
+   *
+   * @throws IOException Will wrap any error thrown when trying to release the searcher.
    */
   @Override
-  protected void finalize() throws Throwable {
-    if (!this._terminated) terminate();
-    super.finalize();
+  public void close() throws IOException {
+    try {
+      terminate();
+    } catch (IndexException ex) {
+      throw new IOException("Error when terminating Search Results", ex);
+    }
   }
 
   /**
@@ -412,6 +598,39 @@ public final class SearchResults implements XMLWritable {
   // Private helpers
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * Loads the stored fields of the documents which may be displayed in the results.
+   *
+   * <p>The documents are loaded in document order. The size of the requested fields is read first
+   * so that, in each document, the values of fields too large to be displayed are not read, unless
+   * they are needed for the extracts. When the document cache is enabled, full documents are
+   * loaded instead.
+   *
+   * @param ids       The IDs of the documents.
+   * @param requested The names of the fields to display or <code>null</code> for all stored fields.
+   * @param extracted The names of the fields to load for the extracts.
+   *
+   * @return the documents with the fields which may be displayed or used in extracts.
+   *
+   * @throws IOException Should an error occur while reading the index
+   */
+  private Document[] loadDocuments(int[] ids, Set<String> requested, Set<String> extracted) throws IOException {
+    DocumentLoader loader = new DocumentLoader(this._searcher.getIndexReader(), this.documentCacheSize);
+    if (this.documentCacheSize > 0) return loader.load(ids);
+    Document[] sizes = loader.load(ids, new SizeSelector(requested));
+    FieldSelector[] selectors = new FieldSelector[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      Set<String> load = new HashSet<String>(extracted);
+      for (Fieldable f : sizes[i].getFields()) {
+        byte[] b = f.getBinaryValue();
+        int size = (b[0] & 0xff) << 24 | (b[1] & 0xff) << 16 | (b[2] & 0xff) << 8 | (b[3] & 0xff);
+        if (size < MAX_FIELD_STORED_SIZE) load.add(f.name());
+      }
+      selectors[i] = new MapFieldSelector(load.toArray(new String[load.size()]));
+    }
+    return loader.loadEach(ids, selectors);
+  }
+
   /**
    * Write the search results metadata as XML.
    *
@@ -447,6 +666,38 @@ public final class SearchResults implements XMLWritable {
   // Private classes
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * A field selector which only loads the size of the requested fields.
+   *
+   * @author Christophe Lauret
+   * @version 19 October 2026
+   */
+  private static final class SizeSelector implements FieldSelector {
+
+    /**
+     * As per requirement for the Serializable interface.
+     */
+    private static final long serialVersionUID = 20261019L;
+
+    /**
+     * The names of the requested fields or <code>null</code> for all fields.
+     */
+    private final Set<String> _fields;
+
+    /**
+     * @param fields The names of the requested fields or <code>null</code> for all fields.
+     */
+    public SizeSelector(Set<String> fields) {
+      this._fields = fields;
+    }
+
+    @Override
+    public FieldSelectorResult accept(String name) {
+      if (this._fields == null || this._fields.contains(name)) return FieldSelectorResult.SIZE;
+      return FieldSelectorResult.NO_LOAD;
+    }
+  }
+
   /**
    * An iterable class over the documents in these results.
    *
@@ -479,9 +730,15 @@ public final class SearchResults implements XMLWritable {
   private final class DocIterator implements Iterator<Document> {
 
     /**
-     * The index searcher used.
+     * The number of documents loaded at once.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * The loader for the documents.
      */
-    private final IndexSearcher searcher = SearchResults.this._searcher;
+    private final DocumentLoader loader = new DocumentLoader(SearchResults.this._searcher.getIndexReader(),
+        SearchResults.this.documentCacheSize);
 
     /**
      * The actual search results from Lucene.
@@ -493,6 +750,16 @@ public final class SearchResults implements XMLWritable {
      */
     private int index = 0;
 
+    /**
+     * The documents of the current batch.
+     */
+    private Document[] batch = new Document[0];
+
+    /**
+     * The index of the first document of the current batch.
+     */
+    private int batchStart = 0;
+
     @Override
     public boolean hasNext() {
       return this.index < this.scoredocs.length;
@@ -501,11 +768,19 @@ public final class SearchResults implements XMLWritable {
     @Override
     public Document next() {
       if (!hasNext()) throw new NoSuchElementException();
-      try {
-        return this.searcher.doc(this.scoredocs[this.index++].doc);
-      } catch (IOException ex) {
-        throw new IllegalStateException("Error retrieving document", ex);
+      if (this.index >= this.batchStart + this.batch.length) {
+        int[] ids = new int[Math.min(BATCH_SIZE, this.scoredocs.length - this.index)];
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = this.scoredocs[this.index + i].doc;
+        }
+        try {
+          this.batch = this.loader.load(ids);
+          this.batchStart = this.index;
+        } catch (IOException ex) {
+          throw new IllegalStateException("Error retrieving document", ex);
+        }
       }
+      return this.batch[this.index++ - this.batchStart];
     }
 
     /**
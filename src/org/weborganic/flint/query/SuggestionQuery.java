@@ -8,18 +8,17 @@
 package org.weborganic.flint.query;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
-import org.apache.lucene.search.TermQuery;
+import org.weborganic.flint.search.MultiTermFilter;
 import org.weborganic.flint.util.Beta;
-import org.weborganic.flint.util.Terms;
 
 import com.topologi.diffx.xml.XMLWriter;
 
@@ -43,9 +42,14 @@ public final class SuggestionQuery implements SearchQuery, FlintQuery {
   private final Query _condition;
 
   /**
-   * The underlying boolean query.
+   * The maximum number of completions to match (<code>0</code> to match all completions).
    */
-  private BooleanQuery query = null;
+  private int maxTerms = 0;
+
+  /**
+   * The underlying query.
+   */
+  private Query query = null;
 
   /**
    * Create a new auto-suggest query for the specified list of terms with no condition.
@@ -67,31 +71,49 @@ public final class SuggestionQuery implements SearchQuery, FlintQuery {
     this._condition = condition;
   }
 
+  /**
+   * Sets the maximum number of completions of the terms to match.
+   *
+   * <p>If set, only the completions with the highest document frequency are matched.
+   *
+   * @param maxTerms The maximum number of completions to match (<code>0</code> to match all).
+   */
+  public void setMaxTerms(int maxTerms) {
+    if (maxTerms < 0) throw new IllegalArgumentException("maxTerms < 0");
+    this.maxTerms = maxTerms;
+  }
+
+  /**
+   * Returns the maximum number of completions of the terms to match.
+   *
+   * @return the maximum number of completions to match (<code>0</code> if all are matched).
+   */
+  public int getMaxTerms() {
+    return this.maxTerms;
+  }
+
   /**
    * Computes the list of terms to generate the actual suggestion query.
    *
+   * <p>The completions of the terms are matched by a single constant score filter, so the
+   * number of completions is not limited by the maximum number of clauses of a boolean query.
+   *
    * @param reader Computes the list.
    * @throws IOException should an error occurs while reading the index.
    */
   public void compute(IndexReader reader) throws IOException {
-    // Compute the list of terms
-    List<Term> terms = new ArrayList<Term>();
-    for (Term term : this._terms) {
-      Terms.prefix(reader, terms, term);
-    }
     // Generate the query
-    BooleanQuery bq = new BooleanQuery();
-    for (Term t : terms) {
-      TermQuery q = new TermQuery(t);
-      bq.add(q, Occur.SHOULD);
-    }
+    MultiTermFilter filter = this.maxTerms > 0? MultiTermFilter.newPrefixFilter(reader, this._terms, this.maxTerms)
+                                              : MultiTermFilter.newPrefixFilter(this._terms);
+    Query completions = new ConstantScoreQuery(filter);
     // Any condition ?
     if (this._condition != null) {
-      this.query = new BooleanQuery();
-      this.query.add(this._condition, Occur.MUST);
-      this.query.add(bq, Occur.MUST);
-    } else {
+      BooleanQuery bq = new BooleanQuery();
+      bq.add(this._condition, Occur.MUST);
+      bq.add(completions, Occur.MUST);
       this.query = bq;
+    } else {
+      this.query = completions;
     }
   }
 
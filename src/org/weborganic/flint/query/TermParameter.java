@@ -10,8 +10,10 @@ package org.weborganic.flint.query;
 import java.io.IOException;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.weborganic.flint.search.FilterCache;
 
 import com.topologi.diffx.xml.XMLWriter;
 
@@ -21,7 +23,7 @@ import com.topologi.diffx.xml.XMLWriter;
  * @author Christophe Lauret
  * @version 13 August 2010
  */
-public final class TermParameter implements SearchParameter {
+public final class TermParameter implements FilterParameter {
 
   /**
    * The wrapped Lucene Term.
@@ -79,6 +81,16 @@ public final class TermParameter implements SearchParameter {
     return new TermQuery(this._term);
   }
 
+  /**
+   * Returns the cached filter for the query of this parameter.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Filter toFilter() {
+    return FilterCache.getFilter(toQuery());
+  }
+
   /**
    * {@inheritDoc}
    */
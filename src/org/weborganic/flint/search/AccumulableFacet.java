@@ -0,0 +1,36 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A facet which can be computed while the results of a query are collected.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public interface AccumulableFacet extends Facet {
+
+  /**
+   * Returns a new accumulator to compute the values of this facet.
+   *
+   * <p>The values of this facet are updated when the accumulator is finished.
+   *
+   * @param reader The top-level reader the search is performed on.
+   * @return a new accumulator for this facet.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  FacetAccumulator newAccumulator(IndexReader reader) throws IOException;
+
+}
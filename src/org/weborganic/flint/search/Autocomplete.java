@@ -0,0 +1,128 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.weborganic.flint.util.Beta;
+import org.weborganic.flint.util.Bucket;
+
+/**
+ * Suggests the most frequent terms starting with a prefix for a set of fields.
+ *
+ * <p>The terms of each field are loaded once per segment and merged into a sorted list of terms
+ * weighted by document frequency for each reader. Completions are then returned without
+ * enumerating the terms of the index, in a time which depends on the number of suggestions
+ * rather than on the number of terms matching the prefix.
+ *
+ * <p>When a reader is reopened, only the terms of the new segments are loaded.
+ *
+ * <p>Typical usage:
+ * <pre>
+ *  Autocomplete autocomplete = new Autocomplete("title", "keyword");
+ *  Bucket&lt;Term&gt; suggestions = autocomplete.suggest(reader, "lu", 10);
+ * </pre>
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class Autocomplete {
+
+  /**
+   * The default number of suggestions if not specified.
+   */
+  public static final int DEFAULT_MAX_NUMBER_OF_SUGGESTIONS = 10;
+
+  /**
+   * The fields to suggest terms from.
+   */
+  private final String[] _fields;
+
+  /**
+   * Creates a new autocomplete for the specified fields.
+   *
+   * @param fields The fields to suggest terms from.
+   *
+   * @throws IllegalArgumentException If no field is specified.
+   */
+  public Autocomplete(String... fields) {
+    if (fields.length == 0) throw new IllegalArgumentException("At least one field is required");
+    this._fields = fields.clone();
+  }
+
+  /**
+   * Returns the fields to suggest terms from.
+   *
+   * @return the fields to suggest terms from.
+   */
+  public List<String> fields() {
+    return Collections.unmodifiableList(Arrays.asList(this._fields));
+  }
+
+  /**
+   * Returns the most frequent terms starting with the specified prefix.
+   *
+   * <p>Same as <code>suggest(reader, prefix, 10);</code>.
+   *
+   * @param reader The index reader to use.
+   * @param prefix The prefix to complete.
+   *
+   * @return the bucket of terms with their document frequency.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  public Bucket<Term> suggest(IndexReader reader, String prefix) throws IOException {
+    return suggest(reader, prefix, DEFAULT_MAX_NUMBER_OF_SUGGESTIONS);
+  }
+
+  /**
+   * Returns the most frequent terms starting with the specified prefix.
+   *
+   * <p>The document frequency of a term is the sum of its document frequency in each segment,
+   * and may include deleted documents.
+   *
+   * @param reader The index reader to use.
+   * @param prefix The prefix to complete.
+   * @param size   The maximum number of suggestions.
+   *
+   * @return the bucket of terms with their document frequency.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  public Bucket<Term> suggest(IndexReader reader, String prefix, int size) throws IOException {
+    if (size < 0) throw new IllegalArgumentException("size < 0");
+    Bucket<Term> bucket = new Bucket<Term>(size);
+    for (String field : this._fields) {
+      TermCompletions.get(reader, field).complete(prefix, bucket);
+    }
+    return bucket;
+  }
+
+  /**
+   * Adds the most frequent terms starting with the text of the specified term in its field to
+   * the bucket.
+   *
+   * @param reader The index reader to use.
+   * @param prefix The field and prefix to complete.
+   * @param bucket The bucket receiving the terms with their document frequency.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  public static void suggest(IndexReader reader, Term prefix, Bucket<Term> bucket) throws IOException {
+    TermCompletions.get(reader, prefix.field()).complete(prefix.text(), bucket);
+  }
+
+}
@@ -0,0 +1,751 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.util.Arrays;
+
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A compressed result set which adapts its representation to the density of the documents.
+ *
+ * <p>The document IDs are split into blocks of 65536 IDs and each non-empty block is stored in
+ * the most compact of three forms:
+ * <ul>
+ *   <li>a sorted array of 16-bit values when it contains at most 4096 documents;</li>
+ *   <li>a bitmap of 8 KB otherwise;</li>
+ *   <li>a list of runs of consecutive documents whenever it is smaller than both.</li>
+ * </ul>
+ *
+ * <p>So a set of a dozen documents uses a few dozen bytes regardless of the size of the index,
+ * and set operations only process the blocks present in both sets.
+ *
+ * <p>Instances are immutable and therefore thread-safe. Sets which were collected on different
+ * readers cannot be combined.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class CompressedResultSet implements ResultSet {
+
+  /**
+   * The maximum number of values in an array block.
+   */
+  private static final int MAX_ARRAY_SIZE = 4096;
+
+  /**
+   * The number of 64-bit words in a bitmap block.
+   */
+  private static final int BITMAP_WORDS = 1024;
+
+  /**
+   * The size of a bitmap block in bytes.
+   */
+  private static final int BITMAP_BYTES = BITMAP_WORDS * 8;
+
+  /**
+   * The key of the reader the documents were collected from (may be <code>null</code>).
+   */
+  private final Object _readerKey;
+
+  /**
+   * The sorted high 16 bits of the document IDs in each block.
+   */
+  private final char[] _keys;
+
+  /**
+   * The blocks for each key.
+   */
+  private final Block[] _blocks;
+
+  /**
+   * The number of documents.
+   */
+  private final int _cardinality;
+
+  /**
+   * Creates a new result set.
+   *
+   * @param readerKey The key of the reader the documents were collected from.
+   * @param keys      The sorted high 16 bits of the document IDs in each block.
+   * @param blocks    The blocks for each key.
+   * @param size      The number of blocks.
+   */
+  private CompressedResultSet(Object readerKey, char[] keys, Block[] blocks, int size) {
+    this._readerKey = readerKey;
+    this._keys = size == keys.length? keys : Arrays.copyOf(keys, size);
+    this._blocks = size == blocks.length? blocks : Arrays.copyOf(blocks, size);
+    int cardinality = 0;
+    for (Block b : this._blocks) {
+      cardinality += b.cardinality();
+    }
+    this._cardinality = cardinality;
+  }
+
+  /**
+   * Returns an empty result set.
+   *
+   * @param readerKey The key of the reader (may be <code>null</code>).
+   * @return an empty result set.
+   */
+  public static CompressedResultSet empty(Object readerKey) {
+    return new CompressedResultSet(readerKey, new char[0], new Block[0], 0);
+  }
+
+  /**
+   * Returns a compressed copy of the specified result set.
+   *
+   * @param set The result set to copy.
+   * @return the corresponding compressed result set.
+   */
+  public static CompressedResultSet copyOf(ResultSet set) {
+    if (set instanceof CompressedResultSet) return (CompressedResultSet)set;
+    Builder builder = new Builder(null);
+    for (int doc = set.next(0); doc >= 0; doc = set.next(doc + 1)) {
+      builder.add(doc);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the key of the reader the documents were collected from.
+   *
+   * @return the key of the reader the documents were collected from (may be <code>null</code>).
+   */
+  public Object getReaderKey() {
+    return this._readerKey;
+  }
+
+  @Override
+  public int cardinality() {
+    return this._cardinality;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this._cardinality == 0;
+  }
+
+  @Override
+  public boolean contains(int doc) {
+    if (doc < 0) return false;
+    int i = Arrays.binarySearch(this._keys, (char)(doc >>> 16));
+    return i >= 0 && this._blocks[i].contains(doc & 0xFFFF);
+  }
+
+  @Override
+  public int next(int doc) {
+    int from = Math.max(doc, 0);
+    int i = Arrays.binarySearch(this._keys, (char)(from >>> 16));
+    if (i >= 0) {
+      int low = this._blocks[i].next(from & 0xFFFF);
+      if (low >= 0) return this._keys[i] << 16 | low;
+      i++;
+    } else {
+      i = -i - 1;
+    }
+    return i < this._keys.length? this._keys[i] << 16 | this._blocks[i].next(0) : -1;
+  }
+
+  @Override
+  public CompressedResultSet and(ResultSet other) {
+    CompressedResultSet o = compatible(other);
+    char[] keys = new char[Math.min(this._keys.length, o._keys.length)];
+    Block[] blocks = new Block[keys.length];
+    int size = 0;
+    for (int i = 0, j = 0; i < this._keys.length && j < o._keys.length;) {
+      if (this._keys[i] < o._keys[j]) i++;
+      else if (this._keys[i] > o._keys[j]) j++;
+      else {
+        Block b = and(this._blocks[i], o._blocks[j]);
+        if (b != null) {
+          keys[size] = this._keys[i];
+          blocks[size++] = b;
+        }
+        i++;
+        j++;
+      }
+    }
+    return new CompressedResultSet(readerKey(o), keys, blocks, size);
+  }
+
+  @Override
+  public CompressedResultSet or(ResultSet other) {
+    CompressedResultSet o = compatible(other);
+    char[] keys = new char[this._keys.length + o._keys.length];
+    Block[] blocks = new Block[keys.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < this._keys.length || j < o._keys.length) {
+      if (j == o._keys.length || (i < this._keys.length && this._keys[i] < o._keys[j])) {
+        keys[size] = this._keys[i];
+        blocks[size++] = this._blocks[i++];
+      } else if (i == this._keys.length || this._keys[i] > o._keys[j]) {
+        keys[size] = o._keys[j];
+        blocks[size++] = o._blocks[j++];
+      } else {
+        keys[size] = this._keys[i];
+        blocks[size++] = or(this._blocks[i++], o._blocks[j++]);
+      }
+    }
+    return new CompressedResultSet(readerKey(o), keys, blocks, size);
+  }
+
+  @Override
+  public CompressedResultSet andNot(ResultSet other) {
+    CompressedResultSet o = compatible(other);
+    char[] keys = new char[this._keys.length];
+    Block[] blocks = new Block[keys.length];
+    int size = 0;
+    for (int i = 0, j = 0; i < this._keys.length; i++) {
+      while (j < o._keys.length && o._keys[j] < this._keys[i]) j++;
+      Block b = this._blocks[i];
+      if (j < o._keys.length && o._keys[j] == this._keys[i]) b = andNot(b, o._blocks[j]);
+      if (b != null) {
+        keys[size] = this._keys[i];
+        blocks[size++] = b;
+      }
+    }
+    return new CompressedResultSet(readerKey(o), keys, blocks, size);
+  }
+
+  /**
+   * Returns an approximation of the memory used by the documents in this set.
+   *
+   * @return the number of bytes used by the blocks.
+   */
+  public long sizeInBytes() {
+    long bytes = this._keys.length * 2L;
+    for (Block b : this._blocks) {
+      bytes += b.sizeInBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return "CompressedResultSet(" + this._cardinality + " docs, " + this._blocks.length + " blocks)";
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Returns the specified set as a compressed set, checking that it was collected on the same
+   * reader.
+   *
+   * @param other The other set.
+   * @return the other set as a compressed set.
+   *
+   * @throws IllegalArgumentException If the sets were collected on different readers.
+   */
+  private CompressedResultSet compatible(ResultSet other) {
+    CompressedResultSet o = copyOf(other);
+    if (this._readerKey != null && o._readerKey != null && this._readerKey != o._readerKey)
+      throw new IllegalArgumentException("Cannot combine result sets collected on different readers");
+    return o;
+  }
+
+  /**
+   * @param o The other set.
+   * @return the reader key of this set or the other set.
+   */
+  private Object readerKey(CompressedResultSet o) {
+    return this._readerKey != null? this._readerKey : o._readerKey;
+  }
+
+  /**
+   * Returns the intersection of two blocks.
+   *
+   * @param a The first block.
+   * @param b The second block.
+   * @return the intersection or <code>null</code> if empty.
+   */
+  private static Block and(Block a, Block b) {
+    if (a instanceof ArrayBlock) return ((ArrayBlock)a).filter(b, true);
+    if (b instanceof ArrayBlock) return ((ArrayBlock)b).filter(a, true);
+    long[] words = a.toWords();
+    long[] other = b.toWords();
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      words[i] &= other[i];
+    }
+    return fromWords(words);
+  }
+
+  /**
+   * Returns the union of two blocks.
+   *
+   * @param a The first block.
+   * @param b The second block.
+   * @return the union.
+   */
+  private static Block or(Block a, Block b) {
+    if (a instanceof ArrayBlock && b instanceof ArrayBlock) {
+      ArrayBlock x = (ArrayBlock)a;
+      ArrayBlock y = (ArrayBlock)b;
+      if (x.values.length + y.values.length <= MAX_ARRAY_SIZE) {
+        char[] values = new char[x.values.length + y.values.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < x.values.length && j < y.values.length) {
+          if (x.values[i] < y.values[j]) values[n++] = x.values[i++];
+          else if (x.values[i] > y.values[j]) values[n++] = y.values[j++];
+          else {
+            values[n++] = x.values[i++];
+            j++;
+          }
+        }
+        while (i < x.values.length) values[n++] = x.values[i++];
+        while (j < y.values.length) values[n++] = y.values[j++];
+        return fromArray(values, n);
+      }
+    }
+    long[] words = a.toWords();
+    b.addTo(words);
+    return fromWords(words);
+  }
+
+  /**
+   * Returns the difference of two blocks.
+   *
+   * @param a The first block.
+   * @param b The block to remove.
+   * @return the difference or <code>null</code> if empty.
+   */
+  private static Block andNot(Block a, Block b) {
+    if (a instanceof ArrayBlock) return ((ArrayBlock)a).filter(b, false);
+    long[] words = a.toWords();
+    long[] other = b.toWords();
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      words[i] &= ~other[i];
+    }
+    return fromWords(words);
+  }
+
+  /**
+   * Returns the most compact block for the specified sorted values.
+   *
+   * @param values The sorted distinct values.
+   * @param n      The number of values.
+   *
+   * @return the corresponding block or <code>null</code> if there are no values.
+   */
+  private static Block fromArray(char[] values, int n) {
+    if (n == 0) return null;
+    int runs = 1;
+    for (int i = 1; i < n; i++) {
+      if (values[i] != values[i - 1] + 1) runs++;
+    }
+    if (runs * 4 < n * 2) {
+      char[] starts = new char[runs];
+      char[] lasts = new char[runs];
+      int r = 0;
+      starts[0] = values[0];
+      for (int i = 1; i < n; i++) {
+        if (values[i] != values[i - 1] + 1) {
+          lasts[r++] = values[i - 1];
+          starts[r] = values[i];
+        }
+      }
+      lasts[r] = values[n - 1];
+      return new RunBlock(starts, lasts);
+    }
+    return new ArrayBlock(n == values.length? values : Arrays.copyOf(values, n));
+  }
+
+  /**
+   * Returns the most compact block for the specified bitmap.
+   *
+   * @param words The bitmap.
+   * @return the corresponding block or <code>null</code> if the bitmap is empty.
+   */
+  private static Block fromWords(long[] words) {
+    int cardinality = 0;
+    int runs = 0;
+    long carry = 0;
+    for (long w : words) {
+      cardinality += Long.bitCount(w);
+      runs += Long.bitCount(w & ~(w << 1 | carry));
+      carry = w >>> 63;
+    }
+    if (cardinality == 0) return null;
+    if (cardinality <= MAX_ARRAY_SIZE) {
+      char[] values = new char[cardinality];
+      int n = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        for (long w = words[i]; w != 0; w &= w - 1) {
+          values[n++] = (char)(i << 6 | Long.numberOfTrailingZeros(w));
+        }
+      }
+      return fromArray(values, n);
+    }
+    if (runs * 4 < BITMAP_BYTES) {
+      char[] starts = new char[runs];
+      char[] lasts = new char[runs];
+      int r = 0;
+      boolean inRun = false;
+      for (int v = 0; v < BITMAP_WORDS * 64; v++) {
+        boolean set = (words[v >>> 6] & 1L << v) != 0;
+        if (set && !inRun) starts[r] = (char)v;
+        if (!set && inRun) lasts[r++] = (char)(v - 1);
+        inRun = set;
+      }
+      if (inRun) lasts[r] = (char)0xFFFF;
+      return new RunBlock(starts, lasts);
+    }
+    return new BitmapBlock(words, cardinality);
+  }
+
+  // Builder --------------------------------------------------------------------------------------
+
+  /**
+   * Builds a compressed result set from documents added in increasing order.
+   *
+   * <p>Only the block being built is uncompressed, so the memory needed to build a set is at most
+   * 8 KB more than the set itself.
+   */
+  public static final class Builder {
+
+    /** The key of the reader the documents were collected from. */
+    private final Object _readerKey;
+
+    /** The keys of the blocks built so far. */
+    private char[] keys = new char[4];
+
+    /** The blocks built so far. */
+    private Block[] blocks = new Block[4];
+
+    /** The number of blocks built so far. */
+    private int size = 0;
+
+    /** The key of the current block, -1 if none. */
+    private int key = -1;
+
+    /** The values of the current block while it is small enough. */
+    private char[] values = new char[16];
+
+    /** The number of values in the current block. */
+    private int count = 0;
+
+    /** The bitmap of the current block once it is too large for an array. */
+    private long[] words = null;
+
+    /** The last document added. */
+    private int last = -1;
+
+    /**
+     * Creates a new builder.
+     *
+     * @param readerKey The key of the reader the documents are collected from (may be <code>null</code>).
+     */
+    public Builder(Object readerKey) {
+      this._readerKey = readerKey;
+    }
+
+    /**
+     * Adds a document to the set.
+     *
+     * @param doc The document ID, greater than or equal to the last document added.
+     *
+     * @throws IllegalArgumentException If the document is lower than the last document added.
+     */
+    public void add(int doc) {
+      if (doc <= this.last) {
+        if (doc == this.last) return;
+        throw new IllegalArgumentException("Documents must be added in increasing order");
+      }
+      this.last = doc;
+      int high = doc >>> 16;
+      if (high != this.key) {
+        flush();
+        this.key = high;
+      }
+      char low = (char)(doc & 0xFFFF);
+      if (this.words != null) {
+        this.words[low >>> 6] |= 1L << low;
+      } else if (this.count < MAX_ARRAY_SIZE) {
+        if (this.count == this.values.length) this.values = Arrays.copyOf(this.values, this.count * 2);
+        this.values[this.count++] = low;
+      } else {
+        this.words = new long[BITMAP_WORDS];
+        for (int i = 0; i < this.count; i++) {
+          this.words[this.values[i] >>> 6] |= 1L << this.values[i];
+        }
+        this.words[low >>> 6] |= 1L << low;
+      }
+    }
+
+    /**
+     * Returns the result set with all the documents added so far.
+     *
+     * @return the corresponding result set.
+     */
+    public CompressedResultSet build() {
+      flush();
+      return new CompressedResultSet(this._readerKey, this.keys, this.blocks, this.size);
+    }
+
+    /**
+     * Stores the current block.
+     */
+    private void flush() {
+      if (this.key < 0) return;
+      Block b = this.words != null? fromWords(this.words) : fromArray(this.values, this.count);
+      if (b != null) {
+        if (this.size == this.keys.length) {
+          this.keys = Arrays.copyOf(this.keys, this.size * 2);
+          this.blocks = Arrays.copyOf(this.blocks, this.size * 2);
+        }
+        this.keys[this.size] = (char)this.key;
+        this.blocks[this.size++] = b;
+      }
+      this.key = -1;
+      this.values = new char[16];
+      this.count = 0;
+      this.words = null;
+    }
+  }
+
+  // Private classes ------------------------------------------------------------------------------
+
+  /**
+   * A block of up to 65536 documents sharing the same high 16 bits.
+   */
+  private abstract static class Block {
+
+    /**
+     * @return the number of documents in this block.
+     */
+    abstract int cardinality();
+
+    /**
+     * @param low The low 16 bits of the document ID.
+     * @return <code>true</code> if this block contains the document.
+     */
+    abstract boolean contains(int low);
+
+    /**
+     * @param low The low 16 bits of the document ID to start from.
+     * @return the next low 16 bits in this block or -1.
+     */
+    abstract int next(int low);
+
+    /**
+     * @param words The bitmap to add the documents of this block to.
+     */
+    abstract void addTo(long[] words);
+
+    /**
+     * @return the approximate number of bytes used by this block.
+     */
+    abstract int sizeInBytes();
+
+    /**
+     * @return a new bitmap with the documents of this block.
+     */
+    final long[] toWords() {
+      long[] words = new long[BITMAP_WORDS];
+      addTo(words);
+      return words;
+    }
+  }
+
+  /**
+   * A block storing the sorted low 16 bits of its documents.
+   */
+  private static final class ArrayBlock extends Block {
+
+    /** The sorted values. */
+    final char[] values;
+
+    /**
+     * @param values The sorted values.
+     */
+    ArrayBlock(char[] values) {
+      this.values = values;
+    }
+
+    @Override
+    int cardinality() {
+      return this.values.length;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return Arrays.binarySearch(this.values, (char)low) >= 0;
+    }
+
+    @Override
+    int next(int low) {
+      int i = Arrays.binarySearch(this.values, (char)low);
+      if (i < 0) i = -i - 1;
+      return i < this.values.length? this.values[i] : -1;
+    }
+
+    @Override
+    void addTo(long[] words) {
+      for (char v : this.values) {
+        words[v >>> 6] |= 1L << v;
+      }
+    }
+
+    @Override
+    int sizeInBytes() {
+      return this.values.length * 2;
+    }
+
+    /**
+     * @param other  The other block.
+     * @param retain <code>true</code> to keep the values in the other block; <code>false</code> to
+     *               keep the values not in the other block.
+     * @return the filtered block or <code>null</code> if empty.
+     */
+    Block filter(Block other, boolean retain) {
+      char[] kept = new char[this.values.length];
+      int n = 0;
+      for (char v : this.values) {
+        if (other.contains(v) == retain) kept[n++] = v;
+      }
+      return fromArray(kept, n);
+    }
+  }
+
+  /**
+   * A block storing a bitmap of its documents.
+   */
+  private static final class BitmapBlock extends Block {
+
+    /** The bitmap. */
+    private final long[] _words;
+
+    /** The number of bits set. */
+    private final int _cardinality;
+
+    /**
+     * @param words       The bitmap.
+     * @param cardinality The number of bits set.
+     */
+    BitmapBlock(long[] words, int cardinality) {
+      this._words = words;
+      this._cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return this._cardinality;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return (this._words[low >>> 6] & 1L << low) != 0;
+    }
+
+    @Override
+    int next(int low) {
+      int i = low >>> 6;
+      long w = this._words[i] & -1L << low;
+      while (w == 0) {
+        if (++i == BITMAP_WORDS) return -1;
+        w = this._words[i];
+      }
+      return i << 6 | Long.numberOfTrailingZeros(w);
+    }
+
+    @Override
+    void addTo(long[] words) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        words[i] |= this._words[i];
+      }
+    }
+
+    @Override
+    int sizeInBytes() {
+      return BITMAP_BYTES;
+    }
+  }
+
+  /**
+   * A block storing runs of consecutive documents.
+   */
+  private static final class RunBlock extends Block {
+
+    /** The first value of each run. */
+    private final char[] _starts;
+
+    /** The last value of each run. */
+    private final char[] _lasts;
+
+    /** The number of values. */
+    private final int _cardinality;
+
+    /**
+     * @param starts The first value of each run.
+     * @param lasts  The last value of each run.
+     */
+    RunBlock(char[] starts, char[] lasts) {
+      this._starts = starts;
+      this._lasts = lasts;
+      int cardinality = 0;
+      for (int i = 0; i < starts.length; i++) {
+        cardinality += lasts[i] - starts[i] + 1;
+      }
+      this._cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return this._cardinality;
+    }
+
+    @Override
+    boolean contains(int low) {
+      int i = Arrays.binarySearch(this._starts, (char)low);
+      if (i >= 0) return true;
+      i = -i - 2;
+      return i >= 0 && low <= this._lasts[i];
+    }
+
+    @Override
+    int next(int low) {
+      int i = Arrays.binarySearch(this._starts, (char)low);
+      if (i >= 0) return low;
+      i = -i - 2;
+      if (i >= 0 && low <= this._lasts[i]) return low;
+      return i + 1 < this._starts.length? this._starts[i + 1] : -1;
+    }
+
+    @Override
+    void addTo(long[] words) {
+      for (int i = 0; i < this._starts.length; i++) {
+        int from = this._starts[i];
+        int to = this._lasts[i] + 1;
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+          words[first] |= firstMask & lastMask;
+        } else {
+          words[first] |= firstMask;
+          for (int w = first + 1; w < last; w++) {
+            words[w] = -1L;
+          }
+          words[last] |= lastMask;
+        }
+      }
+    }
+
+    @Override
+    int sizeInBytes() {
+      return this._starts.length * 4;
+    }
+  }
+
+}
@@ -0,0 +1,411 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.OpenBitSet;
+import org.weborganic.flint.index.DerivedField;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A wildcard query which uses the fields derived from its field when they exist in the index.
+ *
+ * <p>This query is evaluated for each segment separately: in each segment, it checks which
+ * {@link DerivedField}s of its field cover every document which has the field and rewrites the
+ * pattern to a cheaper query on such a derived field:
+ * <ul>
+ *   <li>a trailing wildcard <code>luc*</code> becomes a term query on the edge n-gram field;</li>
+ *   <li>a leading wildcard <code>*ing</code> becomes a prefix query on the reversed field and any
+ *   other pattern ending with a character (<code>*e?ing</code>) a wildcard query on that field
+ *   starting with characters;</li>
+ *   <li>an infix pattern <code>*uce*</code> becomes a term or phrase query on the n-gram field.</li>
+ * </ul>
+ *
+ * <p>Otherwise, and in segments including documents which were indexed without the derived field,
+ * the pattern is matched as a regular wildcard query on its field. In all cases, the documents
+ * matching this query have a constant score.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class DerivedFieldQuery extends Query {
+
+  /**
+   * As per requirement for the Serializable interface.
+   */
+  private static final long serialVersionUID = 20261019L;
+
+  /**
+   * Whether a derived field covers its original field, cached by segment reader key and derived field.
+   */
+  private static final Map<Object, Map<String, Boolean>> COVERAGE = new WeakHashMap<Object, Map<String, Boolean>>();
+
+  /**
+   * The field and wildcard pattern.
+   */
+  private final Term _term;
+
+  /**
+   * Creates a new query.
+   *
+   * @param term The field and wildcard pattern using <code>*</code> and <code>?</code>.
+   */
+  public DerivedFieldQuery(Term term) {
+    this._term = term;
+  }
+
+  /**
+   * @return the field and wildcard pattern.
+   */
+  public Term getTerm() {
+    return this._term;
+  }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    Query query = new ConstantScoreQuery(new DerivedFieldFilter(this._term));
+    query.setBoost(getBoost());
+    return query;
+  }
+
+  @Override
+  public void extractTerms(Set<Term> terms) {
+    // Terms are only known once rewritten
+  }
+
+  @Override
+  public String toString(String field) {
+    StringBuilder s = new StringBuilder();
+    if (!this._term.field().equals(field)) s.append(this._term.field()).append(':');
+    s.append(this._term.text());
+    if (getBoost() != 1.0f) s.append('^').append(getBoost());
+    return s.toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof DerivedFieldQuery)) return false;
+    DerivedFieldQuery q = (DerivedFieldQuery)o;
+    return getBoost() == q.getBoost() && this._term.equals(q._term);
+  }
+
+  @Override
+  public int hashCode() {
+    return Float.floatToIntBits(getBoost()) ^ this._term.hashCode() ^ 0x5D3A;
+  }
+
+  // Static helpers -------------------------------------------------------------------------------
+
+  /**
+   * Returns a copy of the specified query where the wildcard and prefix queries on fields which
+   * have derived fields in the index are replaced by derived field queries.
+   *
+   * <p>Queries on other fields are left unchanged. Boolean queries are copied so that the
+   * specified query is never modified.
+   *
+   * @param query  The query to transform.
+   * @param reader The reader the query will be run against.
+   *
+   * @return the transformed query or the same query if it contains no wildcard or prefix query
+   *         on a field with derived fields.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  public static Query useDerivedFields(Query query, IndexReader reader) throws IOException {
+    if (query instanceof WildcardQuery) {
+      Term term = ((WildcardQuery)query).getTerm();
+      if (!hasDerivedFields(reader, term.field())) return query;
+      return copyBoost(query, new DerivedFieldQuery(term));
+    } else if (query instanceof PrefixQuery) {
+      Term prefix = ((PrefixQuery)query).getPrefix();
+      if (!hasDerivedFields(reader, prefix.field())) return query;
+      return copyBoost(query, new DerivedFieldQuery(prefix.createTerm(prefix.text() + '*')));
+    } else if (query instanceof BooleanQuery) {
+      BooleanQuery bq = (BooleanQuery)query;
+      BooleanQuery copy = null;
+      BooleanClause[] clauses = bq.getClauses();
+      for (int i = 0; i < clauses.length; i++) {
+        Query q = useDerivedFields(clauses[i].getQuery(), reader);
+        if (q != clauses[i].getQuery() && copy == null) {
+          copy = new BooleanQuery(bq.isCoordDisabled());
+          copy.setMinimumNumberShouldMatch(bq.getMinimumNumberShouldMatch());
+          copy.setBoost(bq.getBoost());
+          for (int j = 0; j < i; j++) {
+            copy.add(clauses[j]);
+          }
+        }
+        if (copy != null) copy.add(q, clauses[i].getOccur());
+      }
+      return copy != null? copy : query;
+    }
+    return query;
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Indicates whether any document in the index records a field derived from the specified field.
+   *
+   * @param reader The index reader.
+   * @param field  The original field.
+   *
+   * @return <code>true</code> if the field has at least one derived field in the index.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  private static boolean hasDerivedFields(IndexReader reader, String field) throws IOException {
+    for (DerivedField derived : DerivedField.values()) {
+      if (reader.docFreq(new Term(DerivedField.COVERAGE_FIELD, derived.toFieldName(field))) > 0) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Rewrites the wildcard pattern using the derived fields available in the specified segment.
+   *
+   * @param term    The field and wildcard pattern.
+   * @param segment The segment reader.
+   *
+   * @return the rewritten query.
+   *
+   * @throws IOException If thrown by the reader while checking the coverage of derived fields.
+   */
+  private static Query rewrite(Term term, IndexReader segment) throws IOException {
+    final String field = term.field();
+    final String pattern = term.text();
+    int first = firstWildcard(pattern);
+    // No wildcard at all
+    if (first < 0) return new ConstantScoreQuery(new QueryWrapperFilter(new TermQuery(term)));
+    String literal = pattern.substring(first + 1);
+    boolean leading = first == 0 && pattern.charAt(0) == '*';
+    // Trailing wildcard 'abc*'
+    if (first == pattern.length() - 1 && pattern.charAt(first) == '*') {
+      String prefix = pattern.substring(0, first);
+      String edge = DerivedField.EDGE_NGRAM.toFieldName(field);
+      if (prefix.length() > 0 && prefix.length() <= DerivedField.MAX_EDGE_NGRAM_LENGTH && covers(segment, field, edge))
+        return new ConstantScoreQuery(new QueryWrapperFilter(new TermQuery(new Term(edge, prefix))));
+      return constantScore(new PrefixQuery(term.createTerm(prefix)));
+    }
+    if (leading) {
+      // Infix '*abc*'
+      if (literal.length() > 1 && literal.endsWith("*") && firstWildcard(literal) == literal.length() - 1) {
+        String infix = literal.substring(0, literal.length() - 1);
+        String ngram = DerivedField.NGRAM.toFieldName(field);
+        if (infix.length() >= DerivedField.NGRAM_SIZE && covers(segment, field, ngram))
+          return toGramQuery(ngram, infix);
+      }
+      // Leading wildcard '*abc' or '*a?c'
+      String reversed = DerivedField.REVERSED.toFieldName(field);
+      char last = pattern.charAt(pattern.length() - 1);
+      if (last != '*' && last != '?' && covers(segment, field, reversed)) {
+        String reverse = new StringBuilder(pattern).reverse().toString();
+        int w = firstWildcard(reverse);
+        if (w == reverse.length() - 1 && reverse.charAt(w) == '*')
+          return constantScore(new PrefixQuery(new Term(reversed, reverse.substring(0, w))));
+        return constantScore(new WildcardQuery(new Term(reversed, reverse)));
+      }
+    }
+    return constantScore(new WildcardQuery(term));
+  }
+
+  /**
+   * Returns the query matching the infix on the n-gram field.
+   *
+   * @param field The n-gram field.
+   * @param infix The text to match within a token.
+   *
+   * @return a term query if the infix is a gram; a phrase query on consecutive grams otherwise.
+   */
+  private static Query toGramQuery(String field, String infix) {
+    final int size = DerivedField.NGRAM_SIZE;
+    if (infix.length() == size)
+      return new ConstantScoreQuery(new QueryWrapperFilter(new TermQuery(new Term(field, infix))));
+    PhraseQuery phrase = new PhraseQuery();
+    for (int i = 0; i + size <= infix.length(); i++) {
+      phrase.add(new Term(field, infix.substring(i, i + size)), i);
+    }
+    return new ConstantScoreQuery(new QueryWrapperFilter(phrase));
+  }
+
+  /**
+   * Sets the rewrite method of a multi-term query to a constant score filter.
+   *
+   * @param query The multi-term query.
+   * @return the same query.
+   */
+  private static Query constantScore(MultiTermQuery query) {
+    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+    return query;
+  }
+
+  /**
+   * @param pattern A wildcard pattern.
+   * @return the index of the first wildcard character or <code>-1</code>.
+   */
+  private static int firstWildcard(String pattern) {
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c == '*' || c == '?') return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @param from The original query.
+   * @param to   The query replacing it.
+   * @return the query replacing it with the boost of the original query.
+   */
+  private static Query copyBoost(Query from, Query to) {
+    to.setBoost(from.getBoost());
+    return to;
+  }
+
+  /**
+   * Indicates whether the derived field covers the original field in the specified segment, that
+   * is whether it was built for every document which has the original field.
+   *
+   * <p>This is the case if all the documents of the segment record the derived field in their
+   * {@link DerivedField#COVERAGE_FIELD}; otherwise, the documents of the original field are
+   * compared with those recording the derived field. The result is cached for the life of the
+   * segment.
+   *
+   * @param segment The segment reader.
+   * @param field   The original field.
+   * @param derived The derived field.
+   *
+   * @return <code>true</code> if the derived field can be used in this segment.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  private static boolean covers(IndexReader segment, String field, String derived) throws IOException {
+    Object key = segment.getFieldCacheKey();
+    synchronized (COVERAGE) {
+      Map<String, Boolean> fields = COVERAGE.get(key);
+      Boolean covers = fields != null? fields.get(derived) : null;
+      if (covers != null) return covers.booleanValue();
+    }
+    boolean covers = computeCoverage(segment, field, derived);
+    synchronized (COVERAGE) {
+      Map<String, Boolean> fields = COVERAGE.get(key);
+      if (fields == null) {
+        fields = new HashMap<String, Boolean>();
+        COVERAGE.put(key, fields);
+      }
+      fields.put(derived, Boolean.valueOf(covers));
+    }
+    return covers;
+  }
+
+  /**
+   * Computes whether the derived field covers the original field in the specified segment.
+   *
+   * @param segment The segment reader.
+   * @param field   The original field.
+   * @param derived The derived field.
+   *
+   * @return <code>true</code> if every document with the original field records the derived field.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  private static boolean computeCoverage(IndexReader segment, String field, String derived) throws IOException {
+    Term marker = new Term(DerivedField.COVERAGE_FIELD, derived);
+    int count = segment.docFreq(marker);
+    if (count == 0) return false;
+    if (count == segment.maxDoc()) return true;
+    // Collect the documents recording the derived field
+    OpenBitSet covered = new OpenBitSet(segment.maxDoc());
+    TermDocs docs = segment.termDocs(marker);
+    try {
+      while (docs.next()) covered.fastSet(docs.doc());
+    } finally {
+      docs.close();
+    }
+    // Check that every document with the original field is one of them
+    TermEnum e = segment.terms(new Term(field, ""));
+    docs = segment.termDocs();
+    try {
+      do {
+        Term t = e.term();
+        if (t == null || !field.equals(t.field())) break;
+        docs.seek(e);
+        while (docs.next()) {
+          if (!covered.fastGet(docs.doc())) return false;
+        }
+      } while (e.next());
+    } finally {
+      docs.close();
+      e.close();
+    }
+    return true;
+  }
+
+  // private classes ------------------------------------------------------------------------------
+
+  /**
+   * Matches the wildcard pattern using the derived fields available in each segment.
+   */
+  private static final class DerivedFieldFilter extends Filter {
+
+    /** As per requirement for the Serializable interface. */
+    private static final long serialVersionUID = 20261019L;
+
+    /** The field and wildcard pattern. */
+    private final Term _term;
+
+    /**
+     * @param term The field and wildcard pattern.
+     */
+    public DerivedFieldFilter(Term term) {
+      this._term = term;
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(IndexReader segment) throws IOException {
+      return new QueryWrapperFilter(rewrite(this._term, segment)).getDocIdSet(segment);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof DerivedFieldFilter && this._term.equals(((DerivedFieldFilter)o)._term);
+    }
+
+    @Override
+    public int hashCode() {
+      return this._term.hashCode() ^ 0x5D3B;
+    }
+
+    @Override
+    public String toString() {
+      return "DerivedFieldFilter("+this._term+")";
+    }
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * Loads the stored fields of batches of documents in document ID order.
+ *
+ * <p>Search results are ranked by score or sort key, so loading their documents in that order
+ * causes random seeks in the stored fields file. This loader reads the documents of a batch in
+ * ascending document ID order and returns them in the order of the specified IDs.
+ *
+ * <p>Full documents can also be kept in a least recently used cache for each reader, so that
+ * paging over the same results does not read the same documents again. Since cached documents
+ * are shared, they must not be modified.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class DocumentLoader {
+
+  /**
+   * The document caches by reader key.
+   */
+  private static final Map<Object, DocumentCache> CACHES = new WeakHashMap<Object, DocumentCache>();
+
+  /**
+   * The index reader to load the documents from.
+   */
+  private final IndexReader _reader;
+
+  /**
+   * The maximum number of documents to cache for the reader, 0 for none.
+   */
+  private final int _cacheSize;
+
+  /**
+   * Creates a new loader without cache.
+   *
+   * @param reader The index reader to load the documents from.
+   */
+  public DocumentLoader(IndexReader reader) {
+    this(reader, 0);
+  }
+
+  /**
+   * Creates a new loader.
+   *
+   * <p>The cache is shared by all the loaders for the same reader, its size is the largest size
+   * specified for that reader.
+   *
+   * @param reader    The index reader to load the documents from.
+   * @param cacheSize The maximum number of full documents to cache for the reader, 0 for none.
+   *
+   * @throws IllegalArgumentException If the cache size is negative.
+   */
+  public DocumentLoader(IndexReader reader, int cacheSize) {
+    if (cacheSize < 0) throw new IllegalArgumentException("cacheSize < 0");
+    this._reader = reader;
+    this._cacheSize = cacheSize;
+  }
+
+  /**
+   * Loads the full document with the specified ID.
+   *
+   * @param id The document ID.
+   * @return the corresponding document.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  public Document load(int id) throws IOException {
+    return load(new int[]{id}, null)[0];
+  }
+
+  /**
+   * Loads the full documents with the specified IDs.
+   *
+   * @param ids The document IDs in any order.
+   * @return the corresponding documents in the same order as the IDs.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  public Document[] load(int[] ids) throws IOException {
+    return load(ids, null);
+  }
+
+  /**
+   * Loads the documents with the specified IDs using a field selector.
+   *
+   * <p>Only full documents are cached, that is when the selector is <code>null</code>.
+   *
+   * @param ids      The document IDs in any order.
+   * @param selector The field selector to use (may be <code>null</code>).
+   *
+   * @return the corresponding documents in the same order as the IDs.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  public Document[] load(int[] ids, FieldSelector selector) throws IOException {
+    FieldSelector[] selectors = new FieldSelector[ids.length];
+    Arrays.fill(selectors, selector);
+    return loadEach(ids, selectors);
+  }
+
+  /**
+   * Loads the documents with the specified IDs using a different field selector for each document.
+   *
+   * <p>Only full documents are cached, that is when the selector of a document is <code>null</code>.
+   *
+   * @param ids       The document IDs in any order.
+   * @param selectors The field selector to use for the document with the ID at the same index
+   *                  (each may be <code>null</code>).
+   *
+   * @return the corresponding documents in the same order as the IDs.
+   *
+   * @throws IOException If thrown by the reader.
+   * @throws IllegalArgumentException If there is not one selector for each ID.
+   */
+  public Document[] loadEach(int[] ids, FieldSelector[] selectors) throws IOException {
+    if (selectors.length != ids.length) throw new IllegalArgumentException("One selector is required for each ID");
+    Document[] docs = new Document[ids.length];
+    DocumentCache cache = this._cacheSize > 0? cache() : null;
+    // Sort the IDs keeping track of their rank
+    long[] order = new long[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      order[i] = ((long)ids[i] << 32) | i;
+    }
+    Arrays.sort(order);
+    for (long o : order) {
+      int id = (int)(o >>> 32);
+      int rank = (int)o;
+      FieldSelector selector = selectors[rank];
+      boolean cached = cache != null && selector == null;
+      Document doc = cached? cache.get(id) : null;
+      if (doc == null) {
+        doc = this._reader.document(id, selector);
+        if (cached) cache.put(id, doc);
+      }
+      docs[rank] = doc;
+    }
+    return docs;
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Returns the document cache for the reader of this loader.
+   *
+   * @return the document cache for the reader.
+   */
+  private DocumentCache cache() {
+    Object key = this._reader.getFieldCacheKey();
+    synchronized (CACHES) {
+      DocumentCache cache = CACHES.get(key);
+      if (cache == null) {
+        cache = new DocumentCache(this._cacheSize);
+        CACHES.put(key, cache);
+      } else {
+        cache.ensureCapacity(this._cacheSize);
+      }
+      return cache;
+    }
+  }
+
+  // Private classes ------------------------------------------------------------------------------
+
+  /**
+   * A least recently used cache of documents.
+   */
+  private static final class DocumentCache {
+
+    /** The maximum number of documents. */
+    private int capacity;
+
+    /** The documents by ID in access order. */
+    private final LinkedHashMap<Integer, Document> _documents;
+
+    /**
+     * @param capacity The maximum number of documents.
+     */
+    DocumentCache(int capacity) {
+      this.capacity = capacity;
+      this._documents = new LinkedHashMap<Integer, Document>(16, 0.75f, true) {
+        private static final long serialVersionUID = 20261019L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Document> eldest) {
+          return size() > DocumentCache.this.capacity;
+        }
+      };
+    }
+
+    /**
+     * @param id The document ID.
+     * @return the cached document or <code>null</code>.
+     */
+    synchronized Document get(int id) {
+      return this._documents.get(Integer.valueOf(id));
+    }
+
+    /**
+     * @param id  The document ID.
+     * @param doc The document to cache.
+     */
+    synchronized void put(int id, Document doc) {
+      this._documents.put(Integer.valueOf(id), doc);
+    }
+
+    /**
+     * @param capacity The minimum number of documents.
+     */
+    synchronized void ensureCapacity(int capacity) {
+      if (capacity > this.capacity) this.capacity = capacity;
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * Accumulates the values of a facet while the documents matching a query are collected.
+ *
+ * <p>Accumulators are used by the {@link FacetCollector} to compute facets in the same pass as
+ * the search results; they are stateful and should only be used for a single search.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public interface FacetAccumulator {
+
+  /**
+   * Called before collecting the documents of the next segment.
+   *
+   * @param reader  The segment reader.
+   * @param docBase The document ID of the first document in the segment.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  void setNextReader(IndexReader reader, int docBase) throws IOException;
+
+  /**
+   * Accumulates the facet values of the specified document.
+   *
+   * @param doc The segment document ID.
+   *
+   * @throws IOException If thrown while reading the document values.
+   */
+  void collect(int doc) throws IOException;
+
+  /**
+   * Called once all the documents have been collected to update the facet.
+   */
+  void finish();
+
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A collector which computes any number of facets while collecting the documents for another
+ * collector, so that the query only needs to be executed once.
+ *
+ * <p>Typical usage:
+ * <pre>
+ *  // wraps the collector for the results
+ *  FacetCollector collector = new FacetCollector(results, accumulators);
+ *
+ *  // make a search
+ *  searcher.search(query, collector);
+ *
+ *  // update the facets
+ *  collector.finish();
+ * </pre>
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class FacetCollector extends Collector {
+
+  /**
+   * The wrapped collector.
+   */
+  private final Collector _collector;
+
+  /**
+   * The accumulators for each facet.
+   */
+  private final FacetAccumulator[] _accumulators;
+
+  /**
+   * Creates a new facet collector.
+   *
+   * @param collector    The collector to wrap.
+   * @param accumulators The accumulators for each facet.
+   */
+  public FacetCollector(Collector collector, List<FacetAccumulator> accumulators) {
+    this._collector = collector;
+    this._accumulators = accumulators.toArray(new FacetAccumulator[accumulators.size()]);
+  }
+
+  /**
+   * Passes the scorer to the wrapped collector.
+   * @param scorer the scorer.
+   *
+   * @throws IOException If thrown by the wrapped collector.
+   */
+  @Override
+  public void setScorer(Scorer scorer) throws IOException {
+    this._collector.setScorer(scorer);
+  }
+
+  /**
+   * Accumulators accept documents in any order, so this depends on the wrapped collector.
+   *
+   * @return whether the wrapped collector accepts documents out of order.
+   */
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return this._collector.acceptsDocsOutOfOrder();
+  }
+
+  @Override
+  public void setNextReader(IndexReader reader, int docBase) throws IOException {
+    this._collector.setNextReader(reader, docBase);
+    for (FacetAccumulator accumulator : this._accumulators) {
+      accumulator.setNextReader(reader, docBase);
+    }
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    this._collector.collect(doc);
+    for (FacetAccumulator accumulator : this._accumulators) {
+      accumulator.collect(doc);
+    }
+  }
+
+  /**
+   * Finishes all the accumulators so that the facets are updated.
+   */
+  public void finish() {
+    for (FacetAccumulator accumulator : this._accumulators) {
+      accumulator.finish();
+    }
+  }
+
+}
@@ -8,20 +8,19 @@
 package org.weborganic.flint.search;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Searcher;
 import org.apache.lucene.search.TermQuery;
 import org.weborganic.flint.util.Beta;
 import org.weborganic.flint.util.Bucket;
 import org.weborganic.flint.util.Bucket.Entry;
-import org.weborganic.flint.util.Terms;
 
 import com.topologi.diffx.xml.XMLWritable;
 import com.topologi.diffx.xml.XMLWriter;
@@ -33,7 +32,7 @@ import com.topologi.diffx.xml.XMLWriter;
  * @version 16 February 2012
  */
 @Beta
-public final class FieldFacet implements XMLWritable, Facet {
+public final class FieldFacet implements XMLWritable, AccumulableFacet {
 
   /**
    * The default number of facet values if not specified.
@@ -46,9 +45,9 @@ public final class FieldFacet implements XMLWritable, Facet {
   private final String _name;
 
   /**
-   * The queries used to calculate each facet.
+   * The terms of the field in the reader used to create this facet.
    */
-  private final List<TermQuery> _queries;
+  private final String[] _terms;
 
   /**
    * The queries used to calculate each facet.
@@ -58,12 +57,12 @@ public final class FieldFacet implements XMLWritable, Facet {
   /**
    * Creates a new facet with the specified name;
    *
-   * @param name    The name of the facet.
-   * @param queries The subqueries to use on top of the base query to calculate the facet values.
+   * @param name  The name of the facet.
+   * @param terms The text of the terms of the field used to calculate the facet values.
    */
-  private FieldFacet(String name, List<TermQuery> queries) {
+  private FieldFacet(String name, String[] terms) {
     this._name = name;
-    this._queries = queries;
+    this._terms = terms;
   }
 
   /**
@@ -84,16 +83,16 @@ public final class FieldFacet implements XMLWritable, Facet {
   @Override
   public Query forValue(String value) {
     if (value == null) return null;
-    for (TermQuery t : this._queries) {
-      if (value.equals(t.getTerm().text())) return t;
-    }
-    // Why null?
     return new TermQuery(new Term(this._name, value));
   }
 
   /**
    * Computes each facet option.
    *
+   * <p>When the searcher is an {@link IndexSearcher}, the base query is run only once and the
+   * values of the field are counted for each matching document using the term ordinals of each
+   * segment; otherwise, a search is performed for each value.
+   *
    * @param searcher the index search to use.
    * @param base     the base query.
    * @param size     the maximum number of field values to compute.
@@ -101,13 +100,25 @@ public final class FieldFacet implements XMLWritable, Facet {
    * @throws IOException if thrown by the searcher.
    */
   public void compute(Searcher searcher, Query base, int size) throws IOException {
-    // If the base is null, simply calculate for each query
-    if (base == null) { compute(searcher, size); }
     if (size < 0) throw new IllegalArgumentException("size < 0");
+    // Count all values in a single pass
+    if (searcher instanceof IndexSearcher) {
+      FieldOrdinals ordinals = FieldOrdinals.get(((IndexSearcher)searcher).getIndexReader(), this._name);
+      OrdinalCounter counter = new OrdinalCounter(ordinals);
+      searcher.search(base != null? base : new MatchAllDocsQuery(), counter);
+      this._bucket = counter.toBucket(size);
+      return;
+    }
+    // If the base is null, simply calculate for each query
+    if (base == null) {
+      compute(searcher, size);
+      return;
+    }
     // Otherwise, make a boolean query of the base AND each facet query
     Bucket<Term> bucket = new Bucket<Term>(size);
     DocumentCounter counter = new DocumentCounter();
-    for (TermQuery q : this._queries) {
+    for (String text : this._terms) {
+      TermQuery q = new TermQuery(new Term(this._name, text));
       BooleanQuery query = new BooleanQuery();
       query.add(base, Occur.MUST);
       query.add(q, Occur.MUST);
@@ -148,7 +159,8 @@ public final class FieldFacet implements XMLWritable, Facet {
   private void compute(Searcher searcher, int size) throws IOException {
     Bucket<Term> bucket = new Bucket<Term>(size);
     DocumentCounter counter = new DocumentCounter();
-    for (TermQuery q : this._queries) {
+    for (String text : this._terms) {
+      TermQuery q = new TermQuery(new Term(this._name, text));
       searcher.search(q, counter);
       bucket.add(q.getTerm(), counter.getCount());
       counter.reset();
@@ -156,6 +168,35 @@ public final class FieldFacet implements XMLWritable, Facet {
     this._bucket = bucket;
   }
 
+  /**
+   * Returns a new accumulator to compute this facet while collecting the results of a query.
+   *
+   * <p>Same as <code>newAccumulator(reader, 10);</code>.
+   *
+   * @param reader The top-level reader the search is performed on.
+   * @return a new accumulator for this facet.
+   *
+   * @throws IOException If thrown by the reader while loading the term ordinals.
+   */
+  @Override
+  public FacetAccumulator newAccumulator(IndexReader reader) throws IOException {
+    return newAccumulator(reader, DEFAULT_MAX_NUMBER_OF_VALUES);
+  }
+
+  /**
+   * Returns a new accumulator to compute this facet while collecting the results of a query.
+   *
+   * @param reader The top-level reader the search is performed on.
+   * @param size   the maximum number of field values to compute.
+   * @return a new accumulator for this facet.
+   *
+   * @throws IOException If thrown by the reader while loading the term ordinals.
+   */
+  public FacetAccumulator newAccumulator(IndexReader reader, int size) throws IOException {
+    if (size < 0) throw new IllegalArgumentException("size < 0");
+    return new Accumulator(new OrdinalCounter(FieldOrdinals.get(reader, this._name)), size);
+  }
+
   @Override
   public void toXML(XMLWriter xml) throws IOException {
     xml.openElement("facet", true);
@@ -180,6 +221,9 @@ public final class FieldFacet implements XMLWritable, Facet {
   /**
    * Creates a new facet for the specified field.
    *
+   * <p>The terms of the field are cached for each segment of the reader, so that creating a facet
+   * for the same field is cheap, even after the reader has been reopened.
+   *
    * @param field  the field for this facet.
    * @param reader the reader to use.
    *
@@ -188,12 +232,45 @@ public final class FieldFacet implements XMLWritable, Facet {
    * @throws IOException if thrown by the reader.
    */
   public static FieldFacet newFacet(String field, IndexReader reader) throws IOException {
-    List<Term> terms = Terms.terms(reader, field);
-    List<TermQuery> subs = new ArrayList<TermQuery>(terms.size());
-    for (Term t : terms) {
-      subs.add(new TermQuery(t));
+    return new FieldFacet(field, FieldOrdinals.get(reader, field).terms());
+  }
+
+  // Private classes ------------------------------------------------------------------------------
+
+  /**
+   * Accumulates the values of this facet using the term ordinals.
+   */
+  private final class Accumulator implements FacetAccumulator {
+
+    /** Counts the values. */
+    private final OrdinalCounter _counter;
+
+    /** The maximum number of field values to compute. */
+    private final int _size;
+
+    /**
+     * @param counter Counts the values.
+     * @param size    The maximum number of field values to compute.
+     */
+    public Accumulator(OrdinalCounter counter, int size) {
+      this._counter = counter;
+      this._size = size;
+    }
+
+    @Override
+    public void setNextReader(IndexReader reader, int docBase) throws IOException {
+      this._counter.setNextReader(reader, docBase);
+    }
+
+    @Override
+    public void collect(int doc) {
+      this._counter.collect(doc);
+    }
+
+    @Override
+    public void finish() {
+      FieldFacet.this._bucket = this._counter.toBucket(this._size);
     }
-    return new FieldFacet(field, subs);
   }
 
 }
@@ -0,0 +1,388 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.ReaderUtil;
+
+/**
+ * The ordinals of the terms of a field across all the segments of an index reader.
+ *
+ * <p>The terms of all segments are merged into a single sorted list of distinct terms, the global
+ * ordinals, and the ordinals of each segment are mapped to the global ordinals. This allows facet
+ * values to be counted directly into a single array of counts while the documents of each segment
+ * are collected.
+ *
+ * <p>Instances are cached by top-level reader; the ordinals of each segment are cached separately
+ * by {@link SegmentOrdinals}. When a reader is reopened and segments were only added, the global
+ * ordinals of the previous reader are extended with the terms of the new segments instead of
+ * being computed again.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class FieldOrdinals {
+
+  /**
+   * Ordinals cached by top-level reader key and field name.
+   */
+  private static final Map<Object, Map<String, FieldOrdinals>> CACHE = new WeakHashMap<Object, Map<String, FieldOrdinals>>();
+
+  /**
+   * The name of the field.
+   */
+  private final String _field;
+
+  /**
+   * The text of the distinct terms in all segments in index order.
+   */
+  private final String[] _terms;
+
+  /**
+   * The cache keys of the segment readers.
+   */
+  private final Object[] _keys;
+
+  /**
+   * The ordinals of each segment.
+   */
+  private final SegmentOrdinals[] _segments;
+
+  /**
+   * Maps the segment ordinals to the global ordinals for each segment.
+   */
+  private final int[][] _toGlobal;
+
+  /**
+   * Creates new global ordinals.
+   *
+   * @param field    The name of the field.
+   * @param terms    The text of the distinct terms in all segments.
+   * @param keys     The cache keys of the segment readers.
+   * @param segments The ordinals of each segment.
+   * @param toGlobal Maps the segment ordinals to the global ordinals for each segment.
+   */
+  private FieldOrdinals(String field, String[] terms, Object[] keys, SegmentOrdinals[] segments, int[][] toGlobal) {
+    this._field = field;
+    this._terms = terms;
+    this._keys = keys;
+    this._segments = segments;
+    this._toGlobal = toGlobal;
+  }
+
+  /**
+   * @return the name of the field.
+   */
+  String field() {
+    return this._field;
+  }
+
+  /**
+   * @return the text of the distinct terms in all segments (do not modify).
+   */
+  String[] terms() {
+    return this._terms;
+  }
+
+  /**
+   * @return the number of distinct terms in all segments.
+   */
+  int size() {
+    return this._terms.length;
+  }
+
+  /**
+   * Returns the text of the term for the specified global ordinal.
+   *
+   * @param ord the global ordinal of the term.
+   * @return the corresponding text.
+   */
+  String term(int ord) {
+    return this._terms[ord];
+  }
+
+  /**
+   * Returns the ordinals for the specified segment reader.
+   *
+   * @param reader the segment reader.
+   * @return the ordinals for that segment.
+   *
+   * @throws IOException If thrown while loading the ordinals of an unknown segment.
+   */
+  SegmentOrdinals segment(IndexReader reader) throws IOException {
+    int i = indexOf(reader);
+    return i >= 0? this._segments[i] : SegmentOrdinals.get(reader, this._field);
+  }
+
+  /**
+   * Returns the mapping from segment ordinals to global ordinals for the specified segment.
+   *
+   * <p>If the segment is not part of the reader these ordinals were computed for, the mapping is
+   * computed on the fly and segment terms which are not known globally are mapped to <code>-1</code>.
+   *
+   * @param reader the segment reader.
+   * @return the mapping from segment ordinals to global ordinals.
+   *
+   * @throws IOException If thrown while loading the ordinals of an unknown segment.
+   */
+  int[] toGlobal(IndexReader reader) throws IOException {
+    int i = indexOf(reader);
+    if (i >= 0) return this._toGlobal[i];
+    SegmentOrdinals segment = SegmentOrdinals.get(reader, this._field);
+    int[] mapping = new int[segment.size()];
+    for (int ord = 0; ord < mapping.length; ord++) {
+      int global = Arrays.binarySearch(this._terms, segment.term(ord));
+      mapping[ord] = global >= 0? global : -1;
+    }
+    return mapping;
+  }
+
+  /**
+   * Returns the global ordinals for the specified reader and field, computing them if necessary.
+   *
+   * @param reader The top-level reader.
+   * @param field  The name of the field.
+   *
+   * @return the corresponding ordinals.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  static FieldOrdinals get(IndexReader reader, String field) throws IOException {
+    Object key = reader.getFieldCacheKey();
+    synchronized (CACHE) {
+      Map<String, FieldOrdinals> fields = CACHE.get(key);
+      FieldOrdinals ordinals = fields != null? fields.get(field) : null;
+      if (ordinals != null) return ordinals;
+    }
+    FieldOrdinals loaded = load(reader, field);
+    synchronized (CACHE) {
+      Map<String, FieldOrdinals> fields = CACHE.get(key);
+      if (fields == null) {
+        fields = new HashMap<String, FieldOrdinals>();
+        CACHE.put(key, fields);
+      }
+      fields.put(field, loaded);
+      return loaded;
+    }
+  }
+
+  // private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the index of the segment for the specified reader.
+   *
+   * @param reader the segment reader.
+   * @return the index of the segment or <code>-1</code>.
+   */
+  private int indexOf(IndexReader reader) {
+    return indexOf(reader.getFieldCacheKey());
+  }
+
+  /**
+   * Computes the global ordinals for the specified reader and field.
+   *
+   * @param reader The top-level reader.
+   * @param field  The name of the field.
+   *
+   * @return the corresponding ordinals.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  private static FieldOrdinals load(IndexReader reader, String field) throws IOException {
+    List<IndexReader> readers = new ArrayList<IndexReader>();
+    ReaderUtil.gatherSubReaders(readers, reader);
+    final int count = readers.size();
+    Object[] keys = new Object[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = readers.get(i).getFieldCacheKey();
+    }
+    FieldOrdinals previous = findPrevious(keys, field);
+    SegmentOrdinals[] segments = new SegmentOrdinals[count];
+    int[][] toGlobal = new int[count][];
+    // Only the segments which were added since the previous reader need to be merged
+    List<String[]> lists = new ArrayList<String[]>();
+    List<Integer> added = new ArrayList<Integer>();
+    if (previous != null) lists.add(previous._terms);
+    for (int i = 0; i < count; i++) {
+      int j = previous != null? previous.indexOf(keys[i]) : -1;
+      if (j >= 0) {
+        segments[i] = previous._segments[j];
+        toGlobal[i] = previous._toGlobal[j];
+      } else {
+        segments[i] = SegmentOrdinals.get(readers.get(i), field);
+        lists.add(segments[i].terms());
+        added.add(Integer.valueOf(i));
+      }
+    }
+    // Nothing was added
+    if (previous != null && added.isEmpty()) return new FieldOrdinals(field, previous._terms, keys, segments, toGlobal);
+    int[][] mappings = new int[lists.size()][];
+    String[] terms = merge(lists, mappings);
+    int offset = previous != null? 1 : 0;
+    for (int k = 0; k < added.size(); k++) {
+      toGlobal[added.get(k).intValue()] = mappings[k + offset];
+    }
+    // Remap the segments of the previous reader only if new terms were inserted
+    if (previous != null && terms.length != previous._terms.length) {
+      int[] remap = mappings[0];
+      for (int i = 0; i < count; i++) {
+        if (!added.contains(Integer.valueOf(i))) {
+          int[] old = toGlobal[i];
+          int[] mapping = new int[old.length];
+          for (int ord = 0; ord < old.length; ord++) {
+            mapping[ord] = remap[old[ord]];
+          }
+          toGlobal[i] = mapping;
+        }
+      }
+    }
+    return new FieldOrdinals(field, terms, keys, segments, toGlobal);
+  }
+
+  /**
+   * Finds the most complete cached ordinals for the field whose segments are all in the specified
+   * list of segments.
+   *
+   * @param keys  The cache keys of the segment readers.
+   * @param field The name of the field.
+   *
+   * @return the ordinals which can be extended or <code>null</code>.
+   */
+  private static FieldOrdinals findPrevious(Object[] keys, String field) {
+    FieldOrdinals previous = null;
+    synchronized (CACHE) {
+      for (Map<String, FieldOrdinals> fields : CACHE.values()) {
+        FieldOrdinals candidate = fields.get(field);
+        if (candidate != null && candidate.isIncludedIn(keys)
+            && (previous == null || candidate._keys.length > previous._keys.length)) {
+          previous = candidate;
+        }
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Indicates whether all the segments of these ordinals are included in the specified segments.
+   *
+   * @param keys The cache keys of the segment readers.
+   * @return <code>true</code> if these ordinals can be extended to the specified segments.
+   */
+  private boolean isIncludedIn(Object[] keys) {
+    if (this._keys.length == 0) return false;
+    for (Object key : this._keys) {
+      boolean found = false;
+      for (Object k : keys) {
+        if (k == key) found = true;
+      }
+      if (!found) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the segment for the specified segment key.
+   *
+   * @param key the cache key of the segment reader.
+   * @return the index of the segment or <code>-1</code>.
+   */
+  private int indexOf(Object key) {
+    for (int i = 0; i < this._keys.length; i++) {
+      if (this._keys[i] == key) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Merges sorted lists of terms into a single sorted list of distinct terms.
+   *
+   * @param lists    The sorted lists of terms to merge.
+   * @param mappings Receives the position of each term in the merged list for each list.
+   *
+   * @return the merged list of terms.
+   */
+  private static String[] merge(List<String[]> lists, int[][] mappings) {
+    PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(Math.max(1, lists.size()));
+    int total = 0;
+    for (int i = 0; i < lists.size(); i++) {
+      String[] list = lists.get(i);
+      mappings[i] = new int[list.length];
+      total = Math.max(total, list.length);
+      if (list.length > 0) queue.add(new Cursor(i, list));
+    }
+    List<String> terms = new ArrayList<String>(total);
+    String last = null;
+    while (!queue.isEmpty()) {
+      Cursor c = queue.poll();
+      String t = c.term();
+      if (last == null || !t.equals(last)) {
+        terms.add(t);
+        last = t;
+      }
+      mappings[c._list][c.position] = terms.size() - 1;
+      if (c.next()) queue.add(c);
+    }
+    return terms.toArray(new String[terms.size()]);
+  }
+
+  /**
+   * A cursor over a sorted list of terms used for merging.
+   */
+  private static final class Cursor implements Comparable<Cursor> {
+
+    /** The index of the list. */
+    private final int _list;
+
+    /** The terms. */
+    private final String[] _terms;
+
+    /** The current position. */
+    private int position = 0;
+
+    /**
+     * @param list  The index of the list.
+     * @param terms The terms.
+     */
+    public Cursor(int list, String[] terms) {
+      this._list = list;
+      this._terms = terms;
+    }
+
+    /**
+     * @return the current term.
+     */
+    public String term() {
+      return this._terms[this.position];
+    }
+
+    /**
+     * Moves to the next term.
+     *
+     * @return <code>true</code> if there is a next term; <code>false</code> otherwise.
+     */
+    public boolean next() {
+      return ++this.position < this._terms.length;
+    }
+
+    @Override
+    public int compareTo(Cursor o) {
+      return term().compareTo(o.term());
+    }
+  }
+
+}
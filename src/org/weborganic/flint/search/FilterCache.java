@@ -0,0 +1,120 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * A cache of filters shared by all the search parameters which restrict results without scoring.
+ *
+ * <p>Each query is mapped to a single {@link CachingWrapperFilter} instance, so the same restriction
+ * used in different searches always reuses the same filter. Since searches are performed segment by
+ * segment, the filter caches a <code>DocIdSet</code> for each segment reader; segments which are
+ * unchanged after the index is reopened share the same reader and their cached bits are reused.
+ *
+ * <p>The number of filters is bounded, the least recently used filters are discarded first.
+ *
+ * <p>Usage:
+ * <pre>
+ *   Filter filter = FilterCache.getFilter(new TermQuery(new Term("type", "book")));
+ * </pre>
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class FilterCache {
+
+  /**
+   * The default maximum number of filters kept in the cache.
+   */
+  public static final int DEFAULT_MAX_FILTERS = 512;
+
+  /**
+   * The maximum number of filters to keep in the cache.
+   */
+  private static volatile int maxFilters = DEFAULT_MAX_FILTERS;
+
+  /**
+   * Maps queries to their filter, in access order.
+   */
+  private static final LinkedHashMap<Query, Filter> FILTERS = new LinkedHashMap<Query, Filter>(64, 0.75f, true) {
+    /** As required by the Serializable interface */
+    private static final long serialVersionUID = 1L;
+    @Override
+    protected boolean removeEldestEntry(Entry<Query, Filter> eldest) {
+      return size() > maxFilters;
+    }
+  };
+
+  /**
+   * Utility class.
+   */
+  private FilterCache() {
+  }
+
+  /**
+   * Returns the cached filter for the specified query.
+   *
+   * <p>The query should not be modified after it has been passed to this method.
+   *
+   * @param query The query to use as a filter.
+   * @return the corresponding filter or <code>null</code> if the query is <code>null</code>.
+   */
+  public static Filter getFilter(Query query) {
+    if (query == null) return null;
+    synchronized (FILTERS) {
+      Filter filter = FILTERS.get(query);
+      if (filter == null) {
+        filter = new CachingWrapperFilter(new QueryWrapperFilter(query));
+        FILTERS.put((Query)query.clone(), filter);
+      }
+      return filter;
+    }
+  }
+
+  /**
+   * Sets the maximum number of filters to keep in the cache.
+   *
+   * @param max the maximum number of filters.
+   *
+   * @throws IllegalArgumentException if the maximum is less than one.
+   */
+  public static void setMaxFilters(int max) {
+    if (max < 1) throw new IllegalArgumentException("The maximum number of filters must be at least 1");
+    maxFilters = max;
+  }
+
+  /**
+   * Returns the number of filters currently in the cache.
+   *
+   * @return the number of filters currently in the cache.
+   */
+  public static int size() {
+    synchronized (FILTERS) {
+      return FILTERS.size();
+    }
+  }
+
+  /**
+   * Removes all the filters from the cache.
+   */
+  public static void clear() {
+    synchronized (FILTERS) {
+      FILTERS.clear();
+    }
+  }
+
+}
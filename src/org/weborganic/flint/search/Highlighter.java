@@ -0,0 +1,475 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.index.TermPositionVector;
+import org.apache.lucene.index.TermVectorOffsetInfo;
+import org.weborganic.flint.util.Beta;
+
+import com.topologi.diffx.xml.esc.XMLEscapeUTF8;
+
+/**
+ * Computes the extracts of the fields of a document for the terms of a query.
+ *
+ * <p>A highlighter is created once per query: the terms of each field are compiled into a single
+ * case-insensitive pattern which is reused for every document. When the term vector of a field was
+ * stored with offsets, the positions of the terms are read from the term vector instead so that
+ * the text does not need to be scanned.
+ *
+ * <p>Each extract is the fragment of text of the maximum length which contains the most distinct
+ * terms, with every occurrence of a term wrapped in a <code>term</code> element. The text is no
+ * longer scanned once a fragment contains all the terms of the field.
+ *
+ * <p>Alternatively, {@link #extracts(String, String, TermFreqVector)} returns one extract for each
+ * term found in the text, all computed from a single pass over the text.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class Highlighter {
+
+  /**
+   * The default maximum length of an extract.
+   */
+  public static final int DEFAULT_EXTRACT_LENGTH = 200;
+
+  /**
+   * Sorts offsets by start offset.
+   */
+  private static final Comparator<int[]> OFFSET_ORDER = new Comparator<int[]>() {
+    @Override
+    public int compare(int[] a, int[] b) {
+      return a[0] < b[0]? -1 : a[0] == b[0]? 0 : 1;
+    }
+  };
+
+  /**
+   * The terms to highlight for each field.
+   */
+  private final Map<String, FieldTerms> _fields;
+
+  /**
+   * The maximum length of an extract.
+   */
+  private final int _length;
+
+  /**
+   * Creates a new highlighter for the specified terms using the default extract length.
+   *
+   * @param terms The terms to highlight.
+   */
+  public Highlighter(Collection<Term> terms) {
+    this(terms, DEFAULT_EXTRACT_LENGTH);
+  }
+
+  /**
+   * Creates a new highlighter for the specified terms.
+   *
+   * @param terms  The terms to highlight.
+   * @param length The maximum length of an extract.
+   *
+   * @throws IllegalArgumentException If the length is not positive.
+   */
+  public Highlighter(Collection<Term> terms, int length) {
+    if (length <= 0) throw new IllegalArgumentException("length <= 0");
+    Map<String, Set<String>> texts = new LinkedHashMap<String, Set<String>>();
+    for (Term t : terms) {
+      if (t.text().length() == 0) continue;
+      Set<String> s = texts.get(t.field());
+      if (s == null) {
+        s = new LinkedHashSet<String>();
+        texts.put(t.field(), s);
+      }
+      s.add(t.text());
+    }
+    Map<String, FieldTerms> fields = new LinkedHashMap<String, FieldTerms>();
+    for (Map.Entry<String, Set<String>> e : texts.entrySet()) {
+      fields.put(e.getKey(), new FieldTerms(e.getValue()));
+    }
+    this._fields = Collections.unmodifiableMap(fields);
+    this._length = length;
+  }
+
+  /**
+   * Returns the names of the fields with terms to highlight.
+   *
+   * @return the names of the fields with terms to highlight.
+   */
+  public Set<String> fields() {
+    return this._fields.keySet();
+  }
+
+  /**
+   * Returns the extract of the specified text for the terms of the field.
+   *
+   * @param field The name of the field.
+   * @param text  The text of the field.
+   *
+   * @return the extract as XML or <code>null</code> if no term could be found.
+   */
+  public String extract(String field, String text) {
+    return extract(field, text, null);
+  }
+
+  /**
+   * Returns the extract of the specified text for the terms of the field using the offsets of
+   * its term vector if available.
+   *
+   * <p>The term vector must correspond to the specified text, that is the field must have a
+   * single value.
+   *
+   * @param field  The name of the field.
+   * @param text   The text of the field.
+   * @param vector The term vector of the field (may be <code>null</code>).
+   *
+   * @return the extract as XML or <code>null</code> if no term could be found.
+   */
+  public String extract(String field, String text, TermFreqVector vector) {
+    FieldTerms terms = this._fields.get(field);
+    if (terms == null || text == null) return null;
+    Fragmenter fragmenter = new Fragmenter(this._length, terms.texts.length);
+    List<int[]> offsets = findOffsets(terms, text, vector);
+    if (offsets != null) {
+      for (int[] o : offsets) {
+        fragmenter.add(o[0], o[1], o[2]);
+      }
+    } else {
+      Matcher m = terms.pattern.matcher(text);
+      boolean complete = false;
+      while (!complete && m.find()) {
+        complete = fragmenter.add(m.start(), m.end(), toId(terms, m.group()));
+      }
+      // Only scan the rest of the fragment to highlight the remaining occurrences
+      if (complete) {
+        int end = fragmenter.end(text.length());
+        while (m.find() && m.end() <= end) {
+          fragmenter.append(m.start(), m.end(), toId(terms, m.group()));
+        }
+      }
+    }
+    return fragmenter.toExtract(text);
+  }
+
+  /**
+   * Returns one extract of the specified text for each term of the field found in the text,
+   * using the offsets of its term vector if available.
+   *
+   * <p>Each extract is centred on the first occurrence of its term and highlights all the terms
+   * it contains. The extracts are in the order of the terms and are all computed from a single
+   * pass over the text or term vector.
+   *
+   * <p>The term vector must correspond to the specified text, that is the field must have a
+   * single value.
+   *
+   * @param field  The name of the field.
+   * @param text   The text of the field.
+   * @param vector The term vector of the field (may be <code>null</code>).
+   *
+   * @return the extracts as XML, empty if no term could be found.
+   */
+  public List<String> extracts(String field, String text, TermFreqVector vector) {
+    FieldTerms terms = this._fields.get(field);
+    if (terms == null || text == null) return Collections.emptyList();
+    Fragmenter fragmenter = new Fragmenter(this._length, terms.texts.length);
+    List<int[]> offsets = findOffsets(terms, text, vector);
+    if (offsets != null) {
+      for (int[] o : offsets) {
+        fragmenter.append(o[0], o[1], o[2]);
+      }
+    } else {
+      Matcher m = terms.pattern.matcher(text);
+      while (m.find()) {
+        fragmenter.append(m.start(), m.end(), toId(terms, m.group()));
+      }
+    }
+    return fragmenter.toExtracts(text);
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Returns the offsets of the terms in the term vector sorted by start offset.
+   *
+   * @param terms  The terms to find.
+   * @param text   The text of the field.
+   * @param vector The term vector of the field (may be <code>null</code>).
+   *
+   * @return the start offset, end offset and term of each match if the term vector includes valid
+   *         offsets for the text; <code>null</code> if the text must be scanned.
+   */
+  private static List<int[]> findOffsets(FieldTerms terms, String text, TermFreqVector vector) {
+    if (!(vector instanceof TermPositionVector)) return null;
+    TermPositionVector positions = (TermPositionVector)vector;
+    List<int[]> offsets = new ArrayList<int[]>();
+    for (int id = 0; id < terms.texts.length; id++) {
+      int index = positions.indexOf(terms.texts[id]);
+      if (index < 0) continue;
+      TermVectorOffsetInfo[] infos = positions.getOffsets(index);
+      if (infos == null) return null;
+      for (TermVectorOffsetInfo info : infos) {
+        if (info.getEndOffset() > text.length() || info.getStartOffset() > info.getEndOffset()) return null;
+        offsets.add(new int[]{info.getStartOffset(), info.getEndOffset(), id});
+      }
+    }
+    Collections.sort(offsets, OFFSET_ORDER);
+    return offsets;
+  }
+
+  /**
+   * @param terms The terms of the field.
+   * @param match The text matched by the pattern.
+   * @return the ID of the term matched.
+   */
+  private static int toId(FieldTerms terms, String match) {
+    Integer id = terms.ids.get(match.toLowerCase());
+    return id != null? id.intValue() : 0;
+  }
+
+  // Private classes ------------------------------------------------------------------------------
+
+  /**
+   * The terms to highlight in a field.
+   */
+  private static final class FieldTerms {
+
+    /** The text of each term. */
+    final String[] texts;
+
+    /** The index of each term in lower case. */
+    final Map<String, Integer> ids;
+
+    /** A pattern matching any of the terms as a word. */
+    final Pattern pattern;
+
+    /**
+     * @param texts The text of each term.
+     */
+    FieldTerms(Collection<String> texts) {
+      this.texts = texts.toArray(new String[texts.size()]);
+      this.ids = new HashMap<String, Integer>();
+      for (int i = 0; i < this.texts.length; i++) {
+        this.ids.put(this.texts[i].toLowerCase(), Integer.valueOf(i));
+      }
+      // Longest terms first so that they take precedence over their prefixes
+      String[] sorted = this.texts.clone();
+      Arrays.sort(sorted, new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+          return b.length() - a.length();
+        }
+      });
+      StringBuilder regex = new StringBuilder("(?<!\\w)(?:");
+      for (int i = 0; i < sorted.length; i++) {
+        if (i > 0) regex.append('|');
+        regex.append(Pattern.quote(sorted[i]));
+      }
+      regex.append(")(?!\\w)");
+      this.pattern = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+  }
+
+  /**
+   * Selects the fragment of text with the most distinct terms from the sorted matches.
+   */
+  private static final class Fragmenter {
+
+    /** The maximum length of the fragment. */
+    private final int _length;
+
+    /** The number of matches of each term in the current window. */
+    private final int[] _counts;
+
+    /** The start offsets of the matches. */
+    private int[] starts = new int[16];
+
+    /** The end offsets of the matches. */
+    private int[] ends = new int[16];
+
+    /** The term of each match. */
+    private int[] ids = new int[16];
+
+    /** The number of matches. */
+    private int size = 0;
+
+    /** The first match of the current window. */
+    private int first = 0;
+
+    /** The number of distinct terms in the current window. */
+    private int distinct = 0;
+
+    /** The first match of the best window. */
+    private int bestFirst = 0;
+
+    /** The last match of the best window. */
+    private int bestLast = -1;
+
+    /** The number of distinct terms in the best window. */
+    private int bestDistinct = 0;
+
+    /**
+     * @param length The maximum length of the fragment.
+     * @param terms  The number of terms.
+     */
+    Fragmenter(int length, int terms) {
+      this._length = length;
+      this._counts = new int[terms];
+    }
+
+    /**
+     * Adds a match, matches must be added in order of start offset.
+     *
+     * @param start The start offset of the match.
+     * @param end   The end offset of the match.
+     * @param id    The term matched.
+     *
+     * @return <code>true</code> if the best fragment contains all the terms.
+     */
+    boolean add(int start, int end, int id) {
+      append(start, end, id);
+      if (this._counts[id]++ == 0) this.distinct++;
+      // Slide the window so that it fits in the fragment
+      while (this.first < this.size - 1 && end - this.starts[this.first] > this._length) {
+        if (--this._counts[this.ids[this.first]] == 0) this.distinct--;
+        this.first++;
+      }
+      int count = this.size - this.first;
+      if (this.distinct > this.bestDistinct
+       || (this.distinct == this.bestDistinct && count > this.bestLast - this.bestFirst + 1)) {
+        this.bestFirst = this.first;
+        this.bestLast = this.size - 1;
+        this.bestDistinct = this.distinct;
+      }
+      return this.bestDistinct == this._counts.length;
+    }
+
+    /**
+     * Adds a match without changing the best fragment.
+     *
+     * @param start The start offset of the match.
+     * @param end   The end offset of the match.
+     * @param id    The term matched.
+     */
+    void append(int start, int end, int id) {
+      if (this.size == this.starts.length) {
+        this.starts = Arrays.copyOf(this.starts, this.size * 2);
+        this.ends = Arrays.copyOf(this.ends, this.size * 2);
+        this.ids = Arrays.copyOf(this.ids, this.size * 2);
+      }
+      this.starts[this.size] = start;
+      this.ends[this.size] = end;
+      this.ids[this.size] = id;
+      this.size++;
+    }
+
+    /**
+     * Returns the start offset of the best fragment.
+     *
+     * @param length The length of the text.
+     * @return the start offset of the best fragment.
+     */
+    int start(int length) {
+      int from = this.starts[this.bestFirst];
+      int to = this.ends[this.bestLast];
+      if (to - from >= this._length) return from;
+      int start = Math.max(0, from - (this._length - (to - from)) / 2);
+      int end = Math.min(length, start + this._length);
+      return Math.max(0, Math.min(from, end - this._length));
+    }
+
+    /**
+     * Returns the end offset of the best fragment.
+     *
+     * @param length The length of the text.
+     * @return the end offset of the best fragment.
+     */
+    int end(int length) {
+      int to = this.ends[this.bestLast];
+      return Math.max(to, Math.min(length, start(length) + this._length));
+    }
+
+    /**
+     * Returns the best fragment as XML.
+     *
+     * <p>All the matches within the fragment are highlighted.
+     *
+     * @param text The text of the field.
+     * @return the best fragment as XML or <code>null</code> if there was no match.
+     */
+    String toExtract(String text) {
+      if (this.bestLast < 0) return null;
+      int start = start(text.length());
+      int end = end(text.length());
+      StringBuilder extract = new StringBuilder();
+      if (start > 0) extract.append("...");
+      int pos = start;
+      for (int k = 0; k < this.size; k++) {
+        if (this.starts[k] < pos || this.ends[k] > end) continue;
+        extract.append(asXML(text.substring(pos, this.starts[k])));
+        extract.append("<term>").append(asXML(text.substring(this.starts[k], this.ends[k]))).append("</term>");
+        pos = this.ends[k];
+      }
+      if (pos < end) extract.append(asXML(text.substring(pos, end)));
+      if (end < text.length()) extract.append("...");
+      return extract.toString();
+    }
+
+    /**
+     * Returns one fragment as XML for each term, centred on its first match.
+     *
+     * <p>All the matches within each fragment are highlighted.
+     *
+     * @param text The text of the field.
+     * @return the fragments as XML in the order of the terms.
+     */
+    List<String> toExtracts(String text) {
+      int[] firsts = new int[this._counts.length];
+      Arrays.fill(firsts, -1);
+      for (int k = this.size - 1; k >= 0; k--) {
+        firsts[this.ids[k]] = k;
+      }
+      List<String> extracts = new ArrayList<String>();
+      for (int first : firsts) {
+        if (first < 0) continue;
+        this.bestFirst = first;
+        this.bestLast = first;
+        extracts.add(toExtract(text));
+      }
+      return extracts;
+    }
+
+    /**
+     * Returns the text as a safe XML text.
+     *
+     * @param text The to escape for XML.
+     * @return the text as a safe XML text.
+     */
+    private static String asXML(String text) {
+      return XMLEscapeUTF8.UTF8_ESCAPE.toElementText(text);
+    }
+  }
+
+}
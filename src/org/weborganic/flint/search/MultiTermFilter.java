@@ -0,0 +1,215 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+import org.weborganic.flint.util.Beta;
+import org.weborganic.flint.util.Bucket;
+
+/**
+ * A filter matching the documents containing any of a set of terms or any term starting with one
+ * of a set of prefixes.
+ *
+ * <p>The postings of all the terms are unioned into a single bit set for each segment, so that
+ * expanding a short prefix to thousands of terms neither exceeds the maximum number of clauses
+ * of a <code>BooleanQuery</code> nor requires scoring each term. Wrap this filter in a
+ * <code>ConstantScoreQuery</code> to use it as a query.
+ *
+ * <p>Prefixes included in a shorter prefix for the same field are ignored, so that each term of
+ * the index is visited at most once.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class MultiTermFilter extends Filter {
+
+  /**
+   * As per requirement for the Serializable interface.
+   */
+  private static final long serialVersionUID = 20261019L;
+
+  /**
+   * Size of the buffers used to read the term documents.
+   */
+  private static final int BUFFER_SIZE = 64;
+
+  /**
+   * The sorted terms to match exactly.
+   */
+  private final Term[] _terms;
+
+  /**
+   * The sorted prefixes to match.
+   */
+  private final Term[] _prefixes;
+
+  /**
+   * Creates a new filter.
+   *
+   * @param terms    The sorted terms to match exactly.
+   * @param prefixes The sorted prefixes to match.
+   */
+  private MultiTermFilter(Term[] terms, Term[] prefixes) {
+    this._terms = terms;
+    this._prefixes = prefixes;
+  }
+
+  /**
+   * Returns a filter matching any of the specified terms.
+   *
+   * @param terms The terms to match.
+   * @return the corresponding filter.
+   */
+  public static MultiTermFilter newTermsFilter(Collection<Term> terms) {
+    Term[] sorted = terms.toArray(new Term[terms.size()]);
+    Arrays.sort(sorted);
+    return new MultiTermFilter(sorted, new Term[0]);
+  }
+
+  /**
+   * Returns a filter matching any term starting with one of the specified prefixes.
+   *
+   * @param prefixes The prefixes to match (the field must be the same as the terms to match).
+   * @return the corresponding filter.
+   */
+  public static MultiTermFilter newPrefixFilter(Collection<Term> prefixes) {
+    Term[] sorted = prefixes.toArray(new Term[prefixes.size()]);
+    Arrays.sort(sorted);
+    // Remove the prefixes included in a previous prefix
+    List<Term> distinct = new ArrayList<Term>(sorted.length);
+    Term last = null;
+    for (Term p : sorted) {
+      if (last != null && last.field().equals(p.field()) && p.text().startsWith(last.text())) continue;
+      distinct.add(p);
+      last = p;
+    }
+    return new MultiTermFilter(new Term[0], distinct.toArray(new Term[distinct.size()]));
+  }
+
+  /**
+   * Returns a filter matching only the terms with the highest document frequency starting with
+   * one of the specified prefixes.
+   *
+   * <p>The terms are selected across all the segments of the specified reader, so the filter
+   * should only be used with that reader.
+   *
+   * @param reader   The top-level reader used to select the terms.
+   * @param prefixes The prefixes to match.
+   * @param maxTerms The maximum number of terms to match.
+   *
+   * @return the corresponding filter.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  public static MultiTermFilter newPrefixFilter(IndexReader reader, Collection<Term> prefixes, int maxTerms)
+      throws IOException {
+    Bucket<Term> bucket = new Bucket<Term>(maxTerms);
+    for (Term prefix : newPrefixFilter(prefixes)._prefixes) {
+      Autocomplete.suggest(reader, prefix, bucket);
+    }
+    return newTermsFilter(bucket.items());
+  }
+
+  /**
+   * Returns the set of documents in the specified segment matching any term or prefix.
+   *
+   * @param reader The segment reader.
+   * @return the corresponding bit set.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  @Override
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+    OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+    int[] docs = new int[BUFFER_SIZE];
+    int[] freqs = new int[BUFFER_SIZE];
+    TermDocs td = reader.termDocs();
+    try {
+      for (Term t : this._terms) {
+        td.seek(t);
+        collect(td, bits, docs, freqs);
+      }
+      for (Term prefix : this._prefixes) {
+        TermEnum e = reader.terms(prefix);
+        try {
+          do {
+            Term t = e.term();
+            if (t == null || !t.field().equals(prefix.field()) || !t.text().startsWith(prefix.text())) break;
+            td.seek(e);
+            collect(td, bits, docs, freqs);
+          } while (e.next());
+        } finally {
+          e.close();
+        }
+      }
+    } finally {
+      td.close();
+    }
+    return bits;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof MultiTermFilter)) return false;
+    MultiTermFilter f = (MultiTermFilter)o;
+    return Arrays.equals(this._terms, f._terms) && Arrays.equals(this._prefixes, f._prefixes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(this._terms) * 31 + Arrays.hashCode(this._prefixes);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder("MultiTermFilter(");
+    for (Term t : this._terms) {
+      if (s.length() > 16) s.append(' ');
+      s.append(t);
+    }
+    for (Term p : this._prefixes) {
+      if (s.length() > 16) s.append(' ');
+      s.append(p).append('*');
+    }
+    return s.append(')').toString();
+  }
+
+  /**
+   * Sets the bits of all the documents of the current term.
+   *
+   * @param td    The term documents positioned on a term.
+   * @param bits  The bit set to update.
+   * @param docs  The buffer for document IDs.
+   * @param freqs The buffer for frequencies.
+   *
+   * @throws IOException If thrown by the reader.
+   */
+  private static void collect(TermDocs td, OpenBitSet bits, int[] docs, int[] freqs) throws IOException {
+    int n;
+    while ((n = td.read(docs, freqs)) > 0) {
+      for (int i = 0; i < n; i++) {
+        bits.fastSet(docs[i]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.weborganic.flint.util.Bucket;
+
+/**
+ * Counts the number of documents for each term of a field using the term ordinals.
+ *
+ * <p>The counts are accumulated in a primitive array indexed by global ordinal, so that the cost
+ * of counting is proportional to the number of values in the collected documents.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class OrdinalCounter extends Collector {
+
+  /**
+   * The global ordinals of the field.
+   */
+  private final FieldOrdinals _ordinals;
+
+  /**
+   * The number of documents for each global ordinal.
+   */
+  private final int[] _counts;
+
+  /**
+   * The ordinals of the current segment.
+   */
+  private SegmentOrdinals segment;
+
+  /**
+   * Maps the ordinals of the current segment to global ordinals.
+   */
+  private int[] toGlobal;
+
+  /**
+   * Creates a new counter.
+   *
+   * @param ordinals The global ordinals of the field.
+   */
+  public OrdinalCounter(FieldOrdinals ordinals) {
+    this._ordinals = ordinals;
+    this._counts = new int[ordinals.size()];
+  }
+
+  /**
+   * Does nothing - the scorer is irrelevant when counting documents.
+   * @param scorer the scorer.
+   */
+  @Override
+  public void setScorer(Scorer scorer) {
+    // ignore scorer
+  }
+
+  /**
+   * Accept documents out of order - the order is irrelevant when counting.
+   * @return always <code>true</code>.
+   */
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return true;
+  }
+
+  @Override
+  public void setNextReader(IndexReader reader, int docBase) throws IOException {
+    this.segment = this._ordinals.segment(reader);
+    this.toGlobal = this._ordinals.toGlobal(reader);
+  }
+
+  /**
+   * Increments the count of each term of the document.
+   *
+   * @param doc The segment document ID.
+   */
+  @Override
+  public void collect(int doc) {
+    final int end = this.segment.end(doc);
+    for (int i = this.segment.start(doc); i < end; i++) {
+      int ord = this.toGlobal[this.segment.ord(i)];
+      if (ord >= 0) this._counts[ord]++;
+    }
+  }
+
+  /**
+   * Returns the number of documents collected for the specified global ordinal.
+   *
+   * @param ord The global ordinal.
+   * @return the number of documents collected.
+   */
+  public int count(int ord) {
+    return this._counts[ord];
+  }
+
+  /**
+   * Returns a bucket with the terms with the highest counts.
+   *
+   * <p>Only terms with a count greater than zero are considered. The bucket is filled using the
+   * global ordinals, so that terms are only created for the values which remain in the bucket.
+   *
+   * @param size The capacity of the bucket.
+   * @return the bucket with the terms and their counts.
+   */
+  public Bucket<Term> toBucket(int size) {
+    final FieldOrdinals ordinals = this._ordinals;
+    Bucket<Term> bucket = new Bucket<Term>(size, new Bucket.Resolver<Term>() {
+      @Override
+      public Term resolve(int ord) {
+        return new Term(ordinals.field(), ordinals.term(ord));
+      }
+    });
+    for (int ord = 0; ord < this._counts.length; ord++) {
+      if (this._counts[ord] > 0) {
+        bucket.add(ord, this._counts[ord]);
+      }
+    }
+    return bucket;
+  }
+
+}
@@ -0,0 +1,502 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+import org.apache.lucene.document.DateTools.Resolution;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.NumericUtils;
+import org.weborganic.flint.util.Beta;
+import org.weborganic.flint.util.Dates;
+
+import com.topologi.diffx.xml.XMLWritable;
+import com.topologi.diffx.xml.XMLWriter;
+
+/**
+ * A facet counting the documents in ranges of values of a numeric field.
+ *
+ * <p>This facet applies to the numeric fields built by the <code>FieldBuilder</code>, including
+ * dates indexed as numbers. The ranges are defined by a list of ascending bounds so that range
+ * <i>i</i> includes all values <i>v</i> such that <code>bounds[i] &lt;= v &lt; bounds[i+1]</code>;
+ * the first and last bounds may be infinite to include all lower or higher values.
+ *
+ * <p>When computed using an {@link IndexSearcher} or as an {@link AccumulableFacet}, the values of
+ * the field are read from a per-segment cache and all the ranges are counted in a single pass
+ * over the matching documents.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class RangeFacet implements XMLWritable, AccumulableFacet {
+
+  /**
+   * The maximum number of ranges for a facet.
+   */
+  public static final int MAX_NUMBER_OF_RANGES = 1000;
+
+  /**
+   * The name of the numeric field.
+   */
+  private final String _name;
+
+  /**
+   * The type of numeric field as a sort field type (INT, LONG, FLOAT or DOUBLE).
+   */
+  private final int _type;
+
+  /**
+   * The ascending bounds of the ranges.
+   */
+  private final double[] _bounds;
+
+  /**
+   * The label for each range.
+   */
+  private final String[] _labels;
+
+  /**
+   * The number of documents in each range.
+   */
+  private transient int[] _counts;
+
+  /**
+   * Creates a new range facet.
+   *
+   * @param name   The name of the numeric field.
+   * @param type   The type of numeric field.
+   * @param bounds The ascending bounds of the ranges.
+   * @param labels The label for each range.
+   */
+  private RangeFacet(String name, int type, double[] bounds, String[] labels) {
+    this._name = name;
+    this._type = type;
+    this._bounds = bounds;
+    this._labels = labels;
+  }
+
+  /**
+   * Returns the name of the field.
+   * @return the name of the field.
+   */
+  @Override
+  public String name() {
+    return this._name;
+  }
+
+  /**
+   * Returns the number of ranges in this facet.
+   *
+   * @return the number of ranges in this facet.
+   */
+  public int size() {
+    return this._labels.length;
+  }
+
+  /**
+   * Returns the number of documents in the specified range once this facet has been computed.
+   *
+   * @param i the index of the range.
+   * @return the number of documents in that range or <code>-1</code> if not computed.
+   */
+  public int count(int i) {
+    return this._counts != null? this._counts[i] : -1;
+  }
+
+  /**
+   * Returns the query matching the range with the specified label.
+   *
+   * @param value the label of the range.
+   * @return the corresponding numeric range query or <code>null</code> if no range has that label.
+   */
+  @Override
+  public Query forValue(String value) {
+    if (value == null) return null;
+    for (int i = 0; i < this._labels.length; i++) {
+      if (this._labels[i].equals(value)) return toQuery(i);
+    }
+    return null;
+  }
+
+  /**
+   * Computes the number of documents in each range.
+   *
+   * <p>When the searcher is an {@link IndexSearcher}, the base query is run only once and the
+   * value of each matching document is assigned to its range; otherwise, a search is performed
+   * for each range.
+   *
+   * @param searcher the index search to use.
+   * @param base     the base query (may be <code>null</code>).
+   *
+   * @throws IOException if thrown by the searcher.
+   */
+  @Override
+  public void compute(Searcher searcher, Query base) throws IOException {
+    if (searcher instanceof IndexSearcher) {
+      FacetAccumulator accumulator = newAccumulator(((IndexSearcher)searcher).getIndexReader());
+      FacetCollector collector = new FacetCollector(new DocumentCounter(), Collections.singletonList(accumulator));
+      searcher.search(base != null? base : new MatchAllDocsQuery(), collector);
+      collector.finish();
+      return;
+    }
+    int[] counts = new int[this._labels.length];
+    DocumentCounter counter = new DocumentCounter();
+    for (int i = 0; i < counts.length; i++) {
+      Query query = toQuery(i);
+      if (base != null) {
+        BooleanQuery bq = new BooleanQuery();
+        bq.add(base, Occur.MUST);
+        bq.add(query, Occur.MUST);
+        query = bq;
+      }
+      searcher.search(query, counter);
+      counts[i] = counter.getCount();
+      counter.reset();
+    }
+    this._counts = counts;
+  }
+
+  /**
+   * Returns a new accumulator to compute this facet while collecting the results of a query.
+   *
+   * @param reader The top-level reader the search is performed on.
+   * @return a new accumulator for this facet.
+   */
+  @Override
+  public FacetAccumulator newAccumulator(IndexReader reader) {
+    return new Accumulator();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("facet", true);
+    xml.attribute("name", this._name);
+    xml.attribute("type", "range");
+    xml.attribute("computed", Boolean.toString(this._counts != null));
+    if (this._counts != null) {
+      int total = 0;
+      for (int count : this._counts) {
+        total += count;
+      }
+      xml.attribute("total", total);
+      for (int i = 0; i < this._labels.length; i++) {
+        xml.openElement("range");
+        xml.attribute("label", this._labels[i]);
+        if (!Double.isInfinite(this._bounds[i])) {
+          xml.attribute("lower", toString(this._bounds[i]));
+        }
+        if (!Double.isInfinite(this._bounds[i + 1])) {
+          xml.attribute("upper", toString(this._bounds[i + 1]));
+        }
+        xml.attribute("cardinality", this._counts[i]);
+        xml.closeElement();
+      }
+    }
+    xml.closeElement();
+  }
+
+  // Static helpers -------------------------------------------------------------------------------
+
+  /**
+   * Creates a new facet with ranges of the same width.
+   *
+   * @param field The numeric field for this facet.
+   * @param type  The type of numeric field (<code>SortField.INT</code>, <code>LONG</code>,
+   *              <code>FLOAT</code> or <code>DOUBLE</code>).
+   * @param start The lower bound of the first range.
+   * @param width The width of each range.
+   * @param count The number of ranges.
+   *
+   * @return the corresponding facet.
+   *
+   * @throws IllegalArgumentException If the type is not numeric, the width not positive or the
+   *                                  count is out of bounds.
+   */
+  public static RangeFacet newFacet(String field, int type, double start, double width, int count) {
+    if (width <= 0) throw new IllegalArgumentException("width <= 0");
+    if (count < 1 || count > MAX_NUMBER_OF_RANGES) throw new IllegalArgumentException("Invalid count: "+count);
+    double[] bounds = new double[count + 1];
+    for (int i = 0; i <= count; i++) {
+      bounds[i] = start + i * width;
+    }
+    return newFacet(field, type, bounds);
+  }
+
+  /**
+   * Creates a new facet with the specified bounds.
+   *
+   * <p>The bounds must be in ascending order, the first and last bounds may be infinite.
+   *
+   * @param field  The numeric field for this facet.
+   * @param type   The type of numeric field (<code>SortField.INT</code>, <code>LONG</code>,
+   *               <code>FLOAT</code> or <code>DOUBLE</code>).
+   * @param bounds The ascending bounds of the ranges.
+   *
+   * @return the corresponding facet.
+   *
+   * @throws IllegalArgumentException If the type is not numeric or the bounds are invalid.
+   */
+  public static RangeFacet newFacet(String field, int type, double[] bounds) {
+    checkType(type);
+    checkBounds(bounds);
+    String[] labels = new String[bounds.length - 1];
+    for (int i = 0; i < labels.length; i++) {
+      String lower = Double.isInfinite(bounds[i])? "*" : toString(bounds[i]);
+      String upper = Double.isInfinite(bounds[i + 1])? "*" : toString(bounds[i + 1]);
+      labels[i] = '[' + lower + " TO " + upper + ')';
+    }
+    return new RangeFacet(field, type, bounds.clone(), labels);
+  }
+
+  /**
+   * Creates a new facet for a date field indexed as a number with ranges following the calendar.
+   *
+   * <p>For example, a facet with a <code>MONTH</code> interval will include one range for each
+   * calendar month from the month including the <code>from</code> date to the month including the
+   * <code>to</code> date. The ranges are labelled using the ISO 8601 format for the interval, for
+   * example <code>2012-02</code> for the month of February 2012.
+   *
+   * @param field      The date field for this facet.
+   * @param resolution The resolution the date field was indexed with.
+   * @param from       The first date to include.
+   * @param to         The last date to include.
+   * @param interval   The calendar interval of each range (must not be finer than the resolution).
+   *
+   * @return the corresponding facet.
+   *
+   * @throws IllegalArgumentException If the interval is finer than the resolution, the dates are
+   *                                  not in order or there would be too many ranges.
+   */
+  public static RangeFacet newDateFacet(String field, Resolution resolution, Date from, Date to, Resolution interval) {
+    if (from.after(to)) throw new IllegalArgumentException("from > to");
+    int unit = toCalendarField(interval);
+    if (unit > toCalendarField(resolution))
+      throw new IllegalArgumentException("Interval "+interval+" is finer than resolution "+resolution);
+    Calendar c = GregorianCalendar.getInstance();
+    c.setTime(from);
+    truncate(c, unit);
+    DateFormat format = new SimpleDateFormat(toPattern(interval));
+    double[] bounds = new double[MAX_NUMBER_OF_RANGES + 1];
+    String[] labels = new String[MAX_NUMBER_OF_RANGES];
+    int count = 0;
+    while (!c.getTime().after(to)) {
+      if (count == MAX_NUMBER_OF_RANGES) throw new IllegalArgumentException("Too many ranges");
+      bounds[count] = Dates.toNumber(c.getTime(), resolution).doubleValue();
+      labels[count] = format.format(c.getTime());
+      c.add(unit, 1);
+      count++;
+    }
+    bounds[count] = Dates.toNumber(c.getTime(), resolution).doubleValue();
+    double[] b = new double[count + 1];
+    System.arraycopy(bounds, 0, b, 0, count + 1);
+    String[] l = new String[count];
+    System.arraycopy(labels, 0, l, 0, count);
+    int type = toCalendarField(resolution) <= Calendar.DAY_OF_MONTH? SortField.INT : SortField.LONG;
+    return new RangeFacet(field, type, b, l);
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Returns the index of the range including the specified value.
+   *
+   * @param value the value.
+   * @return the index of the range or <code>-1</code> if the value is outside all ranges.
+   */
+  private int indexOf(double value) {
+    final double[] bounds = this._bounds;
+    if (value < bounds[0] || value >= bounds[bounds.length - 1]) return -1;
+    int low = 0;
+    int high = bounds.length - 2;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (bounds[mid] <= value) low = mid;
+      else high = mid - 1;
+    }
+    return low;
+  }
+
+  /**
+   * Converts the raw value of the numeric field to a double.
+   *
+   * @param raw the raw value from the index.
+   * @return the corresponding value.
+   */
+  private double toDouble(long raw) {
+    switch (this._type) {
+      case SortField.FLOAT: return NumericUtils.sortableIntToFloat((int)raw);
+      case SortField.DOUBLE: return NumericUtils.sortableLongToDouble(raw);
+      default: return raw;
+    }
+  }
+
+  /**
+   * Returns the numeric range query for the specified range.
+   *
+   * @param i the index of the range.
+   * @return the corresponding query.
+   */
+  private Query toQuery(int i) {
+    double lower = this._bounds[i];
+    double upper = this._bounds[i + 1];
+    boolean hasLower = !Double.isInfinite(lower);
+    boolean hasUpper = !Double.isInfinite(upper);
+    switch (this._type) {
+      case SortField.INT:
+        return NumericRangeQuery.newIntRange(this._name,
+            hasLower? Integer.valueOf((int)Math.ceil(lower)) : null,
+            hasUpper? Integer.valueOf((int)Math.ceil(upper)) : null, true, false);
+      case SortField.LONG:
+        return NumericRangeQuery.newLongRange(this._name,
+            hasLower? Long.valueOf((long)Math.ceil(lower)) : null,
+            hasUpper? Long.valueOf((long)Math.ceil(upper)) : null, true, false);
+      case SortField.FLOAT:
+        return NumericRangeQuery.newFloatRange(this._name,
+            hasLower? Float.valueOf((float)lower) : null,
+            hasUpper? Float.valueOf((float)upper) : null, true, false);
+      default:
+        return NumericRangeQuery.newDoubleRange(this._name,
+            hasLower? Double.valueOf(lower) : null,
+            hasUpper? Double.valueOf(upper) : null, true, false);
+    }
+  }
+
+  /**
+   * @param type The type of numeric field.
+   * @throws IllegalArgumentException If the type is not numeric.
+   */
+  private static void checkType(int type) {
+    if (type != SortField.INT && type != SortField.LONG && type != SortField.FLOAT && type != SortField.DOUBLE)
+      throw new IllegalArgumentException("Unsupported numeric type: "+type);
+  }
+
+  /**
+   * @param bounds The bounds to check.
+   * @throws IllegalArgumentException If there are not enough bounds or they are not in ascending order.
+   */
+  private static void checkBounds(double[] bounds) {
+    if (bounds.length < 2 || bounds.length > MAX_NUMBER_OF_RANGES + 1)
+      throw new IllegalArgumentException("Invalid number of bounds: "+bounds.length);
+    for (int i = 0; i < bounds.length; i++) {
+      if (Double.isNaN(bounds[i])) throw new IllegalArgumentException("Bound is not a number");
+      if (i > 0 && bounds[i] <= bounds[i - 1]) throw new IllegalArgumentException("Bounds must be ascending");
+    }
+  }
+
+  /**
+   * Formats a bound, without decimals for integral values.
+   *
+   * @param value the bound.
+   * @return the corresponding string.
+   */
+  private static String toString(double value) {
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long)value);
+    return Double.toString(value);
+  }
+
+  /**
+   * Returns the calendar field corresponding to the specified resolution.
+   *
+   * @param resolution the date resolution.
+   * @return the corresponding calendar field.
+   */
+  private static int toCalendarField(Resolution resolution) {
+    if (resolution == Resolution.YEAR)   return Calendar.YEAR;
+    if (resolution == Resolution.MONTH)  return Calendar.MONTH;
+    if (resolution == Resolution.DAY)    return Calendar.DAY_OF_MONTH;
+    if (resolution == Resolution.HOUR)   return Calendar.HOUR_OF_DAY;
+    if (resolution == Resolution.MINUTE) return Calendar.MINUTE;
+    if (resolution == Resolution.SECOND) return Calendar.SECOND;
+    return Calendar.MILLISECOND;
+  }
+
+  /**
+   * Returns the ISO 8601 pattern to label a range for the specified interval.
+   *
+   * @param interval the date interval.
+   * @return the corresponding date format pattern.
+   */
+  private static String toPattern(Resolution interval) {
+    if (interval == Resolution.YEAR)   return "yyyy";
+    if (interval == Resolution.MONTH)  return "yyyy-MM";
+    if (interval == Resolution.DAY)    return "yyyy-MM-dd";
+    if (interval == Resolution.HOUR)   return "yyyy-MM-dd'T'HH";
+    if (interval == Resolution.MINUTE) return "yyyy-MM-dd'T'HH:mm";
+    if (interval == Resolution.SECOND) return "yyyy-MM-dd'T'HH:mm:ss";
+    return "yyyy-MM-dd'T'HH:mm:ss.SSS";
+  }
+
+  /**
+   * Clears all the fields of the calendar finer than the specified field.
+   *
+   * @param c     the calendar to truncate.
+   * @param field the calendar field to truncate to.
+   */
+  private static void truncate(Calendar c, int field) {
+    if (field == Calendar.MILLISECOND) return;
+    c.set(Calendar.MILLISECOND, 0);
+    if (field == Calendar.SECOND) return;
+    c.set(Calendar.SECOND, 0);
+    if (field == Calendar.MINUTE) return;
+    c.set(Calendar.MINUTE, 0);
+    if (field == Calendar.HOUR_OF_DAY) return;
+    c.set(Calendar.HOUR_OF_DAY, 0);
+    if (field == Calendar.DAY_OF_MONTH) return;
+    c.set(Calendar.DAY_OF_MONTH, 1);
+    if (field == Calendar.MONTH) return;
+    c.set(Calendar.MONTH, Calendar.JANUARY);
+  }
+
+  // Private classes ------------------------------------------------------------------------------
+
+  /**
+   * Accumulates the number of documents in each range using the cached values of the field.
+   */
+  private final class Accumulator implements FacetAccumulator {
+
+    /** The number of documents in each range. */
+    private final int[] _counts = new int[RangeFacet.this._labels.length];
+
+    /** The values of the current segment. */
+    private SegmentNumbers numbers;
+
+    @Override
+    public void setNextReader(IndexReader reader, int docBase) throws IOException {
+      this.numbers = SegmentNumbers.get(reader, RangeFacet.this._name);
+    }
+
+    @Override
+    public void collect(int doc) {
+      if (this.numbers.hasValue(doc)) {
+        int i = indexOf(toDouble(this.numbers.value(doc)));
+        if (i >= 0) this._counts[i]++;
+      }
+    }
+
+    @Override
+    public void finish() {
+      RangeFacet.this._counts = this._counts;
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import org.weborganic.flint.util.Beta;
+
+/**
+ * An immutable set of document IDs matching a query.
+ *
+ * <p>Result sets collected from different queries on the same index reader can be combined
+ * using set operations without running the queries again.
+ *
+ * @see ResultSetCollector
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public interface ResultSet {
+
+  /**
+   * Returns the number of documents in this set.
+   *
+   * @return the number of documents in this set.
+   */
+  int cardinality();
+
+  /**
+   * Indicates whether this set contains any document.
+   *
+   * @return <code>true</code> if this set is empty; <code>false</code> otherwise.
+   */
+  boolean isEmpty();
+
+  /**
+   * Indicates whether this set contains the specified document.
+   *
+   * @param doc The document ID.
+   * @return <code>true</code> if this set contains the document; <code>false</code> otherwise.
+   */
+  boolean contains(int doc);
+
+  /**
+   * Returns the first document in this set on or after the specified document.
+   *
+   * <p>To iterate over all documents in this set:
+   * <pre>
+   *   for (int doc = set.next(0); doc >= 0; doc = set.next(doc + 1)) {
+   *     ...
+   *   }
+   * </pre>
+   *
+   * @param doc The document ID to start from (inclusive).
+   * @return the next document ID or <code>-1</code> if there is none.
+   */
+  int next(int doc);
+
+  /**
+   * Returns the documents in both this set and the specified set.
+   *
+   * @param other The other set.
+   * @return the intersection of the two sets.
+   */
+  ResultSet and(ResultSet other);
+
+  /**
+   * Returns the documents in either this set or the specified set.
+   *
+   * @param other The other set.
+   * @return the union of the two sets.
+   */
+  ResultSet or(ResultSet other);
+
+  /**
+   * Returns the documents in this set but not in the specified set.
+   *
+   * @param other The other set.
+   * @return the difference of the two sets.
+   */
+  ResultSet andNot(ResultSet other);
+
+}
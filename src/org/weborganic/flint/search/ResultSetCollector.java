@@ -0,0 +1,102 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.weborganic.flint.util.Beta;
+
+/**
+ * Collects Lucene search results into a compressed result set.
+ *
+ * <p>Unlike the {@link BitCollector}, the memory used depends on the number and distribution of
+ * matching documents rather than on the size of the index.
+ *
+ * <pre>
+ *   ResultSetCollector collector = new ResultSetCollector(searcher.getIndexReader());
+ *   searcher.search(query, collector);
+ *   ResultSet set = collector.getResultSet();
+ * </pre>
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class ResultSetCollector extends Collector {
+
+  /**
+   * The builder for the result set.
+   */
+  private final CompressedResultSet.Builder _builder;
+
+  /**
+   * The document ID for the reader in use.
+   */
+  private int _docbase;
+
+  /**
+   * Creates a new collector for the specified reader.
+   *
+   * @param reader The top-level reader the search is performed on.
+   */
+  public ResultSetCollector(IndexReader reader) {
+    this._builder = new CompressedResultSet.Builder(reader.getFieldCacheKey());
+  }
+
+  /**
+   * Does nothing - the scorer is irrelevant when collecting result sets.
+   *
+   * @param scorer the scorer.
+   */
+  @Override
+  public void setScorer(Scorer scorer) {
+    // ignore scorer
+  }
+
+  /**
+   * Documents must be collected in order to be compressed as they are collected.
+   *
+   * @return always <code>false</code>.
+   */
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return false;
+  }
+
+  /**
+   * Adds the collected document to the result set.
+   *
+   * @param doc the position of the Lucene document in the current reader
+   */
+  @Override
+  public void collect(int doc) {
+    this._builder.add(doc + this._docbase);
+  }
+
+  /**
+   * Changes the document base to re-base the document IDs in the result set.
+   *
+   * @param reader  the next index reader
+   * @param docbase used to re-base document ids for the index.
+   */
+  @Override
+  public void setNextReader(IndexReader reader, int docbase) {
+    this._docbase = docbase;
+  }
+
+  /**
+   * Returns the result set after a search.
+   *
+   * @return the result set after a search.
+   */
+  public ResultSet getResultSet() {
+    return this._builder.build();
+  }
+
+}
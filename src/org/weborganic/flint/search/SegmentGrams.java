@@ -0,0 +1,299 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * An index of the trigrams of the terms of a field for a single segment.
+ *
+ * <p>Each term is padded with a start and an end marker and split into trigrams; each trigram is
+ * mapped to the sorted ordinals of the terms which contain it. The terms sharing enough trigrams
+ * with a word are the candidates for a spelling suggestion.
+ *
+ * <p>Instances are cached using the core cache key of the segment reader. Since the index of a
+ * field holds its terms in memory, fields with more than a maximum number of terms in the segment
+ * are pruned: only the most frequent terms up to that maximum are indexed.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class SegmentGrams {
+
+  /**
+   * Gram indexes cached by segment reader key and field name.
+   */
+  private static final Map<Object, Map<String, SegmentGrams>> CACHE = new WeakHashMap<Object, Map<String, SegmentGrams>>();
+
+  /**
+   * The size of the grams.
+   */
+  static final int GRAM_SIZE = 3;
+
+  /**
+   * An empty list of ordinals.
+   */
+  private static final int[] NO_ORDINALS = new int[0];
+
+  /**
+   * The terms of the segment.
+   */
+  private final SegmentTerms _terms;
+
+  /**
+   * Maps each gram to the sorted ordinals of the terms containing it.
+   */
+  private final Map<String, int[]> _grams;
+
+  /**
+   * Creates a new gram index.
+   *
+   * @param terms The terms of the segment.
+   * @param grams Maps each gram to the sorted ordinals of the terms containing it.
+   */
+  private SegmentGrams(SegmentTerms terms, Map<String, int[]> grams) {
+    this._terms = terms;
+    this._grams = grams;
+  }
+
+  /**
+   * @return the indexed terms of the segment.
+   */
+  SegmentTerms terms() {
+    return this._terms;
+  }
+
+  /**
+   * Returns the ordinals of the terms containing the specified gram.
+   *
+   * @param gram the gram.
+   * @return the sorted ordinals of the terms (do not modify).
+   */
+  int[] ordinals(String gram) {
+    int[] ordinals = this._grams.get(gram);
+    return ordinals != null? ordinals : NO_ORDINALS;
+  }
+
+  /**
+   * Returns the grams of the specified word.
+   *
+   * @param word the word.
+   * @return its grams including the start and end markers.
+   */
+  static String[] toGrams(String word) {
+    String padded = '\u0002' + word + '\u0003';
+    String[] grams = new String[Math.max(1, padded.length() - GRAM_SIZE + 1)];
+    if (padded.length() < GRAM_SIZE) {
+      grams[0] = padded;
+    } else {
+      for (int i = 0; i < grams.length; i++) {
+        grams[i] = padded.substring(i, i + GRAM_SIZE);
+      }
+    }
+    return grams;
+  }
+
+  /**
+   * Returns the gram index for the specified segment reader and field, building it if necessary.
+   *
+   * <p>If the field has more terms than the specified maximum in the segment, only the most
+   * frequent terms up to that maximum are indexed.
+   *
+   * @param reader   A segment reader (or any reader without sub-readers).
+   * @param field    The name of the field.
+   * @param maxTerms The maximum number of terms of the field to index in the segment.
+   *
+   * @return the corresponding gram index.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  static SegmentGrams get(IndexReader reader, String field, int maxTerms) throws IOException {
+    Object key = reader.getFieldCacheKey();
+    synchronized (CACHE) {
+      Map<String, SegmentGrams> fields = CACHE.get(key);
+      SegmentGrams grams = fields != null? fields.get(field) : null;
+      if (grams != null) return grams;
+    }
+    // Load outside the lock, another thread may build the same index concurrently
+    SegmentTerms terms = exceeds(reader, field, maxTerms)? mostFrequent(reader, field, maxTerms) : SegmentTerms.get(reader, field);
+    SegmentGrams loaded = build(terms);
+    synchronized (CACHE) {
+      Map<String, SegmentGrams> fields = CACHE.get(key);
+      if (fields == null) {
+        fields = new HashMap<String, SegmentGrams>();
+        CACHE.put(key, fields);
+      }
+      SegmentGrams grams = fields.get(field);
+      if (grams != null) return grams;
+      fields.put(field, loaded);
+      return loaded;
+    }
+  }
+
+  /**
+   * Indicates whether the specified field has more than the specified number of terms.
+   *
+   * @param reader   The segment reader.
+   * @param field    The name of the field.
+   * @param maxTerms The maximum number of terms.
+   *
+   * @return <code>true</code> if the field has more terms; <code>false</code> otherwise.
+   *
+   * @throws IOException If thrown by the reader while enumerating the terms.
+   */
+  private static boolean exceeds(IndexReader reader, String field, int maxTerms) throws IOException {
+    int count = 0;
+    TermEnum e = reader.terms(new Term(field, ""));
+    try {
+      do {
+        Term t = e.term();
+        if (t == null || !field.equals(t.field())) break;
+        if (++count > maxTerms) return true;
+      } while (e.next());
+    } finally {
+      e.close();
+    }
+    return false;
+  }
+
+  /**
+   * Returns the most frequent terms of the specified field in index order.
+   *
+   * <p>The returned terms are not cached as the terms of the segment since they are only a
+   * subset of them.
+   *
+   * @param reader   The segment reader.
+   * @param field    The name of the field.
+   * @param maxTerms The maximum number of terms to return.
+   *
+   * @return the most frequent terms of the field.
+   *
+   * @throws IOException If thrown by the reader while enumerating the terms.
+   */
+  private static SegmentTerms mostFrequent(IndexReader reader, String field, int maxTerms) throws IOException {
+    PriorityQueue<Frequency> queue = new PriorityQueue<Frequency>(Math.max(1, maxTerms));
+    if (maxTerms > 0) {
+      TermEnum e = reader.terms(new Term(field, ""));
+      try {
+        do {
+          Term t = e.term();
+          if (t == null || !field.equals(t.field())) break;
+          int docFreq = e.docFreq();
+          if (queue.size() < maxTerms) {
+            queue.add(new Frequency(t.text(), docFreq));
+          } else if (docFreq > queue.peek()._docFreq) {
+            queue.poll();
+            queue.add(new Frequency(t.text(), docFreq));
+          }
+        } while (e.next());
+      } finally {
+        e.close();
+      }
+    }
+    // Restore the index order
+    Frequency[] frequent = queue.toArray(new Frequency[queue.size()]);
+    Arrays.sort(frequent, Frequency.INDEX_ORDER);
+    String[] texts = new String[frequent.length];
+    int[] docFreqs = new int[frequent.length];
+    for (int i = 0; i < frequent.length; i++) {
+      texts[i] = frequent[i]._text;
+      docFreqs[i] = frequent[i]._docFreq;
+    }
+    return new SegmentTerms(texts, docFreqs);
+  }
+
+  /**
+   * Builds the gram index for the specified terms.
+   *
+   * @param terms The terms of the segment.
+   * @return the corresponding gram index.
+   */
+  private static SegmentGrams build(SegmentTerms terms) {
+    String[] texts = terms.terms();
+    // First pass to count the terms for each gram
+    Map<String, int[]> counts = new HashMap<String, int[]>();
+    for (String text : texts) {
+      for (String gram : toGrams(text)) {
+        int[] count = counts.get(gram);
+        if (count == null) {
+          count = new int[2];
+          counts.put(gram, count);
+        }
+        count[0]++;
+      }
+    }
+    // Second pass to fill the ordinals, using the second slot as the insertion point
+    Map<String, int[]> grams = new HashMap<String, int[]>(counts.size() * 2);
+    for (Map.Entry<String, int[]> e : counts.entrySet()) {
+      grams.put(e.getKey(), new int[e.getValue()[0]]);
+    }
+    for (int ord = 0; ord < texts.length; ord++) {
+      for (String gram : toGrams(texts[ord])) {
+        int[] count = counts.get(gram);
+        int[] ordinals = grams.get(gram);
+        // A term may contain the same gram more than once
+        if (count[1] == 0 || ordinals[count[1] - 1] != ord) ordinals[count[1]++] = ord;
+      }
+    }
+    // Trim the lists of grams repeated within a term
+    for (Map.Entry<String, int[]> e : grams.entrySet()) {
+      int size = counts.get(e.getKey())[1];
+      if (size < e.getValue().length) {
+        int[] trimmed = new int[size];
+        System.arraycopy(e.getValue(), 0, trimmed, 0, size);
+        e.setValue(trimmed);
+      }
+    }
+    return new SegmentGrams(terms, grams);
+  }
+
+  /**
+   * A term and its document frequency used to select the most frequent terms.
+   */
+  private static final class Frequency implements Comparable<Frequency> {
+
+    /** Sorts the terms in index order. */
+    private static final Comparator<Frequency> INDEX_ORDER = new Comparator<Frequency>() {
+      @Override
+      public int compare(Frequency a, Frequency b) {
+        return a._text.compareTo(b._text);
+      }
+    };
+
+    /** The text of the term. */
+    private final String _text;
+
+    /** The document frequency of the term. */
+    private final int _docFreq;
+
+    /**
+     * @param text    The text of the term.
+     * @param docFreq The document frequency of the term.
+     */
+    public Frequency(String text, int docFreq) {
+      this._text = text;
+      this._docFreq = docFreq;
+    }
+
+    @Override
+    public int compareTo(Frequency o) {
+      return this._docFreq < o._docFreq? -1 : this._docFreq == o._docFreq? 0 : 1;
+    }
+  }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ * The values of a numeric field for each document of a single segment.
+ *
+ * <p>The values are read from the full precision terms indexed by a Lucene
+ * <code>NumericField</code> and kept as raw <code>long</code> values: integers and longs are kept
+ * as is, floats and doubles in their sortable integer or long form. Unlike the Lucene
+ * <code>FieldCache</code>, documents without a value are distinguished from documents with a
+ * value of zero.
+ *
+ * <p>Numeric fields are expected to have a single value per document; if a document has more than
+ * one value, only the last one is kept.
+ *
+ * <p>Instances are cached using the core cache key of the segment reader.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class SegmentNumbers {
+
+  /**
+   * Values cached by segment reader key and field name.
+   */
+  private static final Map<Object, Map<String, SegmentNumbers>> CACHE = new WeakHashMap<Object, Map<String, SegmentNumbers>>();
+
+  /**
+   * Size of the buffers used to read the term documents.
+   */
+  private static final int BUFFER_SIZE = 64;
+
+  /**
+   * The raw value for each document.
+   */
+  private final long[] _values;
+
+  /**
+   * The documents which have a value.
+   */
+  private final OpenBitSet _hasValue;
+
+  /**
+   * Creates new segment values.
+   *
+   * @param values   The raw value for each document.
+   * @param hasValue The documents which have a value.
+   */
+  private SegmentNumbers(long[] values, OpenBitSet hasValue) {
+    this._values = values;
+    this._hasValue = hasValue;
+  }
+
+  /**
+   * Indicates whether the specified document has a value.
+   *
+   * @param doc the segment document ID.
+   * @return <code>true</code> if the document has a value for this field.
+   */
+  boolean hasValue(int doc) {
+    return this._hasValue.fastGet(doc);
+  }
+
+  /**
+   * Returns the raw value for the specified document.
+   *
+   * @param doc the segment document ID.
+   * @return the raw value (sortable form for floating point numbers).
+   */
+  long value(int doc) {
+    return this._values[doc];
+  }
+
+  /**
+   * Returns the values for the specified segment reader and field, loading them if necessary.
+   *
+   * @param reader A segment reader (or any reader without sub-readers).
+   * @param field  The name of the numeric field.
+   *
+   * @return the corresponding values.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  static SegmentNumbers get(IndexReader reader, String field) throws IOException {
+    Object key = reader.getFieldCacheKey();
+    synchronized (CACHE) {
+      Map<String, SegmentNumbers> fields = CACHE.get(key);
+      SegmentNumbers numbers = fields != null? fields.get(field) : null;
+      if (numbers != null) return numbers;
+    }
+    SegmentNumbers loaded = load(reader, field);
+    synchronized (CACHE) {
+      Map<String, SegmentNumbers> fields = CACHE.get(key);
+      if (fields == null) {
+        fields = new HashMap<String, SegmentNumbers>();
+        CACHE.put(key, fields);
+      }
+      SegmentNumbers numbers = fields.get(field);
+      if (numbers != null) return numbers;
+      fields.put(field, loaded);
+      return loaded;
+    }
+  }
+
+  /**
+   * Loads the values for the specified reader and field.
+   *
+   * @param reader The segment reader.
+   * @param field  The name of the numeric field.
+   *
+   * @return the corresponding values.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  private static SegmentNumbers load(IndexReader reader, String field) throws IOException {
+    final int maxDoc = reader.maxDoc();
+    long[] values = new long[maxDoc];
+    OpenBitSet hasValue = new OpenBitSet(maxDoc);
+    int[] docs = new int[BUFFER_SIZE];
+    int[] freqs = new int[BUFFER_SIZE];
+    TermEnum e = reader.terms(new Term(field, ""));
+    TermDocs td = reader.termDocs();
+    try {
+      do {
+        Term t = e.term();
+        if (t == null || !field.equals(t.field())) break;
+        String text = t.text();
+        if (text.length() == 0) continue;
+        // Full precision terms come first, stop at the first lower precision term
+        long value;
+        char shift = text.charAt(0);
+        if (shift == NumericUtils.SHIFT_START_INT) {
+          value = NumericUtils.prefixCodedToInt(text);
+        } else if (shift == NumericUtils.SHIFT_START_LONG) {
+          value = NumericUtils.prefixCodedToLong(text);
+        } else break;
+        td.seek(e);
+        int n;
+        while ((n = td.read(docs, freqs)) > 0) {
+          for (int i = 0; i < n; i++) {
+            values[docs[i]] = value;
+            hasValue.fastSet(docs[i]);
+          }
+        }
+      } while (e.next());
+    } finally {
+      e.close();
+      td.close();
+    }
+    return new SegmentNumbers(values, hasValue);
+  }
+
+}
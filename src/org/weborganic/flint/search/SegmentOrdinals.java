@@ -0,0 +1,271 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * The ordinals of the terms of a field for each document of a single segment.
+ *
+ * <p>The terms of the field are numbered in index order, and each document is mapped to the
+ * ordinals of all the terms it contains, so that fields with multiple values per document are
+ * supported. The values are stored in two primitive arrays:
+ * <pre>
+ *   ordinals of document d = ords[starts[d]] ... ords[starts[d+1] - 1]
+ * </pre>
+ *
+ * <p>Instances are cached using the core cache key of the segment reader in the same way as the
+ * Lucene <code>FieldCache</code>, so they are shared by all the readers on the same segment and
+ * survive reopens as long as the segment is not merged away.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class SegmentOrdinals {
+
+  /**
+   * Ordinals cached by segment reader key and field name.
+   */
+  private static final Map<Object, Map<String, SegmentOrdinals>> CACHE = new WeakHashMap<Object, Map<String, SegmentOrdinals>>();
+
+  /**
+   * Size of the buffers used to read the term documents.
+   */
+  private static final int BUFFER_SIZE = 64;
+
+  /**
+   * The name of the field.
+   */
+  private final String _field;
+
+  /**
+   * The text of the terms in index order, the position in this array is the term ordinal.
+   */
+  private final String[] _terms;
+
+  /**
+   * The index of the first ordinal in the ordinals array for each document; has maxDoc + 1 values.
+   */
+  private final int[] _starts;
+
+  /**
+   * The ordinals for all documents.
+   */
+  private final int[] _ords;
+
+  /**
+   * Creates new segment ordinals.
+   *
+   * @param field  The name of the field.
+   * @param terms  The text of the terms in index order.
+   * @param starts The index of the first ordinal for each document.
+   * @param ords   The ordinals for all documents.
+   */
+  private SegmentOrdinals(String field, String[] terms, int[] starts, int[] ords) {
+    this._field = field;
+    this._terms = terms;
+    this._starts = starts;
+    this._ords = ords;
+  }
+
+  /**
+   * @return the name of the field.
+   */
+  String field() {
+    return this._field;
+  }
+
+  /**
+   * @return the number of distinct terms in this segment.
+   */
+  int size() {
+    return this._terms.length;
+  }
+
+  /**
+   * Returns the text of the term for the specified ordinal.
+   *
+   * @param ord the ordinal of the term.
+   * @return the corresponding text.
+   */
+  String term(int ord) {
+    return this._terms[ord];
+  }
+
+  /**
+   * @return the text of the terms in index order (do not modify).
+   */
+  String[] terms() {
+    return this._terms;
+  }
+
+  /**
+   * Returns the index of the first ordinal for the specified document.
+   *
+   * @param doc the segment document ID.
+   * @return the index of the first ordinal of the document in <code>ords</code>.
+   */
+  int start(int doc) {
+    return this._starts[doc];
+  }
+
+  /**
+   * Returns the index after the last ordinal for the specified document.
+   *
+   * @param doc the segment document ID.
+   * @return the index after the last ordinal of the document in <code>ords</code>.
+   */
+  int end(int doc) {
+    return this._starts[doc + 1];
+  }
+
+  /**
+   * Returns the ordinal at the specified index.
+   *
+   * @param i the index (between start and end for a document).
+   * @return the ordinal at the specified index.
+   */
+  int ord(int i) {
+    return this._ords[i];
+  }
+
+  /**
+   * Returns the ordinals for the specified segment reader and field, loading them if necessary.
+   *
+   * @param reader A segment reader (or any reader without sub-readers).
+   * @param field  The name of the field.
+   *
+   * @return the corresponding ordinals.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  static SegmentOrdinals get(IndexReader reader, String field) throws IOException {
+    Object key = reader.getFieldCacheKey();
+    synchronized (CACHE) {
+      Map<String, SegmentOrdinals> fields = CACHE.get(key);
+      SegmentOrdinals ordinals = fields != null? fields.get(field) : null;
+      if (ordinals != null) return ordinals;
+    }
+    // Load outside the lock, another thread may load the same ordinals concurrently
+    SegmentOrdinals loaded = load(reader, field);
+    synchronized (CACHE) {
+      Map<String, SegmentOrdinals> fields = CACHE.get(key);
+      if (fields == null) {
+        fields = new HashMap<String, SegmentOrdinals>();
+        CACHE.put(key, fields);
+      }
+      SegmentOrdinals ordinals = fields.get(field);
+      if (ordinals != null) return ordinals;
+      fields.put(field, loaded);
+      return loaded;
+    }
+  }
+
+  /**
+   * Returns the text of the terms of the specified segment and field if they are already cached.
+   *
+   * @param reader A segment reader (or any reader without sub-readers).
+   * @param field  The name of the field.
+   *
+   * @return the cached terms in index order or <code>null</code>.
+   */
+  static String[] cachedTerms(IndexReader reader, String field) {
+    synchronized (CACHE) {
+      Map<String, SegmentOrdinals> fields = CACHE.get(reader.getFieldCacheKey());
+      SegmentOrdinals ordinals = fields != null? fields.get(field) : null;
+      return ordinals != null? ordinals._terms : null;
+    }
+  }
+
+  /**
+   * Loads the ordinals for the specified reader and field.
+   *
+   * @param reader The segment reader.
+   * @param field  The name of the field.
+   *
+   * @return the corresponding ordinals.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  private static SegmentOrdinals load(IndexReader reader, String field) throws IOException {
+    final int maxDoc = reader.maxDoc();
+    int[] counts = new int[maxDoc];
+    List<String> terms = new ArrayList<String>();
+    // Postings in term order: docs of term t are postings[ends[t-1]] ... postings[ends[t]-1]
+    int[] postings = new int[Math.max(16, maxDoc)];
+    int[] ends = new int[16];
+    int size = 0;
+    int[] docs = new int[BUFFER_SIZE];
+    int[] freqs = new int[BUFFER_SIZE];
+    TermEnum e = reader.terms(new Term(field, ""));
+    TermDocs td = reader.termDocs();
+    try {
+      do {
+        Term t = e.term();
+        if (t == null || !field.equals(t.field())) break;
+        td.seek(e);
+        int n;
+        while ((n = td.read(docs, freqs)) > 0) {
+          if (size + n > postings.length) postings = grow(postings, size + n);
+          for (int i = 0; i < n; i++) {
+            postings[size++] = docs[i];
+            counts[docs[i]]++;
+          }
+        }
+        if (terms.size() == ends.length) ends = grow(ends, ends.length + 1);
+        ends[terms.size()] = size;
+        terms.add(t.text());
+      } while (e.next());
+    } finally {
+      e.close();
+      td.close();
+    }
+    // Compute where the ordinals of each document start
+    int[] starts = new int[maxDoc + 1];
+    for (int d = 0; d < maxDoc; d++) {
+      starts[d + 1] = starts[d] + counts[d];
+    }
+    // Invert the postings, reusing counts as the insertion point for each document
+    System.arraycopy(starts, 0, counts, 0, maxDoc);
+    int[] ords = new int[size];
+    int from = 0;
+    for (int ord = 0; ord < terms.size(); ord++) {
+      for (int i = from; i < ends[ord]; i++) {
+        ords[counts[postings[i]]++] = ord;
+      }
+      from = ends[ord];
+    }
+    String[] shared = SegmentTerms.cachedTerms(reader, field);
+    return new SegmentOrdinals(field, SegmentTerms.toArray(terms, shared), starts, ords);
+  }
+
+  /**
+   * Returns a larger copy of the specified array.
+   *
+   * @param array   The array to grow.
+   * @param minSize The minimum size required.
+   *
+   * @return A copy of the array at least 1.5 times larger.
+   */
+  private static int[] grow(int[] array, int minSize) {
+    int[] grown = new int[Math.max(minSize, array.length + (array.length >> 1))];
+    System.arraycopy(array, 0, grown, 0, array.length);
+    return grown;
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * The terms of a field and their document frequency for a single segment.
+ *
+ * <p>Instances are cached using the core cache key of the segment reader, so that only the
+ * segments added since the last time a reader was opened need to be loaded.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class SegmentTerms {
+
+  /**
+   * Terms cached by segment reader key and field name.
+   */
+  private static final Map<Object, Map<String, SegmentTerms>> CACHE = new WeakHashMap<Object, Map<String, SegmentTerms>>();
+
+  /**
+   * The text of the terms in index order.
+   */
+  private final String[] _terms;
+
+  /**
+   * The document frequency of each term.
+   */
+  private final int[] _docFreqs;
+
+  /**
+   * Creates new segment terms.
+   *
+   * @param terms    The text of the terms in index order.
+   * @param docFreqs The document frequency of each term.
+   */
+  SegmentTerms(String[] terms, int[] docFreqs) {
+    this._terms = terms;
+    this._docFreqs = docFreqs;
+  }
+
+  /**
+   * @return the text of the terms in index order (do not modify).
+   */
+  String[] terms() {
+    return this._terms;
+  }
+
+  /**
+   * @return the document frequency of each term (do not modify).
+   */
+  int[] docFreqs() {
+    return this._docFreqs;
+  }
+
+  /**
+   * Returns the terms for the specified segment reader and field, loading them if necessary.
+   *
+   * @param reader A segment reader (or any reader without sub-readers).
+   * @param field  The name of the field.
+   *
+   * @return the corresponding terms.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  static SegmentTerms get(IndexReader reader, String field) throws IOException {
+    Object key = reader.getFieldCacheKey();
+    synchronized (CACHE) {
+      Map<String, SegmentTerms> fields = CACHE.get(key);
+      SegmentTerms terms = fields != null? fields.get(field) : null;
+      if (terms != null) return terms;
+    }
+    SegmentTerms loaded = load(reader, field);
+    synchronized (CACHE) {
+      Map<String, SegmentTerms> fields = CACHE.get(key);
+      if (fields == null) {
+        fields = new HashMap<String, SegmentTerms>();
+        CACHE.put(key, fields);
+      }
+      SegmentTerms terms = fields.get(field);
+      if (terms != null) return terms;
+      fields.put(field, loaded);
+      return loaded;
+    }
+  }
+
+  /**
+   * Returns the text of the terms of the specified segment and field if they are already cached.
+   *
+   * @param reader A segment reader (or any reader without sub-readers).
+   * @param field  The name of the field.
+   *
+   * @return the cached terms in index order or <code>null</code>.
+   */
+  static String[] cachedTerms(IndexReader reader, String field) {
+    synchronized (CACHE) {
+      Map<String, SegmentTerms> fields = CACHE.get(reader.getFieldCacheKey());
+      SegmentTerms terms = fields != null? fields.get(field) : null;
+      return terms != null? terms._terms : null;
+    }
+  }
+
+  /**
+   * Loads the terms for the specified reader and field.
+   *
+   * @param reader The segment reader.
+   * @param field  The name of the field.
+   *
+   * @return the corresponding terms.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  private static SegmentTerms load(IndexReader reader, String field) throws IOException {
+    List<String> terms = new ArrayList<String>();
+    int[] docFreqs = new int[16];
+    TermEnum e = reader.terms(new Term(field, ""));
+    try {
+      do {
+        Term t = e.term();
+        if (t == null || !field.equals(t.field())) break;
+        if (terms.size() == docFreqs.length) {
+          int[] grown = new int[docFreqs.length + (docFreqs.length >> 1)];
+          System.arraycopy(docFreqs, 0, grown, 0, docFreqs.length);
+          docFreqs = grown;
+        }
+        docFreqs[terms.size()] = e.docFreq();
+        terms.add(t.text());
+      } while (e.next());
+    } finally {
+      e.close();
+    }
+    int[] exact = new int[terms.size()];
+    System.arraycopy(docFreqs, 0, exact, 0, exact.length);
+    return new SegmentTerms(toArray(terms, SegmentOrdinals.cachedTerms(reader, field)), exact);
+  }
+
+  /**
+   * Returns the terms as an array, sharing the specified array of the same terms when possible
+   * so that a segment does not keep its terms in memory twice.
+   *
+   * @param terms  The terms that were loaded.
+   * @param shared The terms already held in memory for the same segment and field (may be <code>null</code>)
+   *
+   * @return the terms as an array.
+   */
+  static String[] toArray(List<String> terms, String[] shared) {
+    if (shared != null && shared.length == terms.size()) return shared;
+    return terms.toArray(new String[terms.size()]);
+  }
+
+}
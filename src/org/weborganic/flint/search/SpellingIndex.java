@@ -0,0 +1,240 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.ReaderUtil;
+import org.weborganic.flint.util.Beta;
+import org.weborganic.flint.util.Bucket;
+
+/**
+ * Suggests the spelling of a term using the trigrams of the terms in the index.
+ *
+ * <p>The candidates for a term are the terms of the same field which share enough trigrams with
+ * it; they are then rescored using their edit distance to the term, and those within the maximum
+ * edit distance are ranked by document frequency. Unlike a <code>FuzzyTermEnum</code>, this does
+ * not compute the edit distance to every term of the field.
+ *
+ * <p>The trigram index is built from the terms of each segment the first time it is needed and
+ * cached for the life of the segment, so that only new segments need to be indexed after a commit.
+ *
+ * <p>Because the trigram index holds the terms of the field in memory, at most
+ * {@link #setMaxTerms(int) a maximum number of terms} are indexed per segment. For fields with
+ * more terms, typically full-text fields, only the most frequent terms are indexed so that rare
+ * terms, which are often misspellings themselves, are not suggested.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class SpellingIndex {
+
+  /**
+   * The default number of suggestions for a term if not specified.
+   */
+  public static final int DEFAULT_MAX_NUMBER_OF_SUGGESTIONS = 5;
+
+  /**
+   * The maximum edit distance for any suggestion.
+   */
+  public static final int MAX_EDITS = 2;
+
+  /**
+   * The default maximum number of terms of a field in a segment in a trigram index.
+   */
+  public static final int DEFAULT_MAX_TERMS = 100000;
+
+  /**
+   * The maximum number of terms of a field in a segment in a trigram index.
+   */
+  private static volatile int maxTerms = DEFAULT_MAX_TERMS;
+
+  /**
+   * Utility class.
+   */
+  private SpellingIndex() {
+  }
+
+  /**
+   * Sets the maximum number of terms of a field in a segment to include in a trigram index.
+   *
+   * <p>Only the most frequent terms of fields with more terms are suggested. Segments for which
+   * the trigram index has already been built are not affected.
+   *
+   * @param max the maximum number of terms.
+   *
+   * @throws IllegalArgumentException if the maximum is negative.
+   */
+  public static void setMaxTerms(int max) {
+    if (max < 0) throw new IllegalArgumentException("The maximum number of terms must be positive");
+    maxTerms = max;
+  }
+
+  /**
+   * Returns the suggested spellings of the specified term.
+   *
+   * <p>Same as <code>suggest(reader, term, 5).items()</code>.
+   *
+   * @param reader The index reader to use.
+   * @param term   The term to correct.
+   *
+   * @return the list of suggested terms ordered by document frequency.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  public static List<Term> suggest(IndexReader reader, Term term) throws IOException {
+    return suggest(reader, term, DEFAULT_MAX_NUMBER_OF_SUGGESTIONS).items();
+  }
+
+  /**
+   * Returns the suggested spellings of the specified term.
+   *
+   * <p>The maximum edit distance depends on the length of the term: none for up to two
+   * characters, one for up to four and {@value #MAX_EDITS} for longer terms. The term itself is
+   * never suggested.
+   *
+   * @param reader The index reader to use.
+   * @param term   The term to correct.
+   * @param size   The maximum number of suggestions.
+   *
+   * @return the bucket of suggested terms with their document frequency.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  public static Bucket<Term> suggest(IndexReader reader, Term term, int size) throws IOException {
+    if (size < 0) throw new IllegalArgumentException("size < 0");
+    Bucket<Term> bucket = new Bucket<Term>(size);
+    final String word = term.text();
+    final int maxEdits = maxEdits(word.length());
+    if (maxEdits == 0 || size == 0) return bucket;
+    Set<String> unique = new LinkedHashSet<String>(Arrays.asList(SegmentGrams.toGrams(word)));
+    String[] grams = unique.toArray(new String[unique.size()]);
+    int minShared = Math.max(1, SegmentGrams.toGrams(word).length - SegmentGrams.GRAM_SIZE * maxEdits);
+    // Collect the candidates in each segment and sum their frequencies
+    Map<String, int[]> candidates = new HashMap<String, int[]>();
+    List<IndexReader> readers = new ArrayList<IndexReader>();
+    ReaderUtil.gatherSubReaders(readers, reader);
+    final int max = maxTerms;
+    for (IndexReader segment : readers) {
+      SegmentGrams index = SegmentGrams.get(segment, term.field(), max);
+      collect(index, word, grams, minShared, maxEdits, candidates);
+    }
+    for (Map.Entry<String, int[]> c : candidates.entrySet()) {
+      bucket.add(new Term(term.field(), c.getKey()), c.getValue()[0]);
+    }
+    return bucket;
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Returns the maximum number of edits for a word of the specified length.
+   *
+   * @param length the length of the word.
+   * @return the maximum edit distance.
+   */
+  private static int maxEdits(int length) {
+    return Math.min(MAX_EDITS, (length - 1) / 2);
+  }
+
+  /**
+   * Collects the terms of a segment within the maximum edit distance of a word.
+   *
+   * <p>The ordinals of the terms containing each gram are merged to count the number of grams
+   * each term shares with the word.
+   *
+   * @param index      The gram index of the segment.
+   * @param word       The word to correct.
+   * @param grams      The distinct grams of the word.
+   * @param minShared  The minimum number of grams a candidate must share with the word.
+   * @param maxEdits   The maximum edit distance.
+   * @param candidates Receives the text of the candidates and their document frequency.
+   */
+  private static void collect(SegmentGrams index, String word, String[] grams, int minShared, int maxEdits,
+      Map<String, int[]> candidates) {
+    String[] texts = index.terms().terms();
+    int[] docFreqs = index.terms().docFreqs();
+    int[][] lists = new int[grams.length][];
+    int[] positions = new int[grams.length];
+    for (int i = 0; i < grams.length; i++) {
+      lists[i] = index.ordinals(grams[i]);
+    }
+    while (true) {
+      // Find the lowest ordinal and the number of lists containing it
+      int ord = Integer.MAX_VALUE;
+      for (int i = 0; i < lists.length; i++) {
+        if (positions[i] < lists[i].length && lists[i][positions[i]] < ord) ord = lists[i][positions[i]];
+      }
+      if (ord == Integer.MAX_VALUE) break;
+      int shared = 0;
+      for (int i = 0; i < lists.length; i++) {
+        if (positions[i] < lists[i].length && lists[i][positions[i]] == ord) {
+          shared++;
+          positions[i]++;
+        }
+      }
+      if (shared < minShared) continue;
+      String text = texts[ord];
+      if (Math.abs(text.length() - word.length()) > maxEdits || text.equals(word)) continue;
+      if (distance(word, text, maxEdits) <= maxEdits) {
+        int[] docFreq = candidates.get(text);
+        if (docFreq == null) {
+          candidates.put(text, new int[]{docFreqs[ord]});
+        } else {
+          docFreq[0] += docFreqs[ord];
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the Levenshtein distance between two strings, stopping as soon as it exceeds the
+   * specified maximum.
+   *
+   * @param s   The first string.
+   * @param t   The second string.
+   * @param max The maximum distance of interest.
+   *
+   * @return the edit distance or any value greater than <code>max</code>.
+   */
+  private static int distance(String s, String t, int max) {
+    final int n = s.length();
+    final int m = t.length();
+    int[] previous = new int[m + 1];
+    int[] current = new int[m + 1];
+    for (int j = 0; j <= m; j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= n; i++) {
+      current[0] = i;
+      int min = i;
+      char c = s.charAt(i - 1);
+      for (int j = 1; j <= m; j++) {
+        int cost = c == t.charAt(j - 1)? 0 : 1;
+        current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+        if (current[j] < min) min = current[j];
+      }
+      if (min > max) return min;
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[m];
+  }
+
+}
@@ -0,0 +1,450 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.ReaderUtil;
+import org.weborganic.flint.util.Bucket;
+
+/**
+ * The sorted terms of a field across all the segments of a reader weighted by document frequency.
+ *
+ * <p>The completions of a prefix form a contiguous range of the sorted terms which is found by
+ * binary search. The terms with the highest weights in that range are then found using a segment
+ * tree of the index of the highest weight, so that the cost of a completion depends on the number
+ * of completions requested rather than the number of terms matching the prefix.
+ *
+ * <p>Instances are cached by top-level reader; the terms of each segment are cached separately
+ * by {@link SegmentTerms}. As with {@link FieldOrdinals}, when a reader is reopened and segments
+ * were only added, the terms of the previous reader are extended with the terms of the new
+ * segments instead of being merged again.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+final class TermCompletions {
+
+  /**
+   * Completions cached by top-level reader key and field name.
+   */
+  private static final Map<Object, Map<String, TermCompletions>> CACHE = new WeakHashMap<Object, Map<String, TermCompletions>>();
+
+  /**
+   * The name of the field.
+   */
+  private final String _field;
+
+  /**
+   * The cache keys of the segment readers.
+   */
+  private final Object[] _keys;
+
+  /**
+   * The text of the distinct terms in all segments in index order.
+   */
+  private final String[] _terms;
+
+  /**
+   * The weight of each term (the sum of its document frequency in each segment).
+   */
+  private final int[] _weights;
+
+  /**
+   * Segment tree of the index of the term with the highest weight: the leaves are at
+   * <code>n + i</code> and node <code>i</code> covers nodes <code>2i</code> and <code>2i+1</code>.
+   */
+  private final int[] _tree;
+
+  /**
+   * Creates new completions.
+   *
+   * @param field   The name of the field.
+   * @param keys    The cache keys of the segment readers.
+   * @param terms   The sorted text of the terms.
+   * @param weights The weight of each term.
+   */
+  private TermCompletions(String field, Object[] keys, String[] terms, int[] weights) {
+    this._field = field;
+    this._keys = keys;
+    this._terms = terms;
+    this._weights = weights;
+    final int n = terms.length;
+    int[] tree = new int[2 * n];
+    for (int i = 0; i < n; i++) {
+      tree[n + i] = i;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      tree[i] = best(tree[2 * i], tree[2 * i + 1]);
+    }
+    this._tree = tree;
+  }
+
+  /**
+   * Creates completions for a new reader sharing the terms of the specified completions.
+   *
+   * @param keys     The cache keys of the segment readers.
+   * @param previous The completions of a reader with the same terms.
+   */
+  private TermCompletions(Object[] keys, TermCompletions previous) {
+    this._field = previous._field;
+    this._keys = keys;
+    this._terms = previous._terms;
+    this._weights = previous._weights;
+    this._tree = previous._tree;
+  }
+
+  /**
+   * @return the number of distinct terms.
+   */
+  int size() {
+    return this._terms.length;
+  }
+
+  /**
+   * Adds the completions of the specified prefix with the highest weights to the bucket.
+   *
+   * <p>No more completions than the capacity of the bucket are added.
+   *
+   * @param prefix The prefix to complete.
+   * @param bucket The bucket receiving the terms and their weight.
+   */
+  void complete(String prefix, Bucket<Term> bucket) {
+    int from = lowerBound(prefix);
+    int to = upperBound(prefix, from);
+    if (from >= to || bucket.capacity() == 0) return;
+    PriorityQueue<Range> queue = new PriorityQueue<Range>();
+    queue.add(new Range(from, to, max(from, to)));
+    int count = 0;
+    while (!queue.isEmpty() && count < bucket.capacity()) {
+      Range r = queue.poll();
+      bucket.add(new Term(this._field, this._terms[r._max]), this._weights[r._max]);
+      count++;
+      if (r._from < r._max) queue.add(new Range(r._from, r._max, max(r._from, r._max)));
+      if (r._max + 1 < r._to) queue.add(new Range(r._max + 1, r._to, max(r._max + 1, r._to)));
+    }
+  }
+
+  /**
+   * Returns the completions for the specified reader and field, computing them if necessary.
+   *
+   * @param reader The top-level reader.
+   * @param field  The name of the field.
+   *
+   * @return the corresponding completions.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  static TermCompletions get(IndexReader reader, String field) throws IOException {
+    Object key = reader.getFieldCacheKey();
+    synchronized (CACHE) {
+      Map<String, TermCompletions> fields = CACHE.get(key);
+      TermCompletions completions = fields != null? fields.get(field) : null;
+      if (completions != null) return completions;
+    }
+    TermCompletions loaded = load(reader, field);
+    synchronized (CACHE) {
+      Map<String, TermCompletions> fields = CACHE.get(key);
+      if (fields == null) {
+        fields = new HashMap<String, TermCompletions>();
+        CACHE.put(key, fields);
+      }
+      fields.put(field, loaded);
+      return loaded;
+    }
+  }
+
+  // private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the index of the term with the highest weight in the specified range.
+   *
+   * @param from The index of the first term (inclusive).
+   * @param to   The index of the last term (exclusive).
+   *
+   * @return the index of the term with the highest weight.
+   */
+  private int max(int from, int to) {
+    final int n = this._terms.length;
+    int best = -1;
+    for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+      if ((l & 1) == 1) best = best(best, this._tree[l++]);
+      if ((r & 1) == 1) best = best(best, this._tree[--r]);
+    }
+    return best;
+  }
+
+  /**
+   * Returns the index of the term with the highest weight, or the lowest index if equal.
+   *
+   * @param i The index of a term or <code>-1</code>.
+   * @param j The index of a term.
+   *
+   * @return the index of the best term.
+   */
+  private int best(int i, int j) {
+    if (i < 0) return j;
+    int wi = this._weights[i];
+    int wj = this._weights[j];
+    if (wi != wj) return wi > wj? i : j;
+    return i < j? i : j;
+  }
+
+  /**
+   * @param prefix The prefix.
+   * @return the index of the first term greater than or equal to the prefix.
+   */
+  private int lowerBound(String prefix) {
+    int low = 0;
+    int high = this._terms.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this._terms[mid].compareTo(prefix) < 0) low = mid + 1;
+      else high = mid;
+    }
+    return low;
+  }
+
+  /**
+   * @param prefix The prefix.
+   * @param from   The index of the first term greater than or equal to the prefix.
+   * @return the index of the first term after <code>from</code> which does not start with the prefix.
+   */
+  private int upperBound(String prefix, int from) {
+    int low = from;
+    int high = this._terms.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this._terms[mid].startsWith(prefix)) low = mid + 1;
+      else high = mid;
+    }
+    return low;
+  }
+
+  /**
+   * Merges the terms of each segment of the specified reader.
+   *
+   * @param reader The top-level reader.
+   * @param field  The name of the field.
+   *
+   * @return the corresponding completions.
+   *
+   * @throws IOException If thrown by the reader while loading the terms.
+   */
+  private static TermCompletions load(IndexReader reader, String field) throws IOException {
+    List<IndexReader> readers = new ArrayList<IndexReader>();
+    ReaderUtil.gatherSubReaders(readers, reader);
+    final int count = readers.size();
+    Object[] keys = new Object[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = readers.get(i).getFieldCacheKey();
+    }
+    TermCompletions previous = findPrevious(keys, field);
+    // Only the segments which were added since the previous reader need to be merged
+    List<Cursor> cursors = new ArrayList<Cursor>();
+    if (previous != null) cursors.add(new Cursor(previous._terms, previous._weights));
+    boolean added = false;
+    for (int i = 0; i < count; i++) {
+      if (previous != null && previous.indexOf(keys[i]) >= 0) continue;
+      SegmentTerms segment = SegmentTerms.get(readers.get(i), field);
+      cursors.add(new Cursor(segment.terms(), segment.docFreqs()));
+      added = true;
+    }
+    // Nothing was added
+    if (previous != null && !added) return new TermCompletions(keys, previous);
+    return merge(field, keys, cursors);
+  }
+
+  /**
+   * Merges sorted lists of terms into a single sorted list of distinct terms adding up their weights.
+   *
+   * @param field   The name of the field.
+   * @param keys    The cache keys of the segment readers.
+   * @param cursors The cursors over the sorted lists of terms.
+   *
+   * @return the corresponding completions.
+   */
+  private static TermCompletions merge(String field, Object[] keys, List<Cursor> cursors) {
+    PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(Math.max(1, cursors.size()));
+    int total = 0;
+    for (Cursor c : cursors) {
+      total = Math.max(total, c._terms.length);
+      if (c._terms.length > 0) queue.add(c);
+    }
+    List<String> terms = new ArrayList<String>(total);
+    int[] weights = new int[Math.max(16, total)];
+    while (!queue.isEmpty()) {
+      Cursor c = queue.poll();
+      String t = c.term();
+      int last = terms.size() - 1;
+      if (last >= 0 && t.equals(terms.get(last))) {
+        weights[last] += c.docFreq();
+      } else {
+        if (terms.size() == weights.length) {
+          int[] grown = new int[weights.length + (weights.length >> 1)];
+          System.arraycopy(weights, 0, grown, 0, weights.length);
+          weights = grown;
+        }
+        weights[terms.size()] = c.docFreq();
+        terms.add(t);
+      }
+      if (c.next()) queue.add(c);
+    }
+    int[] exact = new int[terms.size()];
+    System.arraycopy(weights, 0, exact, 0, exact.length);
+    return new TermCompletions(field, keys, terms.toArray(new String[terms.size()]), exact);
+  }
+
+  /**
+   * Finds the most complete cached completions for the field whose segments are all in the
+   * specified list of segments.
+   *
+   * @param keys  The cache keys of the segment readers.
+   * @param field The name of the field.
+   *
+   * @return the completions which can be extended or <code>null</code>.
+   */
+  private static TermCompletions findPrevious(Object[] keys, String field) {
+    TermCompletions previous = null;
+    synchronized (CACHE) {
+      for (Map<String, TermCompletions> fields : CACHE.values()) {
+        TermCompletions candidate = fields.get(field);
+        if (candidate != null && candidate.isIncludedIn(keys)
+            && (previous == null || candidate._keys.length > previous._keys.length)) {
+          previous = candidate;
+        }
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Indicates whether all the segments of these completions are included in the specified segments.
+   *
+   * @param keys The cache keys of the segment readers.
+   * @return <code>true</code> if these completions can be extended to the specified segments.
+   */
+  private boolean isIncludedIn(Object[] keys) {
+    if (this._keys.length == 0) return false;
+    for (Object key : this._keys) {
+      boolean found = false;
+      for (Object k : keys) {
+        if (k == key) found = true;
+      }
+      if (!found) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the segment for the specified segment key.
+   *
+   * @param key the cache key of the segment reader.
+   * @return the index of the segment or <code>-1</code>.
+   */
+  private int indexOf(Object key) {
+    for (int i = 0; i < this._keys.length; i++) {
+      if (this._keys[i] == key) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * A range of terms and the index of the term with the highest weight in that range.
+   */
+  private final class Range implements Comparable<Range> {
+
+    /** The index of the first term (inclusive). */
+    private final int _from;
+
+    /** The index of the last term (exclusive). */
+    private final int _to;
+
+    /** The index of the term with the highest weight. */
+    private final int _max;
+
+    /**
+     * @param from The index of the first term (inclusive).
+     * @param to   The index of the last term (exclusive).
+     * @param max  The index of the term with the highest weight.
+     */
+    public Range(int from, int to, int max) {
+      this._from = from;
+      this._to = to;
+      this._max = max;
+    }
+
+    @Override
+    public int compareTo(Range o) {
+      int w = TermCompletions.this._weights[o._max] - TermCompletions.this._weights[this._max];
+      return w != 0? w : this._max - o._max;
+    }
+  }
+
+  /**
+   * A cursor over a sorted list of weighted terms used for merging.
+   */
+  private static final class Cursor implements Comparable<Cursor> {
+
+    /** The sorted terms. */
+    private final String[] _terms;
+
+    /** The weight of each term. */
+    private final int[] _weights;
+
+    /** The current position. */
+    private int position = 0;
+
+    /**
+     * @param terms   The sorted terms.
+     * @param weights The weight of each term.
+     */
+    public Cursor(String[] terms, int[] weights) {
+      this._terms = terms;
+      this._weights = weights;
+    }
+
+    /**
+     * @return the current term.
+     */
+    public String term() {
+      return this._terms[this.position];
+    }
+
+    /**
+     * @return the weight of the current term.
+     */
+    public int docFreq() {
+      return this._weights[this.position];
+    }
+
+    /**
+     * Moves to the next term.
+     *
+     * @return <code>true</code> if there is a next term; <code>false</code> otherwise.
+     */
+    public boolean next() {
+      return ++this.position < this._terms.length;
+    }
+
+    @Override
+    public int compareTo(Cursor o) {
+      return term().compareTo(o.term());
+    }
+  }
+
+}
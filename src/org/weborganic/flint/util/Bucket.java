@@ -7,35 +7,46 @@
  */
 package org.weborganic.flint.util;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
  * The bucket is a list of items with a fixed size ordered by count.
  *
  * <p>The bucket has a limited capacity.
  *
+ * <p>The items are kept in a bounded min-heap backed by primitive arrays so that adding an item
+ * which does not make it into the bucket costs a single comparison and no allocation. The arrays
+ * grow as items are added, so that a large capacity costs nothing until it is used. Entries are
+ * only created when the content of the bucket is requested.
+ *
+ * <p>A bucket created with a {@link Resolver} works in ordinal mode: items are added using their
+ * ordinal with {@link #add(int, int)} and only the ordinals which remain in the bucket are
+ * resolved to items.
+ *
  * @param <T> The type of objects in this bucket.
  *
  * @author Christophe Lauret
- * @version 16 February 2012
+ * @version 19 October 2026
  */
 @Beta public final class Bucket<T> implements Iterable<T> {
 
   /**
-   * The size of the bucket.
+   * The initial size of the heap arrays.
    */
-  private final int _capacity;
+  private static final int INITIAL_SIZE = 16;
 
   /**
-   * The sorted set of entries.
+   * The size of the bucket.
    */
-  private final SortedSet<Entry<T>> _entries;
+  private final int _capacity;
 
   /**
    * Whether to include entries which count is zero.
@@ -43,15 +54,45 @@ import java.util.TreeSet;
   private final boolean _acceptZero;
 
   /**
-   * The minimum count to be included in the bucket.
+   * Resolves the ordinals to items in ordinal mode (<code>null</code> otherwise).
    */
-  private transient int minCount = 1;
+  private final Resolver<T> _resolver;
+
+  /**
+   * The items in heap order (<code>null</code> in ordinal mode until resolved).
+   */
+  private Object[] items;
+
+  /**
+   * The ordinals in heap order in ordinal mode (<code>null</code> otherwise).
+   */
+  private int[] ordinals;
+
+  /**
+   * The counts in heap order.
+   */
+  private int[] counts;
+
+  /**
+   * The number of entries in the heap.
+   */
+  private int size = 0;
 
   /**
    * Indicates the number of entries that have been considered.
    */
   private int _considered = 0;
 
+  /**
+   * The sorted entries, computed when requested (reset when an item is added).
+   */
+  private transient List<Entry<T>> sorted;
+
+  /**
+   * The counts by item, computed when requested (reset when an item is added).
+   */
+  private transient Map<T, Integer> index;
+
   /**
    * Creates a new bucket.
    *
@@ -60,9 +101,7 @@ import java.util.TreeSet;
    * @throws IllegalArgumentException If the capacity is < 0.
    */
   public Bucket(int capacity) throws IllegalArgumentException {
-   this._capacity = capacity;
-   this._entries = new TreeSet<Entry<T>>();
-   this._acceptZero = false;
+    this(capacity, false, null);
   }
 
   /**
@@ -75,10 +114,43 @@ import java.util.TreeSet;
    * @throws IllegalArgumentException If the capacity is < 0.
    */
   public Bucket(int capacity, boolean acceptZero) throws IllegalArgumentException {
-   this._capacity = capacity;
-   this._entries = new TreeSet<Entry<T>>();
-   if (acceptZero) { this.minCount = 0; }
-   this._acceptZero = acceptZero;
+    this(capacity, acceptZero, null);
+  }
+
+  /**
+   * Creates a new bucket in ordinal mode.
+   *
+   * <p>Items must be added using their ordinal; when two items have the same count, the item with
+   * the lowest ordinal comes first.
+   *
+   * @param capacity The capacity of this bucket.
+   * @param resolver Resolves the ordinals which remain in the bucket to items.
+   *
+   * @throws IllegalArgumentException If the capacity is < 0 or the resolver is <code>null</code>.
+   */
+  public Bucket(int capacity, Resolver<T> resolver) throws IllegalArgumentException {
+    this(capacity, false, resolver);
+    if (resolver == null) throw new IllegalArgumentException("resolver is null");
+  }
+
+  /**
+   * Creates a new bucket.
+   *
+   * @param capacity   The capacity of this bucket.
+   * @param acceptZero Whether to accept item counts equal to zero.
+   * @param resolver   Resolves the ordinals in ordinal mode (may be <code>null</code>).
+   *
+   * @throws IllegalArgumentException If the capacity is < 0.
+   */
+  private Bucket(int capacity, boolean acceptZero, Resolver<T> resolver) throws IllegalArgumentException {
+    if (capacity < 0) throw new IllegalArgumentException("capacity < 0");
+    this._capacity = capacity;
+    this._acceptZero = acceptZero;
+    this._resolver = resolver;
+    int initial = Math.min(capacity, INITIAL_SIZE);
+    this.counts = new int[initial];
+    this.ordinals = resolver != null? new int[initial] : null;
+    this.items = resolver != null? null : new Object[initial];
   }
 
   /**
@@ -87,7 +159,7 @@ import java.util.TreeSet;
    * @return <code>true</code> if the size of this bucket is 0; <code>false</code> otherwise.
    */
   public boolean isEmpty() {
-    return this._entries.isEmpty();
+    return this.size == 0;
   }
 
   /**
@@ -96,7 +168,7 @@ import java.util.TreeSet;
    * @return <code>true</code> if the size of this bucket is capacity; <code>false</code> otherwise.
    */
   public boolean isFull() {
-    return this._entries.size() == this._capacity;
+    return this.size == this._capacity;
   }
 
   /**
@@ -104,15 +176,50 @@ import java.util.TreeSet;
    *
    * @param item  A new Item
    * @param count Its cardinality
+   *
+   * @throws IllegalStateException If this bucket is in ordinal mode.
    */
   public void add(T item, int count) {
+    if (this._resolver != null) throw new IllegalStateException("Bucket in ordinal mode");
     if (count > 0 || this._acceptZero) this._considered++;
-    if (count >= this.minCount) {
-      this._entries.add(new Entry<T>(item, count));
-      if (this._entries.size() > this._capacity) {
-        this._entries.remove(this._entries.last());
-        this.minCount = this._entries.last().count();
-      }
+    else return;
+    if (this.size < this._capacity) {
+      ensureRoom();
+      this.items[this.size] = item;
+      this.counts[this.size] = count;
+      siftUp(this.size++);
+      modified();
+    } else if (this.size > 0 && isBetter(item, count, 0)) {
+      this.items[0] = item;
+      this.counts[0] = count;
+      siftDown(0, this.size);
+      modified();
+    }
+  }
+
+  /**
+   * Adds an item to this bucket using its ordinal.
+   *
+   * @param ordinal The ordinal of the item
+   * @param count   Its cardinality
+   *
+   * @throws IllegalStateException If this bucket is not in ordinal mode.
+   */
+  public void add(int ordinal, int count) {
+    if (this._resolver == null) throw new IllegalStateException("Bucket not in ordinal mode");
+    if (count > 0 || this._acceptZero) this._considered++;
+    else return;
+    if (this.size < this._capacity) {
+      ensureRoom();
+      this.ordinals[this.size] = ordinal;
+      this.counts[this.size] = count;
+      siftUp(this.size++);
+      modified();
+    } else if (this.size > 0 && isBetter(ordinal, count, 0)) {
+      this.ordinals[0] = ordinal;
+      this.counts[0] = count;
+      siftDown(0, this.size);
+      modified();
     }
   }
 
@@ -123,10 +230,15 @@ import java.util.TreeSet;
    * @return the count for the item; 0 if not found.
    */
   public int count(T item) {
-    for (Entry<T> e : this._entries) {
-      if (e._item.equals(item)) return e.count();
+    if (this.index == null) {
+      Map<T, Integer> index = new HashMap<T, Integer>(this.size * 2);
+      for (Entry<T> e : sorted()) {
+        if (!index.containsKey(e.item())) index.put(e.item(), Integer.valueOf(e.count()));
+      }
+      this.index = index;
     }
-    return 0;
+    Integer count = this.index.get(item);
+    return count != null? count.intValue() : 0;
   }
 
   /**
@@ -142,10 +254,12 @@ import java.util.TreeSet;
   /**
    * Returns a unmodifiable set of entries in the bucket.
    *
+   * <p>The entries are sorted by descending count.
+   *
    * @return a unmodifiable set of entries in the bucket.
    */
   public Set<Entry<T>> entrySet() {
-    return Collections.unmodifiableSet(this._entries);
+    return new EntrySet<T>(sorted());
   }
 
   /**
@@ -154,8 +268,9 @@ import java.util.TreeSet;
    * @return the list of items.
    */
   public List<T> items() {
-    List<T> items = new ArrayList<T>(this._entries.size());
-    for (Entry<T> e : this._entries) { items.add(e.item()); }
+    List<Entry<T>> entries = sorted();
+    List<T> items = new ArrayList<T>(entries.size());
+    for (Entry<T> e : entries) { items.add(e.item()); }
     return items;
   }
 
@@ -182,6 +297,240 @@ import java.util.TreeSet;
     return this._considered;
   }
 
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Clears the computed views after the content of the heap has changed.
+   */
+  private void modified() {
+    this.sorted = null;
+    this.index = null;
+    if (this._resolver != null) this.items = null;
+  }
+
+  /**
+   * Grows the heap arrays if they are full.
+   */
+  private void ensureRoom() {
+    if (this.size < this.counts.length) return;
+    int length = (int)Math.min((long)this.counts.length * 2, this._capacity);
+    this.counts = Arrays.copyOf(this.counts, length);
+    if (this.ordinals != null) this.ordinals = Arrays.copyOf(this.ordinals, length);
+    if (this.items != null) this.items = Arrays.copyOf(this.items, length);
+  }
+
+  /**
+   * Returns the entries sorted by descending count, creating them if necessary.
+   *
+   * @return the sorted entries.
+   */
+  @SuppressWarnings("unchecked")
+  private List<Entry<T>> sorted() {
+    if (this.sorted != null) return this.sorted;
+    resolve();
+    // Sort a copy of the heap by removing the worst entry repeatedly
+    Bucket<T> copy = new Bucket<T>(this._capacity, this._acceptZero, this._resolver);
+    copy.counts = Arrays.copyOf(this.counts, this.size);
+    copy.items = Arrays.copyOf(this.items, this.size);
+    if (this.ordinals != null) copy.ordinals = Arrays.copyOf(this.ordinals, this.size);
+    List<Entry<T>> entries = new ArrayList<Entry<T>>(this.size);
+    for (int n = this.size - 1; n >= 0; n--) {
+      entries.add(new Entry<T>((T)copy.items[0], copy.counts[0]));
+      copy.swap(0, n);
+      copy.siftDown(0, n);
+    }
+    // Entries were removed from the worst to the best
+    Collections.reverse(entries);
+    this.sorted = entries;
+    return this.sorted;
+  }
+
+  /**
+   * Resolves the ordinals in the heap to items in ordinal mode.
+   */
+  private void resolve() {
+    if (this.items != null) return;
+    Object[] items = new Object[this.ordinals.length];
+    for (int i = 0; i < this.size; i++) {
+      items[i] = this._resolver.resolve(this.ordinals[i]);
+    }
+    this.items = items;
+  }
+
+  /**
+   * Moves the entry at the specified position up the heap.
+   *
+   * @param i the position of the entry.
+   */
+  private void siftUp(int i) {
+    int child = i;
+    while (child > 0) {
+      int parent = (child - 1) >>> 1;
+      if (!isWorse(child, parent)) break;
+      swap(child, parent);
+      child = parent;
+    }
+  }
+
+  /**
+   * Moves the entry at the specified position down the heap.
+   *
+   * @param i    the position of the entry.
+   * @param size the number of entries in the heap.
+   */
+  private void siftDown(int i, int size) {
+    int parent = i;
+    while (true) {
+      int worst = parent;
+      int left = 2 * parent + 1;
+      int right = left + 1;
+      if (left < size && isWorse(left, worst)) worst = left;
+      if (right < size && isWorse(right, worst)) worst = right;
+      if (worst == parent) break;
+      swap(parent, worst);
+      parent = worst;
+    }
+  }
+
+  /**
+   * Swaps the entries at the specified positions.
+   *
+   * @param i the position of the first entry.
+   * @param j the position of the second entry.
+   */
+  private void swap(int i, int j) {
+    int count = this.counts[i];
+    this.counts[i] = this.counts[j];
+    this.counts[j] = count;
+    if (this.ordinals != null) {
+      int ordinal = this.ordinals[i];
+      this.ordinals[i] = this.ordinals[j];
+      this.ordinals[j] = ordinal;
+    }
+    if (this.items != null) {
+      Object item = this.items[i];
+      this.items[i] = this.items[j];
+      this.items[j] = item;
+    }
+  }
+
+  /**
+   * Indicates whether the entry at position i ranks after the entry at position j.
+   *
+   * @param i the position of the first entry.
+   * @param j the position of the second entry.
+   *
+   * @return <code>true</code> if the first entry ranks after the second entry.
+   */
+  private boolean isWorse(int i, int j) {
+    if (this.counts[i] != this.counts[j]) return this.counts[i] < this.counts[j];
+    if (this.ordinals != null) return this.ordinals[i] > this.ordinals[j];
+    return compare(this.items[i], this.items[j]) > 0;
+  }
+
+  /**
+   * Indicates whether the specified item ranks before the entry at position j.
+   *
+   * @param item  the item.
+   * @param count its count.
+   * @param j     the position of the entry in the heap.
+   *
+   * @return <code>true</code> if the item ranks before the entry.
+   */
+  private boolean isBetter(Object item, int count, int j) {
+    if (count != this.counts[j]) return count > this.counts[j];
+    return compare(item, this.items[j]) < 0;
+  }
+
+  /**
+   * Indicates whether the specified ordinal ranks before the entry at position j.
+   *
+   * @param ordinal the ordinal of the item.
+   * @param count   its count.
+   * @param j       the position of the entry in the heap.
+   *
+   * @return <code>true</code> if the ordinal ranks before the entry.
+   */
+  private boolean isBetter(int ordinal, int count, int j) {
+    if (count != this.counts[j]) return count > this.counts[j];
+    return ordinal < this.ordinals[j];
+  }
+
+  /**
+   * Compares two items if they are comparable.
+   *
+   * @param o1 the first item.
+   * @param o2 the second item.
+   *
+   * @return the result of the comparison or 0 if the items are not comparable.
+   */
+  @SuppressWarnings("unchecked")
+  private static int compare(Object o1, Object o2) {
+    if (o1 instanceof Comparable<?> && o2 instanceof Comparable<?>) {
+      return ((Comparable<Object>)o1).compareTo(o2);
+    }
+    return 0;
+  }
+
+  /**
+   * Resolves the ordinals of items in ordinal mode.
+   *
+   * @param <T> The type of objects in the bucket.
+   */
+  public interface Resolver<T> {
+
+    /**
+     * Returns the item for the specified ordinal.
+     *
+     * @param ordinal the ordinal.
+     * @return the corresponding item.
+     */
+    T resolve(int ordinal);
+
+  }
+
+  /**
+   * An unmodifiable set of sorted entries.
+   *
+   * @param <T> the type of object being counted.
+   */
+  private static final class EntrySet<T> extends AbstractSet<Entry<T>> {
+
+    /** The sorted entries. */
+    private final List<Entry<T>> _entries;
+
+    /**
+     * @param entries The sorted entries.
+     */
+    public EntrySet(List<Entry<T>> entries) {
+      this._entries = entries;
+    }
+
+    @Override
+    public Iterator<Entry<T>> iterator() {
+      final Iterator<Entry<T>> i = this._entries.iterator();
+      return new Iterator<Entry<T>>() {
+        @Override
+        public boolean hasNext() {
+          return i.hasNext();
+        }
+        @Override
+        public Entry<T> next() {
+          return i.next();
+        }
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return this._entries.size();
+    }
+  }
+
   /**
    * An Item-Count pair used as an entry for the bucket.
    *
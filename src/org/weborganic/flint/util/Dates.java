@@ -7,13 +7,10 @@
  */
 package org.weborganic.flint.util;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.TimeZone;
 
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.DateTools.Resolution;
@@ -28,13 +25,6 @@ import org.apache.lucene.document.DateTools.Resolution;
  */
 public final class Dates {
 
-  /**
-   * The ISO 8601 Date and time format (required for resolution > day only)
-   *
-   * @see <a href="http://www.iso.org/iso/date_and_time_format">ISO: Numeric representation of Dates and Time</a>
-   */
-  private static final String ISO8601_DATETIME = "yyyy-MM-dd'T'HH:mm:ssZ";
-
   /**
    * The maximum length for a field to expand.
    */
@@ -50,11 +40,6 @@ public final class Dates {
    */
   private static final int ONE_HOUR_IN_MS = 3600000;
 
-  /**
-   * The ISO 8601 date and time formatter to use (when resolution is greater than day).
-   */
-  private static final DateFormat ISO_DATETIME = new SimpleDateFormat(ISO8601_DATETIME);
-
   /** Utility class. */
   private Dates() {
   }
@@ -62,26 +47,20 @@ public final class Dates {
   /**
    * Format the value as an ISO8601 date time.
    *
+   * <p>This method is thread-safe and does not synchronize, it is equivalent to:
+   * <pre>ISODateFormatter.forOffset(offset).format(value)</pre>
+   *
    * @param value       the value from the index
    * @param offset      the timezone offset (adjust for the specified offset)
    *
    * @return the corresponding value.
    *
    * @throws ParseException if the value is not a parseable date.
+   *
+   * @see ISODateFormatter
    */
-  public static synchronized String toISODateTime(String value, int offset) throws ParseException {
-    int x = findNonDigitCharacter(value);
-    if (x != -1) throw new ParseException("Value is not a valid Lucene date", x);
-    Date date = DateTools.stringToDate(value);
-    // Only adjust for day light savings...
-    TimeZone tz = TimeZone.getDefault();
-    int rawOffset = tz.inDaylightTime(date)? offset - ONE_HOUR_IN_MS : offset;
-    tz.setRawOffset(rawOffset);
-    ISO_DATETIME.setTimeZone(tz);
-    String formatted = ISO_DATETIME.format(date);
-
-    // the Java timezone does not include the required ':'
-    return formatted.substring(0, formatted.length() - 2) + ":" + formatted.substring(formatted.length() - 2);
+  public static String toISODateTime(String value, int offset) throws ParseException {
+    return ISODateFormatter.forOffset(offset).format(value);
   }
 
   /**
@@ -0,0 +1,271 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A set of utility methods to open Lucene directories.
+ *
+ * <p>The implementation can be specified explicitly or chosen based on the size of the index:
+ * <pre>
+ *   Directories.Heuristics heuristics = Directories.Heuristics.fromProperties(properties);
+ *   Directory directory = Directories.open(folder, heuristics.choose(folder, readOnly));
+ *   Directories.warm(folder);
+ * </pre>
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class Directories {
+
+  /**
+   * Logger for this class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(Directories.class);
+
+  /**
+   * The size of the buffer used to read the files when warming.
+   */
+  private static final int WARM_BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Utility class.
+   */
+  private Directories() {
+  }
+
+  /**
+   * Opens a directory on the specified folder using the default heuristics for
+   * {@link DirectoryType#AUTO}.
+   *
+   * @param folder The folder of the index.
+   * @param type   The type of directory to open.
+   *
+   * @return the corresponding directory.
+   *
+   * @throws IOException If thrown while opening the directory.
+   */
+  public static Directory open(File folder, DirectoryType type) throws IOException {
+    return open(folder, type, Heuristics.DEFAULT);
+  }
+
+  /**
+   * Opens a directory on the specified folder.
+   *
+   * @param folder     The folder of the index.
+   * @param type       The type of directory to open.
+   * @param heuristics The heuristics to choose the directory if the type is {@link DirectoryType#AUTO},
+   *                   since the index may be written, it is never loaded in memory.
+   *
+   * @return the corresponding directory.
+   *
+   * @throws IOException If thrown while opening the directory.
+   */
+  public static Directory open(File folder, DirectoryType type, Heuristics heuristics) throws IOException {
+    DirectoryType t = type == DirectoryType.AUTO? heuristics.choose(folder, false) : type;
+    LOGGER.debug("Opening {} directory on {}", t, folder);
+    switch (t) {
+      case SIMPLE: return new SimpleFSDirectory(folder);
+      case NIO:    return new NIOFSDirectory(folder);
+      case MMAP:
+        MMapDirectory mmap = new MMapDirectory(folder);
+        // release the mapped files when they are closed rather than when they are garbage collected
+        if (MMapDirectory.UNMAP_SUPPORTED) mmap.setUseUnmap(true);
+        return mmap;
+      case RAM:
+        FSDirectory source = FSDirectory.open(folder);
+        try {
+          return new RAMDirectory(source);
+        } finally {
+          source.close();
+        }
+      default: return FSDirectory.open(folder);
+    }
+  }
+
+  /**
+   * Returns the total size of the files of the index in the specified folder.
+   *
+   * @param folder The folder of the index.
+   * @return the size in bytes or 0 if the folder does not exist.
+   */
+  public static long sizeOf(File folder) {
+    File[] files = folder.listFiles();
+    if (files == null) return 0;
+    long size = 0;
+    for (File f : files) {
+      if (f.isFile()) size += f.length();
+    }
+    return size;
+  }
+
+  /**
+   * Loads the files of the index in the specified folder into the operating system cache.
+   *
+   * <p>The files are read sequentially once so that the first searches do not have to wait for
+   * random reads from disk. This is most useful for memory-mapped and network directories.
+   *
+   * @param folder The folder of the index.
+   * @return the number of bytes read.
+   */
+  public static long warm(File folder) {
+    File[] files = folder.listFiles();
+    if (files == null) return 0;
+    long read = 0;
+    ByteBuffer buffer = ByteBuffer.allocateDirect(WARM_BUFFER_SIZE);
+    for (File f : files) {
+      if (!f.isFile() || f.getName().equals(IndexWriter.WRITE_LOCK_NAME)) continue;
+      try {
+        FileInputStream in = new FileInputStream(f);
+        try {
+          FileChannel channel = in.getChannel();
+          for (int n = channel.read(buffer); n >= 0; n = channel.read(buffer)) {
+            read += n;
+            buffer.clear();
+          }
+        } finally {
+          in.close();
+        }
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to warm index file {}", f, ex);
+      }
+    }
+    LOGGER.debug("Warmed {} bytes from {}", read, folder);
+    return read;
+  }
+
+  /**
+   * Heuristics to choose the type of directory based on the size of the index.
+   *
+   * <ul>
+   *   <li>Read only indexes up to the maximum RAM size are loaded in memory;</li>
+   *   <li>Indexes from the minimum memory-mapped size are memory-mapped on 64-bit JVMs;</li>
+   *   <li>Other indexes use positional reads, or a random access file on Windows.</li>
+   * </ul>
+   *
+   * <p>This class is immutable.
+   *
+   * @author Christophe Lauret
+   * @version 19 October 2026
+   */
+  public static final class Heuristics {
+
+    /**
+     * The name of the property for the maximum size of the indexes loaded in memory.
+     */
+    public static final String RAM_MAX_SIZE = "flint.directory.ram-max-size";
+
+    /**
+     * The name of the property for the minimum size of the memory-mapped indexes.
+     */
+    public static final String MMAP_MIN_SIZE = "flint.directory.mmap-min-size";
+
+    /**
+     * Default minimum size of memory-mapped indexes (64MB).
+     */
+    public static final long DEFAULT_MMAP_MIN_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Default heuristics: no index is loaded in memory.
+     */
+    public static final Heuristics DEFAULT = new Heuristics(0, DEFAULT_MMAP_MIN_SIZE);
+
+    /**
+     * The maximum size of the indexes loaded in memory (0 to never load indexes in memory).
+     */
+    private final long _ramMaxSize;
+
+    /**
+     * The minimum size of the memory-mapped indexes.
+     */
+    private final long _mmapMinSize;
+
+    /**
+     * Creates new heuristics.
+     *
+     * <p>Note: indexes loaded in memory are copies of the index on disk and should only be used
+     * for indexes which are read only.
+     *
+     * @param ramMaxSize  The maximum size of the indexes loaded in memory (0 to never load indexes in memory).
+     * @param mmapMinSize The minimum size of the memory-mapped indexes.
+     */
+    public Heuristics(long ramMaxSize, long mmapMinSize) {
+      this._ramMaxSize = ramMaxSize;
+      this._mmapMinSize = mmapMinSize;
+    }
+
+    /**
+     * Returns the heuristics defined by the specified properties.
+     *
+     * <p>The sizes are specified in bytes using the {@link #RAM_MAX_SIZE} and
+     * {@link #MMAP_MIN_SIZE} properties; the default values are used for missing or invalid
+     * values.
+     *
+     * @param properties The properties.
+     * @return the corresponding heuristics.
+     */
+    public static Heuristics fromProperties(Properties properties) {
+      long ram = toLong(properties.getProperty(RAM_MAX_SIZE), DEFAULT._ramMaxSize);
+      long mmap = toLong(properties.getProperty(MMAP_MIN_SIZE), DEFAULT._mmapMinSize);
+      return new Heuristics(ram, mmap);
+    }
+
+    /**
+     * Chooses the type of directory for the index in the specified folder.
+     *
+     * @param folder   The folder of the index.
+     * @param readOnly Whether the index is read only, only read only indexes are loaded in memory.
+     * @return the type of directory to use.
+     */
+    public DirectoryType choose(File folder, boolean readOnly) {
+      long size = sizeOf(folder);
+      if (readOnly && size > 0 && size <= this._ramMaxSize) return DirectoryType.RAM;
+      if (size >= this._mmapMinSize && Constants.JRE_IS_64BIT) return DirectoryType.MMAP;
+      return Constants.WINDOWS? DirectoryType.SIMPLE : DirectoryType.NIO;
+    }
+
+    @Override
+    public String toString() {
+      return "ram<="+this._ramMaxSize+",mmap>="+this._mmapMinSize;
+    }
+
+    /**
+     * @param value    The value to parse.
+     * @param fallback The value to return if the value is missing or invalid.
+     * @return the corresponding number.
+     */
+    private static long toLong(String value, long fallback) {
+      if (value == null) return fallback;
+      try {
+        return Long.parseLong(value.trim());
+      } catch (NumberFormatException ex) {
+        LOGGER.warn("Ignoring invalid directory size {}", value);
+        return fallback;
+      }
+    }
+  }
+
+}
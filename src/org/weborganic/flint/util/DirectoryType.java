@@ -0,0 +1,56 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.util;
+
+/**
+ * The Lucene directory implementations which can be used for an index.
+ *
+ * @see Directories#open(java.io.File, DirectoryType)
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public enum DirectoryType {
+
+  /**
+   * The implementation chosen by Lucene for the platform.
+   */
+  DEFAULT,
+
+  /**
+   * The implementation chosen by the {@link Directories.Heuristics} based on the size of the index.
+   */
+  AUTO,
+
+  /**
+   * Uses a random access file, reads from the same file are synchronized.
+   */
+  SIMPLE,
+
+  /**
+   * Uses positional reads so that files can be read concurrently without synchronization.
+   *
+   * <p>Recommended for indexes read by many threads, except on Windows.
+   */
+  NIO,
+
+  /**
+   * Uses memory-mapped files, best suited for large indexes which are mostly read on 64-bit JVMs.
+   */
+  MMAP,
+
+  /**
+   * Loads a copy of the index in memory, best suited for small indexes which are searched often.
+   *
+   * <p>Changes to the index are not written to disk, so it should only be used for indexes which
+   * are read only.
+   */
+  RAM
+
+}
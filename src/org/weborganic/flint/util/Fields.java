@@ -126,11 +126,12 @@ public final class Fields {
    */
   public static List<String> toTerms(String field, String text, Analyzer analyzer) {
     StringReader r = new StringReader(text);
-    TokenStream stream = analyzer.tokenStream(field, r);
-    PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
-    TermAttribute attribute = stream.addAttribute(TermAttribute.class);
     List<String> terms = new ArrayList<String>();
     try {
+      // Reuse the token stream of the analyzer for this thread
+      TokenStream stream = analyzer.reusableTokenStream(field, r);
+      PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
+      TermAttribute attribute = stream.addAttribute(TermAttribute.class);
       stream.reset();
       while (stream.incrementToken()) {
         String term = attribute.term();
@@ -0,0 +1,230 @@
+/*
+ * This file is part of the Flint library.
+ *
+ * For licensing information please see the file license.txt included in the release.
+ * A copy of this licence can also be found at
+ *   http://www.opensource.org/licenses/artistic-license-2.0.php
+ */
+package org.weborganic.flint.util;
+
+import java.text.ParseException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Formats Lucene date strings as ISO 8601 date and times with a fixed time zone offset.
+ *
+ * <p>Unlike a <code>SimpleDateFormat</code>, instances of this class are immutable and can be
+ * shared by any number of threads without synchronization. The calendar fields are computed
+ * arithmetically from the Lucene date string, so formatting a date neither creates a
+ * <code>Calendar</code> nor reads the default time zone.
+ *
+ * <p>Formatters are cached by offset, use {@link #forOffset(int)} to obtain one.
+ *
+ * @author Christophe Lauret
+ * @version 19 October 2026
+ */
+@Beta
+public final class ISODateFormatter {
+
+  /**
+   * One minute in milliseconds.
+   */
+  private static final int ONE_MINUTE_IN_MS = 60000;
+
+  /**
+   * One day in milliseconds.
+   */
+  private static final long ONE_DAY_IN_MS = 86400000L;
+
+  /**
+   * The maximum offset of the cached formatters (18 hours).
+   */
+  private static final int MAX_CACHED_OFFSET = 18 * 60 * ONE_MINUTE_IN_MS;
+
+  /**
+   * The formatters for offsets in whole minutes.
+   */
+  private static final ConcurrentMap<Integer, ISODateFormatter> FORMATTERS = new ConcurrentHashMap<Integer, ISODateFormatter>();
+
+  /**
+   * The offset from UTC in milliseconds.
+   */
+  private final int _offset;
+
+  /**
+   * The time zone designator as <code>+[hh]:[mm]</code> or <code>-[hh]:[mm]</code>.
+   */
+  private final String _zone;
+
+  /**
+   * Creates a new formatter.
+   *
+   * @param offset The offset from UTC in milliseconds.
+   */
+  private ISODateFormatter(int offset) {
+    this._offset = offset;
+    int minutes = Math.abs(offset) / ONE_MINUTE_IN_MS;
+    StringBuilder zone = new StringBuilder(6);
+    zone.append(offset >= 0? '+' : '-');
+    pad(zone, minutes / 60, 2).append(':');
+    pad(zone, minutes % 60, 2);
+    this._zone = zone.toString();
+  }
+
+  /**
+   * Returns the formatter for the specified offset.
+   *
+   * @param offset The offset from UTC in milliseconds.
+   * @return the corresponding formatter.
+   */
+  public static ISODateFormatter forOffset(int offset) {
+    if (offset % ONE_MINUTE_IN_MS != 0 || Math.abs(offset) > MAX_CACHED_OFFSET) return new ISODateFormatter(offset);
+    Integer key = Integer.valueOf(offset);
+    ISODateFormatter formatter = FORMATTERS.get(key);
+    if (formatter == null) {
+      formatter = new ISODateFormatter(offset);
+      ISODateFormatter existing = FORMATTERS.putIfAbsent(key, formatter);
+      if (existing != null) formatter = existing;
+    }
+    return formatter;
+  }
+
+  /**
+   * Returns the offset from UTC used by this formatter.
+   *
+   * @return the offset from UTC in milliseconds.
+   */
+  public int offset() {
+    return this._offset;
+  }
+
+  /**
+   * Formats the specified Lucene date string as an ISO 8601 date and time.
+   *
+   * <p>The Lucene date string is in UTC and may have any resolution from year
+   * (<code>yyyy</code>) to millisecond (<code>yyyyMMddHHmmssSSS</code>); the result is always
+   * <code>[YYYY]-[MM]-[DD]T[hh]:[mm]:[ss]</code> followed by the offset of this formatter.
+   *
+   * @param value The value from the index.
+   * @return the corresponding ISO 8601 date and time.
+   *
+   * @throws ParseException if the value is not a valid Lucene date.
+   */
+  public String format(String value) throws ParseException {
+    if (!Dates.isLuceneDate(value)) throw new ParseException("Value is not a valid Lucene date", 0);
+    final int length = value.length();
+    int year = digits(value, 0, 4);
+    int month = length >= 6? digits(value, 4, 2) : 1;
+    int day = length >= 8? digits(value, 6, 2) : 1;
+    int hour = length >= 10? digits(value, 8, 2) : 0;
+    int minute = length >= 12? digits(value, 10, 2) : 0;
+    int second = length >= 14? digits(value, 12, 2) : 0;
+    int millis = length == 17? digits(value, 14, 3) : 0;
+    if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59)
+      throw new ParseException("Value is not a valid Lucene date", 0);
+    long time = toDays(year, month, day) * ONE_DAY_IN_MS
+              + ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+    return format(time);
+  }
+
+  /**
+   * Formats the specified time as an ISO 8601 date and time.
+   *
+   * @param time The number of milliseconds since the epoch.
+   * @return the corresponding ISO 8601 date and time.
+   */
+  public String format(long time) {
+    long local = time + this._offset;
+    long days = floorDiv(local, ONE_DAY_IN_MS);
+    int ms = (int)(local - days * ONE_DAY_IN_MS);
+    // Civil date from the number of days since the epoch
+    long z = days + 719468;
+    long era = (z >= 0? z : z - 146096) / 146097;
+    long doe = z - era * 146097;
+    long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    long mp = (5 * doy + 2) / 153;
+    int day = (int)(doy - (153 * mp + 2) / 5 + 1);
+    int month = (int)(mp < 10? mp + 3 : mp - 9);
+    int year = (int)(yoe + era * 400 + (month <= 2? 1 : 0));
+    int seconds = ms / 1000;
+    StringBuilder iso = new StringBuilder(25);
+    pad(iso, year, 4).append('-');
+    pad(iso, month, 2).append('-');
+    pad(iso, day, 2).append('T');
+    pad(iso, seconds / 3600, 2).append(':');
+    pad(iso, (seconds / 60) % 60, 2).append(':');
+    pad(iso, seconds % 60, 2);
+    return iso.append(this._zone).toString();
+  }
+
+  @Override
+  public String toString() {
+    return "ISODateFormatter(" + this._zone + ")";
+  }
+
+  // private helpers ------------------------------------------------------------------------------
+
+  /**
+   * Returns the number of days since the epoch for the specified civil date.
+   *
+   * @param year  The year.
+   * @param month The month (1-12).
+   * @param day   The day of the month (1-31).
+   *
+   * @return the number of days since 1970-01-01.
+   */
+  private static long toDays(int year, int month, int day) {
+    long y = month <= 2? year - 1 : year;
+    long era = (y >= 0? y : y - 399) / 400;
+    long yoe = y - era * 400;
+    long doy = (153 * (month > 2? month - 3 : month + 9) + 2) / 5 + day - 1;
+    long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+    return era * 146097 + doe - 719468;
+  }
+
+  /**
+   * @param a The dividend.
+   * @param b The positive divisor.
+   * @return the largest value less than or equal to the quotient.
+   */
+  private static long floorDiv(long a, long b) {
+    long q = a / b;
+    return (a % b != 0 && a < 0)? q - 1 : q;
+  }
+
+  /**
+   * Parses the digits of the specified value.
+   *
+   * @param value  The value.
+   * @param start  The index of the first digit.
+   * @param length The number of digits.
+   *
+   * @return the corresponding number.
+   */
+  private static int digits(String value, int start, int length) {
+    int n = 0;
+    for (int i = start; i < start + length; i++) {
+      n = n * 10 + (value.charAt(i) - '0');
+    }
+    return n;
+  }
+
+  /**
+   * Appends the specified number padded with zeros to the left.
+   *
+   * @param s      The string builder.
+   * @param value  The positive value to pad.
+   * @param length The minimum number of digits.
+   *
+   * @return the string builder.
+   */
+  private static StringBuilder pad(StringBuilder s, int value, int length) {
+    for (int limit = 10, i = 1; i < length; i++, limit *= 10) {
+      if (value < limit) s.append('0');
+    }
+    return s.append(value);
+  }
+
+}
@@ -12,6 +12,7 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -22,12 +23,21 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.misc.ChainedFilter;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.MultiTermQuery.ConstantScoreAutoRewrite;
+import org.apache.lucene.search.MultiTermQuery.RewriteMethod;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.weborganic.flint.search.FilterCache;
+import org.weborganic.flint.search.SpellingIndex;
 
 /**
  * A set of utility methods related to query objects in Lucene.
@@ -122,10 +132,11 @@ public final class Queries {
    */
   private static void addTermsToPhrase(String field, String text, Analyzer analyzer, PhraseQuery phrase) {
     StringReader r = new StringReader(text);
-    TokenStream stream = analyzer.tokenStream(field, r);
-    PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
-    TermAttribute attribute = stream.addAttribute(TermAttribute.class);
     try {
+      // Reuse the token stream of the analyzer for this thread
+      TokenStream stream = analyzer.reusableTokenStream(field, r);
+      PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
+      TermAttribute attribute = stream.addAttribute(TermAttribute.class);
       int position = -1;
       stream.reset();
       while (stream.incrementToken()) {
@@ -186,7 +197,7 @@ public final class Queries {
     Set<Term> terms = new HashSet<Term>();
     query.extractTerms(terms);
     for (Term t : terms) {
-      List<Term> fuzzy = Terms.fuzzy(reader, t);
+      List<Term> fuzzy = SpellingIndex.suggest(reader, t);
       for (Term f : fuzzy) {
         Query sq = substitute(query, t, f);
         similar.add(sq);
@@ -309,4 +320,291 @@ public final class Queries {
     } else return query;
   }
 
+  // Optimisation
+  // ==============================================================================================
+
+  /**
+   * Rewrites the specified query so that it is cheaper to execute on the specified reader without
+   * changing the scores.
+   *
+   * <p>This method uses the document frequency of terms in the reader to estimate the cost of
+   * each clause in boolean queries, then:
+   * <ul>
+   *   <li>drops prohibited clauses which can be proven to match nothing;</li>
+   *   <li>at the top level only, drops the whole query if it can be proven to match nothing;</li>
+   *   <li>orders the required clauses so that the rarest come first.</li>
+   * </ul>
+   *
+   * <p>The returned query matches the same documents with the same scores as the original query.
+   *
+   * <p>It does not modify the given query, and queries which cannot be optimised are returned as is.
+   *
+   * @see #optimize(Query, IndexReader, boolean)
+   *
+   * @param query  The query to optimise.
+   * @param reader The reader the query will be run against.
+   *
+   * @return the optimised query.
+   *
+   * @throws IOException If thrown by the reader while reading the document frequencies.
+   */
+  @Beta
+  public static Query optimize(Query query, IndexReader reader) throws IOException {
+    return optimize(query, reader, false);
+  }
+
+  /**
+   * Rewrites the specified query so that it is cheaper to execute on the specified reader.
+   *
+   * <p>In addition to the rewrites which preserve the scores, if <code>rescore</code> is
+   * <code>true</code>, this method:
+   * <ul>
+   *   <li>drops optional clauses which can be proven to match nothing, and nested queries which
+   *   can be proven to match nothing;</li>
+   *   <li>at the top level only, drops required clauses matching all documents when other
+   *   required clauses remain and turns constant-score multi-term clauses (prefix, ranges) into
+   *   cached filters when a cheaper required clause is present.</li>
+   * </ul>
+   *
+   * <p>The returned query matches the same documents as the original query. Because clauses
+   * contribute to the query norm and coordination factor, these rewrites change the scores: they
+   * are only applied where they change all the scores in the same way, that is at the top level
+   * and, when the query has optional clauses, only if coord is disabled. The relative ranking of
+   * the documents is therefore preserved, but scores must not be compared with those of the
+   * original query.
+   *
+   * <p>It does not modify the given query, and queries which cannot be optimised are returned as is.
+   *
+   * @param query   The query to optimise.
+   * @param reader  The reader the query will be run against.
+   * @param rescore Whether the rewrites which change the scores (but not the ranking) are allowed.
+   *
+   * @return the optimised query.
+   *
+   * @throws IOException If thrown by the reader while reading the document frequencies.
+   */
+  @Beta
+  public static Query optimize(Query query, IndexReader reader, boolean rescore) throws IOException {
+    return optimize(query, reader, true, rescore);
+  }
+
+  /**
+   * Optimises the specified query.
+   *
+   * @param query   The query to optimise.
+   * @param reader  The reader the query will be run against.
+   * @param top     Whether the query is the top level query, so that the score-affecting rewrites
+   *                change all the scores in the same way.
+   * @param rescore Whether the rewrites which change the scores are allowed.
+   *
+   * @return the optimised query.
+   *
+   * @throws IOException If thrown by the reader while reading the document frequencies.
+   */
+  private static Query optimize(Query query, IndexReader reader, boolean top, boolean rescore) throws IOException {
+    if (query instanceof BooleanQuery) {
+      return optimize((BooleanQuery)query, reader, top, rescore);
+    } else if (query instanceof FilteredQuery) {
+      return optimize((FilteredQuery)query, reader, top, rescore);
+    } else {
+      return query;
+    }
+  }
+
+  /**
+   * Optimises the query wrapped by the filtered query.
+   *
+   * <p>The filtered query scores documents like the query it wraps, so it remains at the top level.
+   *
+   * @param query   The query to optimise.
+   * @param reader  The reader the query will be run against.
+   * @param top     Whether the query is the top level query.
+   * @param rescore Whether the rewrites which change the scores are allowed.
+   *
+   * @return the optimised query.
+   *
+   * @throws IOException If thrown by the reader while reading the document frequencies.
+   */
+  private static Query optimize(FilteredQuery query, IndexReader reader, boolean top, boolean rescore) throws IOException {
+    Query inner = optimize(query.getQuery(), reader, top, rescore);
+    if (inner == query.getQuery()) return query;
+    Filter filter = query.getFilter();
+    // Combine the filters rather than nesting filtered queries
+    if (inner instanceof FilteredQuery) {
+      FilteredQuery f = (FilteredQuery)inner;
+      filter = new ChainedFilter(new Filter[]{ filter, f.getFilter() }, ChainedFilter.AND);
+      inner = f.getQuery();
+    }
+    FilteredQuery optimized = new FilteredQuery(inner, filter);
+    optimized.setBoost(query.getBoost());
+    return optimized;
+  }
+
+  /**
+   * Optimises the clauses of the boolean query.
+   *
+   * <p>Nested queries are never rewritten in a way which changes their score relative to their
+   * sibling clauses.
+   *
+   * @param query   The query to optimise.
+   * @param reader  The reader the query will be run against.
+   * @param top     Whether the query is the top level query.
+   * @param rescore Whether the rewrites which change the scores are allowed.
+   *
+   * @return the optimised query.
+   *
+   * @throws IOException If thrown by the reader while reading the document frequencies.
+   */
+  private static Query optimize(BooleanQuery query, IndexReader reader, boolean top, boolean rescore) throws IOException {
+    final int maxDoc = reader.maxDoc();
+    // Dropping an optional clause which matches nothing changes the query norm and the
+    // coordination factor of this query only
+    final boolean dropNone = rescore && (top || query.isCoordDisabled());
+    // A nested query matching nothing still contributes to the query norm of its parent
+    final boolean dropAll = top || rescore;
+    List<CostedQuery> required = new ArrayList<CostedQuery>();
+    List<Query> optional = new ArrayList<Query>();
+    List<Query> prohibited = new ArrayList<Query>();
+    List<Query> all = new ArrayList<Query>();
+    for (BooleanClause clause : query.getClauses()) {
+      Query q = optimize(clause.getQuery(), reader, false, rescore);
+      int cost = cost(q, reader);
+      switch (clause.getOccur()) {
+        case MUST:
+          if (cost == 0 && dropAll) return new BooleanQuery();
+          if (q instanceof MatchAllDocsQuery) all.add(q);
+          else required.add(new CostedQuery(q, cost));
+          break;
+        case SHOULD:
+          if (cost > 0 || !dropNone) optional.add(q);
+          break;
+        case MUST_NOT:
+          if (q instanceof MatchAllDocsQuery && dropAll) return new BooleanQuery();
+          if (cost > 0 || q instanceof MatchAllDocsQuery) prohibited.add(q);
+          break;
+        default:
+      }
+    }
+    // Removing a constant-score clause only preserves the ranking if it shifts all the scores equally
+    final boolean shift = rescore && top && (optional.isEmpty() || query.isCoordDisabled());
+    // Only drop the 'match all' clauses if there is another required clause
+    if (!shift) {
+      for (Query q : all) required.add(new CostedQuery(q, maxDoc));
+    } else if (!all.isEmpty() && required.isEmpty()) {
+      required.add(new CostedQuery(all.get(0), maxDoc));
+    }
+    // Rarest clauses first
+    Collections.sort(required);
+    // Turn expensive clauses into filters if it does not affect the ranking
+    List<Filter> filters = new ArrayList<Filter>();
+    if (shift) {
+      boolean cheaper = false;
+      for (CostedQuery c : required) {
+        if (!isConstantScore(c._query) && c._cost < maxDoc) cheaper = true;
+      }
+      if (cheaper) {
+        for (Iterator<CostedQuery> i = required.iterator(); i.hasNext();) {
+          Query q = i.next()._query;
+          if (isConstantScore(q)) {
+            filters.add(FilterCache.getFilter(q));
+            i.remove();
+          }
+        }
+      }
+    }
+    // Rebuild the query
+    BooleanQuery optimized = new BooleanQuery(query.isCoordDisabled());
+    optimized.setBoost(query.getBoost());
+    optimized.setMinimumNumberShouldMatch(query.getMinimumNumberShouldMatch());
+    for (CostedQuery c : required) optimized.add(c._query, Occur.MUST);
+    for (Query q : optional) optimized.add(q, Occur.SHOULD);
+    for (Query q : prohibited) optimized.add(q, Occur.MUST_NOT);
+    if (filters.isEmpty()) return optimized;
+    Filter filter = filters.size() == 1? filters.get(0) : new ChainedFilter(filters.toArray(new Filter[filters.size()]), ChainedFilter.AND);
+    return new FilteredQuery(optimized, filter);
+  }
+
+  /**
+   * Estimates the maximum number of documents matching the specified query.
+   *
+   * <p>Queries for which the cost cannot be estimated cheaply are assumed to match all documents.
+   *
+   * @param query  The query.
+   * @param reader The reader the query will be run against.
+   *
+   * @return the estimated number of documents; <code>0</code> only if the query cannot match.
+   *
+   * @throws IOException If thrown by the reader while reading the document frequencies.
+   */
+  private static int cost(Query query, IndexReader reader) throws IOException {
+    if (query instanceof TermQuery) {
+      return reader.docFreq(((TermQuery)query).getTerm());
+    } else if (query instanceof PhraseQuery) {
+      int cost = reader.maxDoc();
+      Term[] terms = ((PhraseQuery)query).getTerms();
+      if (terms.length == 0) return 0;
+      for (Term t : terms) {
+        cost = Math.min(cost, reader.docFreq(t));
+      }
+      return cost;
+    } else if (query instanceof FilteredQuery) {
+      return cost(((FilteredQuery)query).getQuery(), reader);
+    } else if (query instanceof BooleanQuery) {
+      int required = -1;
+      long optional = 0;
+      for (BooleanClause clause : ((BooleanQuery)query).getClauses()) {
+        if (clause.getOccur() == Occur.MUST) {
+          int cost = cost(clause.getQuery(), reader);
+          required = required == -1? cost : Math.min(required, cost);
+        } else if (clause.getOccur() == Occur.SHOULD) {
+          optional += cost(clause.getQuery(), reader);
+        }
+      }
+      // A boolean query with only prohibited clauses does not match anything
+      return required != -1? required : (int)Math.min(optional, reader.maxDoc());
+    } else {
+      return reader.maxDoc();
+    }
+  }
+
+  /**
+   * Indicates whether the specified query is a multi-term query producing a constant score.
+   *
+   * @param query The query.
+   * @return <code>true</code> if the query can be turned into a filter without affecting the ranking.
+   */
+  private static boolean isConstantScore(Query query) {
+    if (!(query instanceof MultiTermQuery)) return false;
+    RewriteMethod method = ((MultiTermQuery)query).getRewriteMethod();
+    return method instanceof ConstantScoreAutoRewrite
+        || method == MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE
+        || method == MultiTermQuery.CONSTANT_SCORE_BOOLEAN_QUERY_REWRITE;
+  }
+
+  /**
+   * A query and its estimated cost, ordered by increasing cost.
+   */
+  private static final class CostedQuery implements Comparable<CostedQuery> {
+
+    /** The query. */
+    private final Query _query;
+
+    /** The estimated number of matching documents. */
+    private final int _cost;
+
+    /**
+     * @param query The query.
+     * @param cost  The estimated number of matching documents.
+     */
+    public CostedQuery(Query query, int cost) {
+      this._query = query;
+      this._cost = cost;
+    }
+
+    @Override
+    public int compareTo(CostedQuery o) {
+      return this._cost < o._cost ? -1 : this._cost == o._cost ? 0 : 1;
+    }
+  }
+
 }
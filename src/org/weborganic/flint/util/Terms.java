@@ -10,7 +10,9 @@ package org.weborganic.flint.util;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
@@ -156,9 +158,10 @@ public final class Terms {
    */
   public static void prefix(IndexReader reader, List<Term> terms, Term term) throws IOException {
     PrefixTermEnum e = new PrefixTermEnum(reader, term);
+    Set<Term> existing = new HashSet<Term>(terms);
     do {
       Term t = e.term();
-      if (t != null && !terms.contains(t)) terms.add(t);
+      if (t != null && existing.add(t)) terms.add(t);
     } while (e.next());
     e.close();
   }